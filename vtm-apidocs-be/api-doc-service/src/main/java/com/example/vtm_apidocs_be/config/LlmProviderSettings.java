@@ -0,0 +1,83 @@
+package com.example.vtm_apidocs_be.config;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/** url/model/key của từng provider theo cấu hình; dùng khi dựng request và khi failover sang provider khác. */
+@Component
+public class LlmProviderSettings {
+
+    @Value("${llm.api.url:https://openrouter.ai/api/v1/chat/completions}")
+    private String openRouterApiUrl;
+
+    @Value("${llm.api.key:}")
+    private String openRouterApiKey;
+
+    @Value("${llm.model:meta-llama/llama-3.1-70b-instruct:free}")
+    private String openRouterModel;
+
+    @Value("${openai.api.url:https://api.openai.com/v1/chat/completions}")
+    private String openAiApiUrl;
+
+    @Value("${openai.api.key:}")
+    private String openAiApiKey;
+
+    @Value("${openai.model:gpt-4o-mini}")
+    private String openAiModel;
+
+    @Value("${gemini.api.key:}")
+    private String geminiApiKey;
+
+    @Value("${gemini.model:gemini-1.5-flash}")
+    private String geminiModel;
+
+    /** Bản sao của req trỏ sang provider cho trước. */
+    public LlmGenerateRequest forProvider(LlmGenerateRequest req, LlmProviderType provider) {
+        return apply(req.toBuilder(), provider).build();
+    }
+
+    public LlmGenerateRequest.LlmGenerateRequestBuilder apply(LlmGenerateRequest.LlmGenerateRequestBuilder requestBuilder, LlmProviderType provider) {
+        requestBuilder.provider(provider);
+        switch (provider) {
+            case OPENROUTER -> {
+                requestBuilder
+                        .apiUrl(firstNonBlank(openRouterApiUrl, "https://openrouter.ai/api/v1/chat/completions"))
+                        .model(firstNonBlank(openRouterModel, "meta-llama/llama-3.1-70b-instruct:free"))
+                        .apiKey(required(openRouterApiKey, "OpenRouter API key (llm.api.key) is required"));
+            }
+            case OPENAI -> {
+                requestBuilder
+                        .apiUrl(firstNonBlank(openAiApiUrl, "https://api.openai.com/v1/chat/completions"))
+                        .model(required(openAiModel, "OpenAI model (openai.model) is required"))
+                        .apiKey(required(openAiApiKey, "OpenAI API key (openai.api.key) is required"));
+            }
+            case GEMINI -> {
+                requestBuilder
+                        .apiUrl(null)
+                        .model(firstNonBlank(geminiModel, "gemini-1.5-flash"))
+                        .apiKey(required(geminiApiKey, "Gemini API key (gemini.api.key) is required"));
+            }
+        }
+        return requestBuilder;
+    }
+
+    /** Model cấu hình cho provider (không kiểm tra API key), dùng làm tag metric. */
+    public String model(LlmProviderType provider) {
+        return switch (provider) {
+            case OPENROUTER -> firstNonBlank(openRouterModel, "meta-llama/llama-3.1-70b-instruct:free");
+            case OPENAI -> firstNonBlank(openAiModel, "gpt-4o-mini");
+            case GEMINI -> firstNonBlank(geminiModel, "gemini-1.5-flash");
+        };
+    }
+
+    private static String firstNonBlank(String a, String fallback) {
+        return (a != null && !a.isBlank()) ? a : fallback;
+    }
+
+    private static String required(String v, String msgIfMissing) {
+        if (v == null || v.isBlank()) throw new IllegalStateException(msgIfMissing);
+        return v;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.vtm_apidocs_be.config;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import com.example.vtm_apidocs_be.utils.ImportMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.resolver.ResolvedAddressTypes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Một WebClient dùng lâu dài cho mỗi LLM provider, mỗi cái có connection pool riêng.
+ * Không gắn default header (API key...) vào client: provider tự set header theo từng request,
+ * tránh việc header bị cộng dồn khi dùng chung WebClient.Builder.
+ * Pool + HttpClient đăng ký metrics Micrometer (reactor.netty.connection.provider.*, reactor.netty.http.client.*).
+ * Request có attribute {@link #MODEL_ATTRIBUTE} được đo thêm theo provider + model: import.stage provider_http
+ * (gửi request tới lúc nhận header) và response_decode (đọc + decode body), import.payload request / response (bytes).
+ */
+@Component
+@Slf4j
+public class LlmWebClients implements DisposableBean {
+
+    /** Provider gắn model đang gọi vào request; request không có attribute này (health, upload file...) không bị đo. */
+    public static final String MODEL_ATTRIBUTE = LlmWebClients.class.getName() + ".model";
+
+    private final Map<LlmProviderType, WebClient> clients = new EnumMap<>(LlmProviderType.class);
+    private final Map<LlmProviderType, ConnectionProvider> pools = new EnumMap<>(LlmProviderType.class);
+
+    public LlmWebClients(WebClient.Builder webClientBuilder,
+                         ImportMetrics metrics,
+                         @Value("${llm.http.max-connections:50}") int maxConnections,
+                         @Value("${llm.http.pending-acquire-max-count:100}") int pendingAcquireMaxCount,
+                         @Value("${llm.http.pending-acquire-timeout:30s}") Duration pendingAcquireTimeout,
+                         @Value("${llm.http.max-idle-time:60s}") Duration maxIdleTime,
+                         @Value("${llm.http.max-life-time:10m}") Duration maxLifeTime,
+                         @Value("${llm.http.evict-interval:30s}") Duration evictInterval,
+                         @Value("${llm.http.connect-timeout:10s}") Duration connectTimeout,
+                         @Value("${llm.http.response-timeout:180s}") Duration responseTimeout,
+                         @Value("${llm.http.dns-cache-ttl:5m}") Duration dnsCacheTtl,
+                         @Value("${llm.http.h2:true}") boolean h2,
+                         @Value("${llm.http.max-in-memory-size:16MB}") DataSize maxInMemorySize) {
+        for (LlmProviderType type : LlmProviderType.values()) {
+            String name = "llm-" + type.name().toLowerCase();
+
+            ConnectionProvider pool = ConnectionProvider.builder(name)
+                    .maxConnections(maxConnections)
+                    .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                    .pendingAcquireTimeout(pendingAcquireTimeout)
+                    .maxIdleTime(maxIdleTime)
+                    .maxLifeTime(maxLifeTime)
+                    .evictInBackground(evictInterval)
+                    .metrics(true)
+                    .build();
+
+            HttpClient httpClient = HttpClient.create(pool)
+                    // Resolver async của Netty có cache; ưu tiên IPv4 (tránh lỗi AAAA như khi dùng resolver mặc định)
+                    .resolver(spec -> spec
+                            .resolvedAddressTypes(ResolvedAddressTypes.IPV4_PREFERRED)
+                            .cacheMaxTimeToLive(dnsCacheTtl))
+                    .protocol(h2 ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                                 : new HttpProtocol[]{HttpProtocol.HTTP11})
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                    .responseTimeout(responseTimeout)
+                    // uri tag cố định: URL Gemini chứa ?key=..., không được đưa vào metrics
+                    .metrics(true, uri -> name);
+
+            WebClient client = webClientBuilder.clone()
+                    .clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .codecs(c -> c.defaultCodecs().maxInMemorySize((int) maxInMemorySize.toBytes()))
+                    .filter(metricsFilter(type, metrics))
+                    .build();
+
+            pools.put(type, pool);
+            clients.put(type, client);
+        }
+        log.info("LLM WebClients ready: {} (maxConnections={}, h2={})", clients.keySet(), maxConnections, h2);
+    }
+
+    public WebClient get(LlmProviderType type) {
+        return clients.get(type);
+    }
+
+    private static ExchangeFilterFunction metricsFilter(LlmProviderType type, ImportMetrics metrics) {
+        return (request, next) -> {
+            String model = request.attribute(MODEL_ATTRIBUTE).map(Object::toString).orElse(null);
+            if (model == null) {
+                return next.exchange(request);
+            }
+            AtomicLong sent = new AtomicLong();
+            ClientRequest counted = ClientRequest.from(request)
+                    .body((out, context) -> request.body().insert(new ClientHttpRequestDecorator(out) {
+                        @Override
+                        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                            return super.writeWith(Flux.from(body).doOnNext(b -> sent.addAndGet(b.readableByteCount())));
+                        }
+                    }, context))
+                    .build();
+
+            Timer.Sample http = metrics.start();
+            return next.exchange(counted)
+                    .doOnError(ex -> metrics.stop(http, "provider_http", type, model, ImportMetrics.ERROR))
+                    .map(response -> {
+                        metrics.stop(http, "provider_http", type, model,
+                                response.statusCode().isError() ? ImportMetrics.ERROR : ImportMetrics.SUCCESS);
+                        metrics.bytes("request", type, model, sent.get());
+                        AtomicLong received = new AtomicLong();
+                        Timer.Sample read = metrics.start();
+                        // body được decode khi đọc (JSON / SSE), stage này gồm cả thời gian model sinh phần còn lại với stream
+                        return response.mutate()
+                                .body(body -> body
+                                        .doOnNext(b -> received.addAndGet(b.readableByteCount()))
+                                        .doFinally(signal -> {
+                                            metrics.stop(read, "response_decode", type, model, outcome(signal));
+                                            metrics.bytes("response", type, model, received.get());
+                                        }))
+                                .build();
+                    });
+        };
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> ImportMetrics.SUCCESS;
+            case CANCEL -> "cancelled";
+            default -> ImportMetrics.ERROR;
+        };
+    }
+
+    @Override
+    public void destroy() {
+        pools.values().forEach(ConnectionProvider::dispose);
+    }
+}
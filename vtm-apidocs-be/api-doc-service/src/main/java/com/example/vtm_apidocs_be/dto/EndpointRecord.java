@@ -0,0 +1,26 @@
+package com.example.vtm_apidocs_be.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thông tin 1 operation dùng để ghi vào api_endpoint_index.
+ * Được sinh từ model swagger (OpenAPI) hoặc từ StreamingEndpointExtractor.
+ */
+@Builder
+public record EndpointRecord(
+        String method,
+        String path,
+        String operationId,
+        String summary,
+        List<String> tags,
+        boolean deprecated,
+        String securityJson,
+        List<Map<String, Object>> parameters,
+        List<String> requestMediaTypes,
+        List<String> responseMediaTypes,
+        List<String> responseCodes,
+        Integer sizeBytes
+) {}
@@ -0,0 +1,32 @@
+package com.example.vtm_apidocs_be.dto;
+
+import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
+
+/**
+ * Bản chỉ đọc của 1 dòng api_endpoint_index trả cho client.
+ * Kết quả single-flight được chia cho nhiều thread / transaction nên không trả entity managed.
+ * Tên field giữ như entity để JSON trả về không đổi.
+ */
+public record EndpointView(
+        Long id,
+        Long documentId,
+        ApiEndpointIndex.HttpMethod method,
+        String path,
+        String operationId,
+        String summary,
+        String tagsJson,
+        boolean deprecated,
+        String securityJson,
+        String parametersJson,
+        String requestMediaTypesJson,
+        String responseMediaTypesJson,
+        String responseCodesJson,
+        Integer sizeBytes
+) {
+    public static EndpointView of(ApiEndpointIndex e) {
+        return new EndpointView(e.getId(), e.getDocumentId(), e.getMethod(), e.getPath(), e.getOperationId(),
+                e.getSummary(), e.getTagsJson(), e.isDeprecated(), e.getSecurityJson(), e.getParametersJson(),
+                e.getRequestMediaTypesJson(), e.getResponseMediaTypesJson(), e.getResponseCodesJson(),
+                e.getSizeBytes());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.vtm_apidocs_be.dto;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/** Trạng thái một lần import PDF chạy nền; giữ trong bộ nhớ, các field được cập nhật từ thread scheduler. */
+@Getter
+@Setter
+public class ImportJob {
+
+    public enum Status { PENDING, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final LlmProviderType provider;
+    private final Long categoryId;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.PENDING;
+    private volatile String stage = "queued"; // queued | generate | normalize | parse | persist | index | done
+    private volatile Long documentId;
+    private volatile String error;
+    private volatile Instant updatedAt = createdAt;
+
+    public ImportJob(String id, LlmProviderType provider, Long categoryId) {
+        this.id = id;
+        this.provider = provider;
+        this.categoryId = categoryId;
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
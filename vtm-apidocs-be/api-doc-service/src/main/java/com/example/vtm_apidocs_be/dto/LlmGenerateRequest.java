@@ -1,23 +1,40 @@
 
 package com.example.vtm_apidocs_be.dto;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class LlmGenerateRequest {
+
+    /** PDF: gửi file gốc (base64/Files API); TEXT: gửi text PDFBox trích ra, nhỏ hơn và không tốn token cho binary. */
+    public enum InputMode { PDF, TEXT }
+
     private LlmProviderType provider;
     private String apiUrl;
     private String apiKey;
     private String model;
-    private byte[] pdfBytes;
+    private DocumentSource pdf; // upload spool trên đĩa hoặc chunk trong heap; người tạo request chịu trách nhiệm close
     private String title;
     private String version;
     private String description;
     private Map<String, Object> options;
+    private boolean bypassCache; // bỏ qua cache khi đọc, kết quả mới vẫn ghi đè vào cache
+    @Builder.Default
+    private InputMode inputMode = InputMode.PDF;
+    private String documentText; // LlmService điền khi inputMode = TEXT
+    private List<LlmProviderType> fallbacks; // thử lần lượt khi provider chính lỗi / đang mở circuit
+    private Long estimatedPromptTokens; // TokenBudget điền ở pre-flight, chưa hiệu chỉnh theo provider
+    private Integer documentPages;
+
+    public boolean isTextMode() {
+        return inputMode == InputMode.TEXT && documentText != null;
+    }
 }
 
 
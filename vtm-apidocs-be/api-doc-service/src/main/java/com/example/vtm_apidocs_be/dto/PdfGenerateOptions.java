@@ -0,0 +1,18 @@
+package com.example.vtm_apidocs_be.dto;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/** Tuỳ chọn theo từng request cho bước sinh OpenAPI từ PDF. */
+@Data
+@Builder
+public class PdfGenerateOptions {
+    private boolean bypassCache; // bỏ qua cache kết quả LLM khi đọc
+    private boolean chunked;     // cắt PDF theo trang/section, gọi LLM song song rồi gộp
+    @Builder.Default
+    private LlmGenerateRequest.InputMode inputMode = LlmGenerateRequest.InputMode.PDF;
+    private List<LlmProviderType> fallbacks; // thứ tự provider dự phòng cho request này
+}
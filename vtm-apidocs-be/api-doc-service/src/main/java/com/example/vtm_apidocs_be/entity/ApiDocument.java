@@ -1,11 +1,13 @@
 package com.example.vtm_apidocs_be.entity;
 
 // ApiDocument.java
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.Instant;
 
-@Entity @Table(name="api_document")
+@Entity @Table(name="api_document",
+        indexes=@Index(name="ix_doc_status_category", columnList="status,category_id"))
 @Data @NoArgsConstructor @AllArgsConstructor @Builder
 public class ApiDocument {
     @Id @GeneratedValue(strategy=GenerationType.IDENTITY)
@@ -33,6 +35,15 @@ public class ApiDocument {
 
     private String specHash;
 
+    // Đồ thị $ref giữa các component, tính lúc index (dùng để cắt spec theo tag)
+    @JsonIgnore
+    @Lob
+    @Column(columnDefinition="longtext")
+    private String refGraphJson;
+
+    @JsonIgnore
+    private String refGraphHash; // specHash tại thời điểm tính refGraphJson
+
     @Enumerated(EnumType.STRING)
     private Source source;
 
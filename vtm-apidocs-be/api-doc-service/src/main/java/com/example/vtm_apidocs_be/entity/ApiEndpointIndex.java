@@ -1,19 +1,40 @@
 package com.example.vtm_apidocs_be.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.util.HashSet;
+import java.util.Set;
+
 @Entity @Table(name="api_endpoint_index",
-        uniqueConstraints=@UniqueConstraint(name="uq_doc_method_path", columnNames={"api_document_id","method","path"})
+        uniqueConstraints=@UniqueConstraint(name="uq_doc_method_path", columnNames={"api_document_id","method","path"}),
+        indexes={
+                // phục vụ query có cấu trúc (EndpointQueryService): (filter, id) để lọc bằng nhau rồi đọc
+                // theo id cho keyset; bản có api_document_id đứng đầu cho query trong một document
+                @Index(name="ix_ep_doc_method", columnList="api_document_id,method,id"),
+                @Index(name="ix_ep_doc_deprecated", columnList="api_document_id,deprecated,id"),
+                @Index(name="ix_ep_doc_path", columnList="api_document_id,path,id"),
+                @Index(name="ix_ep_method", columnList="method,id"),
+                @Index(name="ix_ep_deprecated", columnList="deprecated,id"),
+                @Index(name="ix_ep_path", columnList="path,id"),
+                @Index(name="ix_ep_operation_id", columnList="operationId,id")
+        }
 )
 @Data @NoArgsConstructor @AllArgsConstructor @Builder
 public class ApiEndpointIndex {
     @Id @GeneratedValue(strategy=GenerationType.IDENTITY)
     private Long id;
 
+    @JsonIgnore
+    @ToString.Exclude @EqualsAndHashCode.Exclude
     @ManyToOne(fetch=FetchType.LAZY) @JoinColumn(name="api_document_id")
     private ApiDocument document;
 
+    // FK đọc thẳng từ cột, tránh load cả document (specJson) khi chỉ cần id
+    @Column(name="api_document_id", insertable=false, updatable=false)
+    private Long documentId;
+
     @Enumerated(EnumType.STRING)
     private HttpMethod method;
 
@@ -24,10 +45,46 @@ public class ApiEndpointIndex {
     @Lob @Column(columnDefinition="longtext")
     private String tagsJson; // ["demo","customers"]
 
+    // Bản chuẩn hoá của tagsJson để filter theo tag dùng được index
+    @JsonIgnore
+    @ToString.Exclude @EqualsAndHashCode.Exclude
+    @Builder.Default
+    @ElementCollection(fetch=FetchType.LAZY)
+    @CollectionTable(name="api_endpoint_tag",
+            joinColumns=@JoinColumn(name="endpoint_id"),
+            indexes=@Index(name="ix_ep_tag_tag", columnList="tag,endpoint_id"))
+    @Column(name="tag")
+    private Set<String> tags = new HashSet<>();
+
     private boolean deprecated;
 
     @Lob @Column(columnDefinition="longtext")
     private String securityJson;
 
+    @Lob @Column(columnDefinition="longtext")
+    private String parametersJson; // [{"name":"id","in":"path","required":true}]
+
+    @Lob @Column(columnDefinition="longtext")
+    private String requestMediaTypesJson; // ["multipart/form-data"]
+
+    // Bản chuẩn hoá của requestMediaTypesJson: filter theo media type so sánh bằng, không LIKE trên JSON
+    @JsonIgnore
+    @ToString.Exclude @EqualsAndHashCode.Exclude
+    @Builder.Default
+    @ElementCollection(fetch=FetchType.LAZY)
+    @CollectionTable(name="api_endpoint_request_media_type",
+            joinColumns=@JoinColumn(name="endpoint_id"),
+            indexes=@Index(name="ix_ep_req_media_type", columnList="media_type,endpoint_id"))
+    @Column(name="media_type")
+    private Set<String> requestMediaTypes = new HashSet<>();
+
+    @Lob @Column(columnDefinition="longtext")
+    private String responseMediaTypesJson; // ["application/json"]
+
+    @Lob @Column(columnDefinition="longtext")
+    private String responseCodesJson; // ["200","404"]
+
+    private Integer sizeBytes; // ước lượng kích thước JSON của operation
+
     public enum HttpMethod { GET, POST, PUT, DELETE, PATCH, HEAD, OPTIONS }
 }
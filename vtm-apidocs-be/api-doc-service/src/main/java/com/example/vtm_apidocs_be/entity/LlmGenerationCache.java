@@ -0,0 +1,37 @@
+package com.example.vtm_apidocs_be.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/** Kết quả LLM đã sinh cho một PDF; cacheKey = sha256(pdf, provider, model, prompt version, options). */
+@Entity @Table(name="llm_generation_cache",
+        uniqueConstraints=@UniqueConstraint(name="uq_llm_cache_key", columnNames="cacheKey"),
+        indexes=@Index(name="ix_llm_cache_last_access", columnList="lastAccessAt"))
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class LlmGenerationCache {
+    @Id @GeneratedValue(strategy=GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length=64, nullable=false)
+    private String cacheKey;
+
+    @Column(length=64)
+    private String pdfSha256;
+
+    @Enumerated(EnumType.STRING)
+    private LlmProviderType provider;
+
+    private String model;
+    private String promptVersion;
+
+    @Lob @Column(columnDefinition="longtext")
+    private String content;
+
+    private long sizeBytes;
+    private long hitCount;
+
+    private Instant createdAt;
+    private Instant lastAccessAt;
+}
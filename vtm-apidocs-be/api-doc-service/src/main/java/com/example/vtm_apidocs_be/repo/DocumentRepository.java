@@ -2,6 +2,7 @@ package com.example.vtm_apidocs_be.repo;
 
 import com.example.vtm_apidocs_be.entity.ApiDocument;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -14,6 +15,14 @@ public interface DocumentRepository extends JpaRepository<ApiDocument, Long> {
 
     boolean existsBySlugAndIdNot(String slug, Long id);
 
+    /** Chỉ đọc specHash, không kéo cột specJson (longtext). */
+    @Query("select d.specHash from ApiDocument d where d.id = :id")
+    Optional<String> findSpecHashById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update ApiDocument d set d.refGraphJson = :graph, d.refGraphHash = :hash where d.id = :id")
+    void updateRefGraph(@Param("id") Long id, @Param("graph") String graph, @Param("hash") String hash);
+
     @Query("""
            select d
            from ApiDocument d
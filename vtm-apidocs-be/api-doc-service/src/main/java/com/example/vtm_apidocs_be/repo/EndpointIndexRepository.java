@@ -3,14 +3,45 @@ package com.example.vtm_apidocs_be.repo;
 import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
-public interface EndpointIndexRepository extends JpaRepository<ApiEndpointIndex,Long> {
+public interface EndpointIndexRepository extends JpaRepository<ApiEndpointIndex,Long>, JpaSpecificationExecutor<ApiEndpointIndex> {
     List<ApiEndpointIndex> findByDocumentId(Long docId);
     List<ApiEndpointIndex> findByDocumentIdAndMethod(Long docId, ApiEndpointIndex.HttpMethod method);
+    List<ApiEndpointIndex> findByOperationId(String operationId);
+    List<ApiEndpointIndex> findByDocumentIdAndOperationId(Long docId, String operationId);
+
+    /** Endpoint có requestBody với media type cho trước, vd "multipart/form-data". */
+    @Query("""
+           select e from ApiEndpointIndex e join e.requestMediaTypes m
+           where m = :mediaType
+           """)
+    List<ApiEndpointIndex> findByRequestMediaType(@Param("mediaType") String mediaType);
+
+    /** Xoá bảng tag trước, bulk delete JPQL không cascade sang @ElementCollection. */
+    @Modifying
+    @Transactional
+    @Query(value = """
+           delete t from api_endpoint_tag t
+           join api_endpoint_index e on e.id = t.endpoint_id
+           where e.api_document_id = :documentId
+           """, nativeQuery = true)
+    void deleteTagsByApiDocumentId(@Param("documentId") Long documentId);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+           delete m from api_endpoint_request_media_type m
+           join api_endpoint_index e on e.id = m.endpoint_id
+           where e.api_document_id = :documentId
+           """, nativeQuery = true)
+    void deleteMediaTypesByApiDocumentId(@Param("documentId") Long documentId);
+
     @Modifying
     @Transactional
     @Query("delete from ApiEndpointIndex e where e.document.id = :documentId")
@@ -0,0 +1,87 @@
+package com.example.vtm_apidocs_be.repo;
+
+import com.example.vtm_apidocs_be.entity.ApiDocument;
+import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+
+/** Các điều kiện Specification cho query có cấu trúc trên api_endpoint_index. */
+public final class EndpointIndexSpecs {
+
+    private EndpointIndexSpecs() {}
+
+    public static Specification<ApiEndpointIndex> methodIn(Collection<ApiEndpointIndex.HttpMethod> methods) {
+        return (root, q, cb) -> root.get("method").in(methods);
+    }
+
+    /** path LIKE 'prefix%' (escape % và _) để dùng được index trên path. */
+    public static Specification<ApiEndpointIndex> pathStartsWith(String prefix) {
+        String escaped = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return (root, q, cb) -> cb.like(root.get("path"), escaped + "%", '\\');
+    }
+
+    public static Specification<ApiEndpointIndex> deprecated(boolean deprecated) {
+        return (root, q, cb) -> cb.equal(root.get("deprecated"), deprecated);
+    }
+
+    public static Specification<ApiEndpointIndex> operationId(String operationId) {
+        return (root, q, cb) -> cb.equal(root.get("operationId"), operationId);
+    }
+
+    /** Semi-join qua api_endpoint_request_media_type (index media_type,endpoint_id), như hasTag. */
+    public static Specification<ApiEndpointIndex> requestMediaType(String mediaType) {
+        return (root, q, cb) -> {
+            Subquery<Long> sq = q.subquery(Long.class);
+            var t = sq.from(ApiEndpointIndex.class);
+            var types = t.join("requestMediaTypes");
+            sq.select(t.get("id")).where(cb.equal(types, mediaType));
+            return root.get("id").in(sq);
+        };
+    }
+
+    public static Specification<ApiEndpointIndex> documentId(Long documentId) {
+        return (root, q, cb) -> cb.equal(root.get("documentId"), documentId);
+    }
+
+    public static Specification<ApiEndpointIndex> documentStatus(ApiDocument.Status status) {
+        return (root, q, cb) -> {
+            return cb.equal(documentJoin(root).get("status"), status);
+        };
+    }
+
+    public static Specification<ApiEndpointIndex> categoryId(Long categoryId) {
+        return (root, q, cb) -> {
+            return cb.equal(documentJoin(root).get("category").get("id"), categoryId);
+        };
+    }
+
+    /** Semi-join qua api_endpoint_tag (index tag,endpoint_id) thay vì LIKE trên tagsJson. */
+    public static Specification<ApiEndpointIndex> hasTag(String tag) {
+        return (root, q, cb) -> {
+            Subquery<Long> sq = q.subquery(Long.class);
+            var t = sq.from(ApiEndpointIndex.class);
+            var tags = t.join("tags");
+            sq.select(t.get("id")).where(cb.equal(tags, tag));
+            return root.get("id").in(sq);
+        };
+    }
+
+    /** Dùng chung 1 join sang api_document khi lọc đồng thời status + category. */
+    @SuppressWarnings("unchecked")
+    private static Join<ApiEndpointIndex, ApiDocument> documentJoin(Root<ApiEndpointIndex> root) {
+        for (Join<ApiEndpointIndex, ?> j : root.getJoins()) {
+            if ("document".equals(j.getAttribute().getName())) return (Join<ApiEndpointIndex, ApiDocument>) j;
+        }
+        return root.join("document", JoinType.INNER);
+    }
+
+    /** Keyset paging: chỉ lấy id > afterId, sắp theo id tăng dần. */
+    public static Specification<ApiEndpointIndex> idAfter(Long afterId) {
+        return (root, q, cb) -> cb.greaterThan(root.get("id"), afterId);
+    }
+}
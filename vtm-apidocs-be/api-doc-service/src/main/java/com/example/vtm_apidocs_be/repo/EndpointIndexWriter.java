@@ -0,0 +1,77 @@
+package com.example.vtm_apidocs_be.repo;
+
+import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi index endpoint bằng JDBC batch. id của api_endpoint_index là IDENTITY nên Hibernate không batch insert
+ * (saveAll vẫn ra một INSERT mỗi dòng); ở đây mỗi bảng là một batchUpdate, không đi qua persistence context.
+ * Chạy trong transaction của caller (JpaTransactionManager dùng chung connection).
+ */
+@Repository
+@RequiredArgsConstructor
+public class EndpointIndexWriter {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_ENDPOINT = """
+            insert into api_endpoint_index (api_document_id, method, path, operation_id, summary, tags_json, deprecated,
+                security_json, parameters_json, request_media_types_json, response_media_types_json, response_codes_json, size_bytes)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * rows: chưa có id, document = docId; bảng tag và media type được ghi theo id sinh ra
+     * (tra lại theo unique doc + method + path).
+     */
+    public void insertAll(Long docId, List<ApiEndpointIndex> rows) {
+        if (rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_ENDPOINT, rows, BATCH_SIZE, (ps, e) -> {
+            ps.setLong(1, docId);
+            ps.setString(2, e.getMethod().name());
+            ps.setString(3, e.getPath());
+            ps.setString(4, e.getOperationId());
+            ps.setString(5, e.getSummary());
+            ps.setString(6, e.getTagsJson());
+            ps.setBoolean(7, e.isDeprecated());
+            ps.setString(8, e.getSecurityJson());
+            ps.setString(9, e.getParametersJson());
+            ps.setString(10, e.getRequestMediaTypesJson());
+            ps.setString(11, e.getResponseMediaTypesJson());
+            ps.setString(12, e.getResponseCodesJson());
+            if (e.getSizeBytes() == null) ps.setNull(13, Types.INTEGER);
+            else ps.setInt(13, e.getSizeBytes());
+        });
+
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select id, method, path from api_endpoint_index where api_document_id = ?",
+                rs -> {
+                    ids.put(rs.getString(2) + " " + rs.getString(3), rs.getLong(1));
+                }, docId);
+
+        List<Object[]> tags = new ArrayList<>();
+        List<Object[]> mediaTypes = new ArrayList<>();
+        for (ApiEndpointIndex e : rows) {
+            Long id = ids.get(e.getMethod().name() + " " + e.getPath());
+            for (String tag : e.getTags()) tags.add(new Object[]{id, tag});
+            for (String type : e.getRequestMediaTypes()) mediaTypes.add(new Object[]{id, type});
+        }
+        if (!tags.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into api_endpoint_tag (endpoint_id, tag) values (?, ?)", tags);
+        }
+        if (!mediaTypes.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "insert into api_endpoint_request_media_type (endpoint_id, media_type) values (?, ?)", mediaTypes);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.vtm_apidocs_be.repo;
+
+import com.example.vtm_apidocs_be.entity.LlmGenerationCache;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface LlmGenerationCacheRepository extends JpaRepository<LlmGenerationCache, Long> {
+
+    Optional<LlmGenerationCache> findByCacheKey(String cacheKey);
+
+    @Modifying
+    @Transactional
+    @Query("update LlmGenerationCache c set c.hitCount = c.hitCount + 1, c.lastAccessAt = :now where c.id = :id")
+    void touch(@Param("id") Long id, @Param("now") Instant now);
+
+    @Query("select coalesce(sum(c.sizeBytes), 0) from LlmGenerationCache c")
+    long totalSizeBytes();
+
+    /** Ứng viên evict: truy cập lâu nhất trước (LRU); projection để không kéo cả content. */
+    List<SizeView> findTop50ByOrderByLastAccessAtAsc();
+
+    interface SizeView {
+        Long getId();
+        long getSizeBytes();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.vtm_apidocs_be.service;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import reactor.core.publisher.Mono;
+
+public interface ChunkedGenerationService {
+    /**
+     * Cắt PDF trong req thành nhiều đoạn, gọi provider của req cho từng đoạn (song song có giới hạn)
+     * rồi gộp thành một OpenAPI JSON đã qua SpecParserService.
+     */
+    Mono<String> generate(LlmGenerateRequest req);
+}
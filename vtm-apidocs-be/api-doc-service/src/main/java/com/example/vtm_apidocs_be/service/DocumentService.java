@@ -1,26 +1,40 @@
 package com.example.vtm_apidocs_be.service;
 
+import com.example.vtm_apidocs_be.dto.EndpointView;
+import com.example.vtm_apidocs_be.dto.PdfGenerateOptions;
 import com.example.vtm_apidocs_be.entity.ApiDocument;
-import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
-import org.springframework.web.multipart.MultipartFile;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
+import com.example.vtm_apidocs_be.utils.SpooledUpload;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface DocumentService {
 
     record SpecPayload(String raw, String contentType) {}
     SpecPayload getSpecForFrontend(Long docId, String frontendFlag);
-    List<ApiEndpointIndex> listEndpoints(Long docId);
+    List<EndpointView> listEndpoints(Long docId);
     void updateSpec(Long docId, String specText);
-    void uploadSpec(Long docId, MultipartFile file);
+    /** File spec (JSON/YAML) đã spool; caller close upload. */
+    void uploadSpec(Long docId, SpooledUpload upload);
     void reindex(Long docId);
+    void reindex(Long docId, boolean validate);
     String updateStatus(Long docId, String status);
     ApiDocument importJson(String name, String slug, String version, String description, String specJson, Long categoryId);
     List<ApiDocument> listDocuments(String q, String status);
     List<ApiDocument> listPublishedDocuments(String q, String status);
     ApiDocument updateMeta(Long id, String name, String slug, String version, String description);
     void deleteDocument(Long id);
-    ApiDocument importPdf(String name, String slug, String version, String description, Long categoryId, byte[] pdfBytes, LlmProviderType provider);
+    /** Gọi LLM sinh bản nháp OpenAPI từ PDF, không block thread gọi. */
+    Mono<String> generateDraftFromPdf(String name, String version, String description, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options);
+    /** Sinh bản nháp từ text đã trích sẵn (DOC/DOCX...), luôn gửi dạng TEXT; không hỗ trợ chunked. */
+    Mono<String> generateDraftFromText(String name, String version, String description, String documentText, LlmProviderType provider, PdfGenerateOptions options);
+    /** Như generateDraftFromPdf nhưng trả từng đoạn text khi LLM sinh ra; lỗi cấu trúc JSON làm Flux lỗi sớm. */
+    Flux<String> streamDraftFromPdf(String name, String version, String description, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options);
+    /** normalize → parse → lưu → index bản nháp LLM; onStage nhận tên bước đang chạy. */
+    ApiDocument importGeneratedSpec(String name, String slug, String version, String description, Long categoryId, String draftJson, Consumer<String> onStage);
 
 }
@@ -3,5 +3,9 @@ package com.example.vtm_apidocs_be.service;
 import io.swagger.v3.oas.models.OpenAPI;
 
 public interface EndpointIndexService {
+    /** Index từ model đã parse sẵn (vd. sau khi import đã validate). */
     void reindex(Long docId, OpenAPI openAPI);
+
+    /** Index trực tiếp từ text spec bằng streaming parser, không dựng model OpenAPI. */
+    void reindex(Long docId, String specText);
 }
@@ -0,0 +1,18 @@
+package com.example.vtm_apidocs_be.service;
+
+import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
+
+import java.util.List;
+
+public interface EndpointQueryService {
+
+    /** Điều kiện lọc; field null = bỏ qua. */
+    record EndpointQuery(Long documentId, List<String> methods, String pathPrefix, Boolean deprecated, String status,
+                         Long categoryId, String tag, String operationId, String requestMediaType,
+                         Long afterId, Integer limit) {}
+
+    /** nextAfterId = null khi đã hết dữ liệu. */
+    record EndpointPage(List<ApiEndpointIndex> items, Long nextAfterId) {}
+
+    EndpointPage query(EndpointQuery query);
+}
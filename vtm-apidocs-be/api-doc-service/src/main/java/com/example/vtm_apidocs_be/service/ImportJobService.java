@@ -0,0 +1,23 @@
+package com.example.vtm_apidocs_be.service;
+
+import com.example.vtm_apidocs_be.dto.ImportJob;
+import com.example.vtm_apidocs_be.dto.PdfGenerateOptions;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
+import com.example.vtm_apidocs_be.utils.SpooledUpload;
+
+import java.util.Optional;
+
+public interface ImportJobService {
+    /**
+     * Đưa import PDF vào hàng đợi, trả job ngay; generate → normalize → parse → persist → index chạy nền.
+     * Job close pdf khi xong (xoá file tạm, trả ngân sách upload).
+     */
+    ImportJob submitPdfImport(String name, String slug, String version, String description, Long categoryId, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options);
+    /**
+     * Import DOC/DOCX: extract (streaming) → generate từ text → normalize → parse → persist → index chạy nền.
+     * Job close document khi xong.
+     */
+    ImportJob submitDocImport(String name, String slug, String version, String description, Long categoryId, SpooledUpload document, LlmProviderType provider, PdfGenerateOptions options);
+    Optional<ImportJob> find(String jobId);
+}
@@ -0,0 +1,14 @@
+package com.example.vtm_apidocs_be.service;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+
+import java.util.Optional;
+
+public interface LlmGenerationCacheService {
+    boolean isEnabled();
+    /** sha256 của (pdf, provider, model, prompt version, title/version/description, options). */
+    String keyOf(LlmGenerateRequest req, String promptVersion);
+    Optional<String> get(String cacheKey);
+    /** content phải là output đã sửa và đã parse được thành OpenAPI; cache không tự validate. */
+    void put(String cacheKey, LlmGenerateRequest req, String promptVersion, String content);
+}
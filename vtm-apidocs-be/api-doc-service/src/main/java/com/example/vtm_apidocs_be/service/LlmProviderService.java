@@ -2,8 +2,20 @@ package com.example.vtm_apidocs_be.service;
 
 import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface LlmProviderService {
     LlmProviderType providerType();
-    String generateOpenApiFromPdf(LlmGenerateRequest req);
+
+    /** Tăng khi đổi prompt template: là một phần của key cache kết quả LLM. */
+    default String promptVersion() { return "v1"; }
+
+    /** Non-blocking: không được gọi block() bên trong; lỗi trả qua Mono.error. */
+    Mono<String> generateOpenApiFromPdf(LlmGenerateRequest req);
+
+    /** Các đoạn text mới theo thứ tự model sinh ra; provider không hỗ trợ stream thì trả cả khối một lần. */
+    default Flux<String> streamOpenApiFromPdf(LlmGenerateRequest req) {
+        return generateOpenApiFromPdf(req).flux();
+    }
 }
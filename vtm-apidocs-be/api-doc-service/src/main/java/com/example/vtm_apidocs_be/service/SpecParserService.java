@@ -1,8 +1,11 @@
 package com.example.vtm_apidocs_be.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.models.OpenAPI;
 
 public interface SpecParserService {
     String detectContentType(String raw);
     OpenAPI parseOrThrow(String specText);
+    /** Như parseOrThrow(String) nhưng từ cây JSON đã có sẵn, không serialize / parse lại text. */
+    OpenAPI parseOrThrow(JsonNode spec);
 }
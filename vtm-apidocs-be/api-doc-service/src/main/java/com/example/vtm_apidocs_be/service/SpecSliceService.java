@@ -0,0 +1,8 @@
+package com.example.vtm_apidocs_be.service;
+
+import java.util.Collection;
+
+public interface SpecSliceService {
+    /** Spec chỉ gồm các operation có tag thuộc tags + bao đóng $ref của chúng trong components. */
+    DocumentService.SpecPayload sliceByTags(Long docId, Collection<String> tags);
+}
@@ -0,0 +1,107 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.service.ChunkedGenerationService;
+import com.example.vtm_apidocs_be.service.SpecParserService;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
+import com.example.vtm_apidocs_be.utils.LlmService;
+import com.example.vtm_apidocs_be.utils.OpenApiFragmentMerger;
+import com.example.vtm_apidocs_be.utils.JsonRepair;
+import com.example.vtm_apidocs_be.utils.PdfSplitter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ChunkedGenerationServiceImpl implements ChunkedGenerationService {
+
+    private final LlmService llmService;
+    private final SpecParserService parserService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${llm.chunk.max-pages:20}")
+    private int maxPagesPerChunk;
+
+    @Value("${llm.chunk.parallelism:4}")
+    private int parallelism;
+
+    @Override
+    public Mono<String> generate(LlmGenerateRequest req) {
+        // PDFBox load/split là CPU + blocking → không chạy trên event loop
+        return Mono.fromCallable(() -> PdfSplitter.split(req.getPdf(), maxPagesPerChunk))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(chunks -> {
+                    if (chunks.size() <= 1) {
+                        return llmService.generateOpenApiFromPdf(req);
+                    }
+                    log.info("Chunked generation: {} pages -> {} chunks (parallelism={})",
+                            chunks.get(0).totalPages(), chunks.size(), parallelism);
+                    // flatMapSequential: chạy song song nhưng trả kết quả theo thứ tự chunk → merge tất định
+                    return Flux.fromIterable(chunks)
+                            .flatMapSequential(chunk -> llmService.generateOpenApiFromPdf(chunkRequest(req, chunk))
+                                    .map(content -> parseFragment(chunk, content)), parallelism, 1)
+                            .collectList()
+                            .publishOn(Schedulers.boundedElastic())
+                            .map(fragments -> mergeAndValidate(req, fragments));
+                });
+    }
+
+    private LlmGenerateRequest chunkRequest(LlmGenerateRequest req, PdfSplitter.Chunk chunk) {
+        String scope = "This file is pages %d-%d of a %d-page document. Describe only the endpoints, schemas and tags that appear in these pages."
+                .formatted(chunk.fromPage(), chunk.toPage(), chunk.totalPages());
+        String description = req.getDescription() == null || req.getDescription().isBlank()
+                ? scope : req.getDescription() + "\n" + scope;
+        return req.toBuilder()
+                .pdf(DocumentSource.ofBytes(chunk.pdfBytes()))
+                .documentText(null) // trích lại theo đoạn nếu TEXT mode
+                .estimatedPromptTokens(null) // ước lượng lại token theo đoạn
+                .documentPages(null)
+                .description(description)
+                .build();
+    }
+
+    private JsonNode parseFragment(PdfSplitter.Chunk chunk, String content) {
+        try {
+            return objectMapper.readTree(JsonRepair.repairOrThrow(content).json());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("LLM output for pages %d-%d is not valid JSON: %s"
+                    .formatted(chunk.fromPage(), chunk.toPage(), e.getOriginalMessage()), e);
+        }
+    }
+
+    private String mergeAndValidate(LlmGenerateRequest req, List<JsonNode> fragments) {
+        ObjectNode merged = OpenApiFragmentMerger.merge(fragments);
+
+        // info lấy theo metadata người import, không theo mảnh đầu tiên
+        ObjectNode info = merged.path("info") instanceof ObjectNode o ? o.deepCopy() : objectMapper.createObjectNode();
+        if (req.getTitle() != null) info.put("title", req.getTitle());
+        if (req.getVersion() != null) info.put("version", req.getVersion());
+        if (req.getDescription() != null) info.put("description", req.getDescription());
+        ObjectNode doc = objectMapper.createObjectNode();
+        doc.set("openapi", merged.get("openapi"));
+        doc.set("info", info);
+        merged.properties().forEach(e -> {
+            if (!doc.has(e.getKey())) doc.set(e.getKey(), e.getValue());
+        });
+
+        // validate thẳng trên cây đã gộp, chỉ serialize một lần cho kết quả trả về
+        parserService.parseOrThrow(doc);
+        try {
+            return objectMapper.writeValueAsString(doc);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize merged OpenAPI", e);
+        }
+    }
+}
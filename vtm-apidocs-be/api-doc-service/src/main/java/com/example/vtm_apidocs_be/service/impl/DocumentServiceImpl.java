@@ -1,31 +1,45 @@
 package com.example.vtm_apidocs_be.service.impl;
 
+import com.example.vtm_apidocs_be.config.LlmProviderSettings;
+import com.example.vtm_apidocs_be.dto.EndpointView;
 import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.dto.PdfGenerateOptions;
 import com.example.vtm_apidocs_be.entity.ApiDocument;
-import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
 import com.example.vtm_apidocs_be.repo.DocumentRepository;
 import com.example.vtm_apidocs_be.repo.CategoryRepository;
 import com.example.vtm_apidocs_be.repo.EndpointIndexRepository;
+import com.example.vtm_apidocs_be.service.ChunkedGenerationService;
 import com.example.vtm_apidocs_be.service.DocumentService;
 import com.example.vtm_apidocs_be.service.EndpointIndexService;
 import com.example.vtm_apidocs_be.service.SpecParserService;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
+import com.example.vtm_apidocs_be.utils.DocumentType;
+import com.example.vtm_apidocs_be.utils.HashUtils;
+import com.example.vtm_apidocs_be.utils.LlmBudgetExceededException;
 import com.example.vtm_apidocs_be.utils.LlmClient;
 import com.example.vtm_apidocs_be.utils.LlmService;
+import com.example.vtm_apidocs_be.utils.JsonRepair;
+import com.example.vtm_apidocs_be.utils.SingleFlight;
+import com.example.vtm_apidocs_be.utils.SpooledUpload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.models.OpenAPI;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.List;
-
-import static org.apache.commons.lang3.StringUtils.firstNonBlank;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class DocumentServiceImpl implements DocumentService {
 
     private final DocumentRepository docRepo;
@@ -35,20 +49,41 @@ public class DocumentServiceImpl implements DocumentService {
     private final EndpointIndexService indexService;
     private final LlmClient llmClient;
     private final LlmService llmService;
+    private final LlmProviderSettings providerSettings;
+    private final ChunkedGenerationService chunkedGenerationService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${llm.budget.auto-chunk:true}")
+    private boolean autoChunk; // tài liệu vượt context model thì tự chuyển sang chunked thay vì báo lỗi
+
+    // Gộp các request đồng thời giống nhau (vd. nhiều viewer mở doc vừa publish)
+    private SingleFlight<Long, SpecPayload> specFlight;
+    private SingleFlight<Long, List<EndpointView>> endpointsFlight;
+    private SingleFlight<String, OpenAPI> parseFlight;
+
+    @PostConstruct
+    void initSingleFlight() {
+        specFlight = new SingleFlight<>("doc.spec", meterRegistry);
+        endpointsFlight = new SingleFlight<>("doc.endpoints", meterRegistry);
+        parseFlight = new SingleFlight<>("spec.parse", meterRegistry);
+    }
 
+    // Không @Transactional: transaction lấy connection ngay khi bắt đầu, mọi caller đang chờ leader sẽ giữ connection
+    // của pool suốt lúc chờ. Repository tự mở transaction riêng, chỉ leader chạm DB.
     @Override
-    @Transactional(readOnly = true)
     public SpecPayload getSpecForFrontend(Long docId, String frontendFlag) {
-        ApiDocument doc = docRepo.findById(docId).orElseThrow();
-        String raw = doc.getSpecJson();
-        String contentType = parserService.detectContentType(raw);
-        return new SpecPayload(raw, contentType);
+        return specFlight.execute(docId, () -> {
+            ApiDocument doc = docRepo.findById(docId).orElseThrow();
+            String raw = doc.getSpecJson();
+            String contentType = parserService.detectContentType(raw);
+            return new SpecPayload(raw, contentType);
+        });
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public List<ApiEndpointIndex> listEndpoints(Long docId) {
-        return epRepo.findByDocumentId(docId);
+    public List<EndpointView> listEndpoints(Long docId) {
+        // map sang DTO ngay trong flight: các caller chờ chung nhận list bất biến, không dùng chung entity của leader
+        return endpointsFlight.execute(docId, () -> epRepo.findByDocumentId(docId).stream().map(EndpointView::of).toList());
     }
 
     @Override
@@ -56,15 +91,19 @@ public class DocumentServiceImpl implements DocumentService {
     public void updateSpec(Long docId, String specText) {
         ApiDocument doc = docRepo.findById(docId).orElseThrow();
         doc.setSpecJson(specText);
+        doc.setSpecHash(HashUtils.sha256Hex(specText));
         docRepo.saveAndFlush(doc);
     }
 
     @Override
     @Transactional
-    public void uploadSpec(Long docId, MultipartFile file) {
+    public void uploadSpec(Long docId, SpooledUpload upload) {
+        if (upload.type() != DocumentType.TEXT) {
+            throw new IllegalArgumentException("Spec file must be JSON or YAML text");
+        }
         String raw;
         try {
-            raw = new String(file.getBytes(), StandardCharsets.UTF_8);
+            raw = upload.readString();
         } catch (Exception e) {
             throw new IllegalArgumentException("Cannot read file: " + e.getMessage(), e);
         }
@@ -74,9 +113,16 @@ public class DocumentServiceImpl implements DocumentService {
     @Override
     @Transactional
     public void reindex(Long docId) {
+        reindex(docId, false);
+    }
+
+    @Override
+    @Transactional
+    public void reindex(Long docId, boolean validate) {
         ApiDocument doc = docRepo.findById(docId).orElseThrow();
-        var openAPI = parserService.parseOrThrow(doc.getSpecJson());
-        indexService.reindex(doc.getId(), openAPI);
+        // Parse đầy đủ bằng swagger chỉ khi cần validate; index luôn đi đường streaming
+        if (validate) parseShared(doc.getId(), doc.getSpecHash(), doc.getSpecJson());
+        indexService.reindex(doc.getId(), doc.getSpecJson());
     }
 
     @Override
@@ -99,14 +145,21 @@ public class DocumentServiceImpl implements DocumentService {
     @Override
     @Transactional
     public ApiDocument importJson(String name, String slug, String version, String description, String specJson, Long categoryId) {
-        var openAPI = parserService.parseOrThrow(specJson);
+        String specHash = HashUtils.sha256Hex(specJson);
+        parseShared(null, specHash, specJson);
+        return persist(name, slug, version, description, specJson, specHash, categoryId);
+    }
 
+    /** Lưu spec đã validate; caller chịu trách nhiệm parse trước. */
+    private ApiDocument persist(String name, String slug, String version, String description, String specJson,
+                                String specHash, Long categoryId) {
         ApiDocument doc = new ApiDocument();
         doc.setName(name);
         doc.setSlug(slug);
         doc.setVersion(version);
         doc.setDescription(description);
         doc.setSpecJson(specJson);
+        doc.setSpecHash(specHash);
 
         var cat = categoryRepo.findById(categoryId)
                 .orElseThrow(() -> new IllegalArgumentException("Category not found: " + categoryId));
@@ -184,88 +237,88 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     @Override
-    public ApiDocument importPdf(String name, String slug, String version, String description, Long categoryId, byte[] pdfBytes, LlmProviderType provider) {
-
-        var requestBuilder = LlmGenerateRequest.builder()
-                .provider(provider)
-                .pdfBytes(pdfBytes)
-                .title(name)
-                .version(version)
-                .description(description);
-
-        switch (provider) {
-            case OPENROUTER -> {
-                requestBuilder
-                        .apiUrl(firstNonBlank(openRouterApiUrl, "https://openrouter.ai/api/v1/chat/completions"))
-                        .model(firstNonBlank(openRouterModel, "meta-llama/llama-3.1-70b-instruct:free"))
-                        .apiKey(required(openRouterApiKey, "OpenRouter API key (llm.api.key) is required"));
-            }
-            case OPENAI -> {
-                requestBuilder
-                        .apiUrl(firstNonBlank(openAiApiUrl, "https://api.openai.com/v1/chat/completions"))
-                        .model(required(openAiModel, "OpenAI model (openai.model) is required"))
-                        .apiKey(required(openAiApiKey, "OpenAI API key (openai.api.key) is required"));
-            }
-            case GEMINI -> {
-                requestBuilder
-                        .model(firstNonBlank(geminiModel, "gemini-1.5-flash"))
-                        .apiKey(required(geminiApiKey, "Gemini API key (gemini.api.key) is required"));
-            }
+    public Mono<String> generateDraftFromPdf(String name, String version, String description, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options) {
+        if (provider == null) {
+            return Mono.error(new IllegalArgumentException("provider is required"));
         }
 
-        String draftJson = llmService.generateOpenApiFromPdf(requestBuilder.build());
-
-        String normalized = normalizeOpenApiJson(draftJson);
-        var openAPI = parserService.parseOrThrow(normalized);
-
-        ApiDocument doc = importJson(name, slug, version, description, normalized, categoryId);
-        return doc;
+        LlmGenerateRequest req = buildLlmRequest(name, version, description, pdf, provider, options);
+        if (options.isChunked()) {
+            return chunkedGenerationService.generate(req);
+        }
+        return llmService.generateOpenApiFromPdf(req)
+                .onErrorResume(LlmBudgetExceededException.class, ex -> {
+                    if (!autoChunk || ex.getPages() < 2) {
+                        return Mono.error(ex);
+                    }
+                    log.info("{} pages exceed {} context ({} > {} tokens), switching to chunked generation",
+                            ex.getPages(), ex.getModel(), ex.getEstimatedTokens(), ex.getLimitTokens());
+                    return chunkedGenerationService.generate(req);
+                });
     }
 
-    private String normalizeOpenApiJson(String json) {
-        String j = json == null ? "" : json.trim();
-        if (j.startsWith("```")) {
-            j = j.replaceFirst("^```[a-zA-Z]*", "").replaceAll("```\\s*$", "").trim();
+    @Override
+    public Mono<String> generateDraftFromText(String name, String version, String description, String documentText, LlmProviderType provider, PdfGenerateOptions options) {
+        if (provider == null) {
+            return Mono.error(new IllegalArgumentException("provider is required"));
+        }
+        if (options.isChunked()) {
+            return Mono.error(new IllegalArgumentException("Chunked generation is only supported for PDF input"));
         }
-        j = j.replace("\\/", "/").replace("u002f", "/").replace("\\u002f", "/");
-        int s = j.indexOf('{'), e = j.lastIndexOf('}');
-        if (s >= 0 && e > s) j = j.substring(s, e + 1);
-        return j;
+        LlmGenerateRequest req = buildLlmRequest(name, version, description, null, provider, options).toBuilder()
+                .inputMode(LlmGenerateRequest.InputMode.TEXT)
+                .documentText(documentText)
+                .build();
+        return llmService.generateOpenApiFromPdf(req);
     }
 
-    @Value("${llm.api.url:https://openrouter.ai/api/v1/chat/completions}")
-    private String openRouterApiUrl;
-
-    @Value("${llm.api.key:}")
-    private String openRouterApiKey;
-
-    @Value("${llm.model:meta-llama/llama-3.1-70b-instruct:free}")
-    private String openRouterModel;
-
-    @Value("${openai.api.url:https://api.openai.com/v1/chat/completions}")
-    private String openAiApiUrl;
-
-    @Value("${openai.api.key:}")
-    private String openAiApiKey;
-
-    @Value("${openai.model:gpt-4o-mini}")
-    private String openAiModel;
-
-    @Value("${gemini.api.key:}")
-    private String geminiApiKey;
+    @Override
+    public Flux<String> streamDraftFromPdf(String name, String version, String description, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options) {
+        if (provider == null) {
+            return Flux.error(new IllegalArgumentException("provider is required"));
+        }
+        return llmService.streamOpenApiFromPdf(buildLlmRequest(name, version, description, pdf, provider, options));
+    }
 
-    @Value("${gemini.model:gemini-1.5-flash}")
-    private String geminiModel;
+    /** Request LLM với url/model/key lấy từ cấu hình theo provider. */
+    private LlmGenerateRequest buildLlmRequest(String name, String version, String description, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options) {
+        var requestBuilder = LlmGenerateRequest.builder()
+                .pdf(pdf)
+                .title(name)
+                .version(version)
+                .description(description)
+                .bypassCache(options.isBypassCache())
+                .inputMode(options.getInputMode())
+                .fallbacks(options.getFallbacks());
 
-    private static String firstNonBlank(String a, String fallback) {
-        return (a != null && !a.isBlank()) ? a : fallback;
+        return providerSettings.apply(requestBuilder, provider).build();
     }
 
-    private static String required(String v, String msgIfMissing) {
-        if (v == null || v.isBlank()) throw new IllegalStateException(msgIfMissing);
-        return v;
+    @Override
+    @Transactional
+    public ApiDocument importGeneratedSpec(String name, String slug, String version, String description, Long categoryId, String draftJson, Consumer<String> onStage) {
+        onStage.accept("normalize");
+        JsonRepair.Result repaired = JsonRepair.repairOrThrow(draftJson);
+        if (!repaired.report().isClean()) log.info("Import '{}': repaired LLM JSON {}", slug, repaired.report());
+        String normalized = repaired.json();
+
+        // Model swagger chỉ dựng 1 lần để validate; index đi đường streaming, không dựng lại cây
+        onStage.accept("parse");
+        String specHash = HashUtils.sha256Hex(normalized);
+        parseShared(null, specHash, normalized);
+
+        onStage.accept("persist");
+        ApiDocument doc = persist(name, slug, version, description, normalized, specHash, categoryId);
+
+        onStage.accept("index");
+        indexService.reindex(doc.getId(), normalized);
+        return doc;
     }
 
+    /** parseOrThrow dùng chung theo (docId, specHash): cùng text đang được parse thì chờ kết quả đó. */
+    private OpenAPI parseShared(Long docId, String specHash, String specText) {
+        String hash = specHash != null ? specHash : HashUtils.sha256Hex(specText);
+        String key = (docId == null ? "-" : docId.toString()) + ":" + hash;
+        return parseFlight.execute(key, () -> parserService.parseOrThrow(specText));
+    }
 }
-
-
@@ -1,44 +1,170 @@
 package com.example.vtm_apidocs_be.service.impl;
 
+import com.example.vtm_apidocs_be.dto.EndpointRecord;
+import com.example.vtm_apidocs_be.entity.ApiDocument;
 import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
+import com.example.vtm_apidocs_be.repo.DocumentRepository;
 import com.example.vtm_apidocs_be.repo.EndpointIndexRepository;
+import com.example.vtm_apidocs_be.repo.EndpointIndexWriter;
 import com.example.vtm_apidocs_be.service.EndpointIndexService;
+import com.example.vtm_apidocs_be.utils.HashUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
 import io.swagger.v3.oas.models.PathItem.HttpMethod;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class EndpointIndexServiceImpl implements EndpointIndexService {
 
     private final EndpointIndexRepository epRepo;
+    private final EndpointIndexWriter epWriter;
+    private final DocumentRepository docRepo;
     private final ObjectMapper objectMapper;
+    private final StreamingEndpointExtractor extractor;
+
+    private static final Set<String> SUPPORTED_METHODS = Arrays.stream(ApiEndpointIndex.HttpMethod.values())
+            .map(Enum::name).collect(Collectors.toSet());
 
     @Override
     @Transactional
     public void reindex(Long docId, OpenAPI openAPI) {
+        epRepo.deleteTagsByApiDocumentId(docId);
+        epRepo.deleteMediaTypesByApiDocumentId(docId);
         epRepo.deleteByApiDocumentId(docId);
         if (openAPI.getPaths() == null) return;
 
+        ApiDocument docRef = docRepo.getReferenceById(docId);
+        Components components = openAPI.getComponents();
+        List<ApiEndpointIndex> batch = new ArrayList<>();
+
         openAPI.getPaths().forEach((path, item) -> {
             Map<HttpMethod, Operation> ops = item.readOperationsMap();
             ops.forEach((method, op) -> {
-                ApiEndpointIndex idx = new ApiEndpointIndex();
-                idx.setId(docId);
-                idx.setMethod(ApiEndpointIndex.HttpMethod.valueOf(method.name()));
-                idx.setPath(path);
-                idx.setSummary(op.getSummary());
-                idx.setTagsJson(writeJson(op.getTags()));
-                idx.setDeprecated(Boolean.TRUE.equals(op.getDeprecated()));
-                epRepo.save(idx);
+                if (!SUPPORTED_METHODS.contains(method.name())) return;
+                EndpointRecord rec = EndpointRecord.builder()
+                        .method(method.name())
+                        .path(path)
+                        .operationId(op.getOperationId())
+                        .summary(op.getSummary())
+                        .tags(op.getTags())
+                        .deprecated(Boolean.TRUE.equals(op.getDeprecated()))
+                        .securityJson(op.getSecurity() == null ? null : writeJson(op.getSecurity()))
+                        .parameters(parameters(item, op, components))
+                        .requestMediaTypes(requestMediaTypes(op.getRequestBody(), components))
+                        .responseMediaTypes(responseMediaTypes(op, components))
+                        .responseCodes(op.getResponses() == null ? List.of() : new ArrayList<>(op.getResponses().keySet()))
+                        .sizeBytes(estimateSize(op))
+                        .build();
+                batch.add(toEntity(docRef, rec));
             });
         });
+
+        // JDBC batch: id IDENTITY làm Hibernate bỏ batch insert của saveAll
+        epWriter.insertAll(docId, batch);
+    }
+
+    @Override
+    @Transactional
+    public void reindex(Long docId, String specText) {
+        epRepo.deleteTagsByApiDocumentId(docId);
+        epRepo.deleteMediaTypesByApiDocumentId(docId);
+        epRepo.deleteByApiDocumentId(docId);
+
+        ApiDocument docRef = docRepo.getReferenceById(docId);
+        List<ApiEndpointIndex> batch = new ArrayList<>();
+        var graph = extractor.extract(specText, rec -> batch.add(toEntity(docRef, rec)));
+        epWriter.insertAll(docId, batch);
+        docRepo.updateRefGraph(docId, writeJson(graph), HashUtils.sha256Hex(specText));
+    }
+
+    private ApiEndpointIndex toEntity(ApiDocument docRef, EndpointRecord rec) {
+        ApiEndpointIndex idx = new ApiEndpointIndex();
+        idx.setDocument(docRef);
+        idx.setMethod(ApiEndpointIndex.HttpMethod.valueOf(rec.method()));
+        idx.setPath(rec.path());
+        idx.setOperationId(rec.operationId());
+        idx.setSummary(rec.summary());
+        idx.setTagsJson(writeJson(rec.tags()));
+        if (rec.tags() != null) idx.getTags().addAll(rec.tags());
+        idx.setDeprecated(rec.deprecated());
+        idx.setSecurityJson(rec.securityJson());
+        idx.setParametersJson(writeJson(rec.parameters()));
+        idx.setRequestMediaTypesJson(writeJson(rec.requestMediaTypes()));
+        if (rec.requestMediaTypes() != null) idx.getRequestMediaTypes().addAll(rec.requestMediaTypes());
+        idx.setResponseMediaTypesJson(writeJson(rec.responseMediaTypes()));
+        idx.setResponseCodesJson(writeJson(rec.responseCodes()));
+        idx.setSizeBytes(rec.sizeBytes());
+        return idx;
+    }
+
+    /** Gộp parameter cấp path + cấp operation (operation override theo name+in), resolve $ref trong components. */
+    private List<Map<String, Object>> parameters(PathItem item, Operation op, Components components) {
+        Map<String, Map<String, Object>> merged = new LinkedHashMap<>();
+        for (List<Parameter> src : Arrays.asList(item.getParameters(), op.getParameters())) {
+            if (src == null) continue;
+            for (Parameter p : src) {
+                Parameter r = resolve(p, components);
+                if (r == null || r.getName() == null) continue;
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("name", r.getName());
+                m.put("in", r.getIn());
+                m.put("required", Boolean.TRUE.equals(r.getRequired()));
+                merged.put(r.getIn() + ":" + r.getName(), m);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private List<String> requestMediaTypes(RequestBody body, Components components) {
+        if (body != null && body.get$ref() != null && components != null && components.getRequestBodies() != null) {
+            body = components.getRequestBodies().get(refName(body.get$ref()));
+        }
+        return body == null ? List.of() : mediaTypes(body.getContent());
+    }
+
+    private List<String> responseMediaTypes(Operation op, Components components) {
+        if (op.getResponses() == null) return List.of();
+        Set<String> types = new LinkedHashSet<>();
+        for (ApiResponse resp : op.getResponses().values()) {
+            if (resp != null && resp.get$ref() != null && components != null && components.getResponses() != null) {
+                resp = components.getResponses().get(refName(resp.get$ref()));
+            }
+            if (resp != null) types.addAll(mediaTypes(resp.getContent()));
+        }
+        return new ArrayList<>(types);
+    }
+
+    private static List<String> mediaTypes(Content content) {
+        return content == null ? List.of() : new ArrayList<>(content.keySet());
+    }
+
+    private static Parameter resolve(Parameter p, Components components) {
+        if (p == null || p.get$ref() == null) return p;
+        if (components == null || components.getParameters() == null) return null;
+        return components.getParameters().get(refName(p.get$ref()));
+    }
+
+    private static String refName(String ref) {
+        return ref.substring(ref.lastIndexOf('/') + 1);
+    }
+
+    private static Integer estimateSize(Operation op) {
+        try { return Json.mapper().writeValueAsBytes(op).length; }
+        catch (Exception e) { return null; }
     }
 
     private String writeJson(Object o) {
@@ -46,4 +172,3 @@ public class EndpointIndexServiceImpl implements EndpointIndexService {
         catch (Exception e) { return "[]"; }
     }
 }
-
@@ -0,0 +1,77 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.entity.ApiDocument;
+import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
+import com.example.vtm_apidocs_be.repo.EndpointIndexRepository;
+import com.example.vtm_apidocs_be.service.EndpointQueryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.example.vtm_apidocs_be.repo.EndpointIndexSpecs.*;
+
+@Service
+@RequiredArgsConstructor
+public class EndpointQueryServiceImpl implements EndpointQueryService {
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    private final EndpointIndexRepository epRepo;
+
+    @Override
+    @Transactional(readOnly = true)
+    public EndpointPage query(EndpointQuery q) {
+        List<Specification<ApiEndpointIndex>> specs = new ArrayList<>();
+
+        if (q.documentId() != null) specs.add(documentId(q.documentId()));
+        if (q.methods() != null && !q.methods().isEmpty()) {
+            specs.add(methodIn(q.methods().stream().map(EndpointQueryServiceImpl::parseMethod).toList()));
+        }
+        if (q.pathPrefix() != null && !q.pathPrefix().isBlank()) specs.add(pathStartsWith(q.pathPrefix()));
+        if (q.deprecated() != null) specs.add(deprecated(q.deprecated()));
+        if (q.status() != null && !q.status().isBlank() && !"all".equalsIgnoreCase(q.status())) {
+            specs.add(documentStatus(parseStatus(q.status())));
+        }
+        if (q.categoryId() != null) specs.add(categoryId(q.categoryId()));
+        if (q.tag() != null && !q.tag().isBlank()) specs.add(hasTag(q.tag()));
+        if (q.operationId() != null && !q.operationId().isBlank()) specs.add(operationId(q.operationId()));
+        if (q.requestMediaType() != null && !q.requestMediaType().isBlank()) {
+            specs.add(requestMediaType(q.requestMediaType()));
+        }
+        if (q.afterId() != null) specs.add(idAfter(q.afterId()));
+
+        int limit = q.limit() == null ? DEFAULT_LIMIT : Math.max(1, Math.min(q.limit(), MAX_LIMIT));
+
+        // Lấy dư 1 dòng để biết còn trang sau, không cần count(*)
+        List<ApiEndpointIndex> rows = epRepo.findBy(Specification.allOf(specs),
+                fq -> fq.sortBy(Sort.by("id")).limit(limit + 1).all());
+
+        if (rows.size() <= limit) return new EndpointPage(rows, null);
+        List<ApiEndpointIndex> page = rows.subList(0, limit);
+        return new EndpointPage(new ArrayList<>(page), page.get(limit - 1).getId());
+    }
+
+    private static ApiEndpointIndex.HttpMethod parseMethod(String m) {
+        try {
+            return ApiEndpointIndex.HttpMethod.valueOf(m.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid method filter: " + m);
+        }
+    }
+
+    private static ApiDocument.Status parseStatus(String status) {
+        try {
+            return ApiDocument.Status.valueOf(status.toLowerCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid status filter: " + status
+                    + ". Allowed: draft, published, archived, or 'all'.");
+        }
+    }
+}
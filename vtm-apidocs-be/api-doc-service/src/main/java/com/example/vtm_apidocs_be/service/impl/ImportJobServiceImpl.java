@@ -0,0 +1,170 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.dto.ImportJob;
+import com.example.vtm_apidocs_be.dto.PdfGenerateOptions;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import com.example.vtm_apidocs_be.service.DocumentService;
+import com.example.vtm_apidocs_be.service.ImportJobService;
+import com.example.vtm_apidocs_be.utils.DocTextExtractor;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
+import com.example.vtm_apidocs_be.utils.ImportMetrics;
+import com.example.vtm_apidocs_be.utils.LlmAdmissionControl;
+import com.example.vtm_apidocs_be.utils.SpooledUpload;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Gọi LLM hoàn toàn non-blocking (Netty event loop), chỉ phần normalize/parse/lưu DB chạy trên
+ * scheduler bounded riêng → request /import-pdf không giữ thread Tomcat trong lúc chờ LLM.
+ * Thời gian từng stage (extract, generate, normalize, parse, persist, index) ghi vào import.stage, cả job vào import.duration.
+ */
+@Service
+@Slf4j
+public class ImportJobServiceImpl implements ImportJobService, DisposableBean {
+
+    private final DocumentService documentService;
+    private final LlmAdmissionControl admission;
+    private final ImportMetrics metrics;
+    private final Scheduler scheduler;
+    private final Duration jobTtl;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobServiceImpl(DocumentService documentService,
+                                LlmAdmissionControl admission,
+                                ImportMetrics metrics,
+                                @Value("${import.jobs.threads:4}") int threads,
+                                @Value("${import.jobs.queue:100}") int queue,
+                                @Value("${import.jobs.ttl:1h}") Duration jobTtl) {
+        this.documentService = documentService;
+        this.admission = admission;
+        this.metrics = metrics;
+        this.jobTtl = jobTtl;
+        this.scheduler = Schedulers.newBoundedElastic(threads, queue, "import-job");
+    }
+
+    @Override
+    public ImportJob submitPdfImport(String name, String slug, String version, String description, Long categoryId, DocumentSource pdf, LlmProviderType provider, PdfGenerateOptions options) {
+        return submit(name, slug, version, description, categoryId, provider, timer -> Mono.defer(() -> {
+                    timer.next("generate");
+                    return documentService.generateDraftFromPdf(name, version, description, pdf, provider, options);
+                })
+                .doFinally(s -> pdf.close()));
+    }
+
+    @Override
+    public ImportJob submitDocImport(String name, String slug, String version, String description, Long categoryId, SpooledUpload document, LlmProviderType provider, PdfGenerateOptions options) {
+        // extract (POI, blocking) chạy trên scheduler của job, không trên thread Tomcat
+        return submit(name, slug, version, description, categoryId, provider, timer -> Mono.fromCallable(() -> {
+                    timer.next("extract");
+                    metrics.bytes("document", provider, null, document.size());
+                    String text = DocTextExtractor.extract(document.path(), document.filename());
+                    metrics.bytes("document_text", provider, null, text.getBytes(StandardCharsets.UTF_8).length);
+                    return text;
+                })
+                .subscribeOn(scheduler)
+                .flatMap(text -> {
+                    timer.next("generate");
+                    return documentService.generateDraftFromText(name, version, description, text, provider, options);
+                })
+                .doFinally(s -> document.close()));
+    }
+
+    private ImportJob submit(String name, String slug, String version, String description, Long categoryId,
+                             LlmProviderType provider, Function<StageTimer, Mono<String>> generate) {
+        pruneFinished();
+        // provider đã quá tải thì trả 429 ngay, không tạo job chỉ để fail sau max-wait
+        admission.checkCapacity(provider);
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), provider, categoryId);
+        jobs.put(job.getId(), job);
+        StageTimer timer = new StageTimer(job);
+
+        generate.apply(timer)
+                .publishOn(scheduler)
+                .map(draft -> documentService.importGeneratedSpec(
+                        name, slug, version, description, categoryId, draft, timer::next))
+                .subscribe(
+                        doc -> {
+                            job.setDocumentId(doc.getId());
+                            job.setStatus(ImportJob.Status.SUCCEEDED);
+                            timer.finish(ImportMetrics.SUCCESS);
+                            stage(job, "done");
+                        },
+                        ex -> {
+                            log.warn("Import job {} failed at stage {}: {}", job.getId(), job.getStage(), ex.toString());
+                            timer.finish(ImportMetrics.ERROR);
+                            job.setError(ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName());
+                            job.setStatus(ImportJob.Status.FAILED);
+                            job.setUpdatedAt(Instant.now());
+                        });
+        return job;
+    }
+
+    @Override
+    public Optional<ImportJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private static void stage(ImportJob job, String stage) {
+        job.setStage(stage);
+        if (job.getStatus() == ImportJob.Status.PENDING) job.setStatus(ImportJob.Status.RUNNING);
+        job.setUpdatedAt(Instant.now());
+    }
+
+    /** Chuyển stage của job, đồng thời ghi thời gian stage vừa xong; tag theo provider job yêu cầu. */
+    private final class StageTimer {
+        private final ImportJob job;
+        private final Timer.Sample total = metrics.start();
+        private String current;
+        private Timer.Sample sample;
+
+        StageTimer(ImportJob job) {
+            this.job = job;
+        }
+
+        void next(String stage) {
+            close(ImportMetrics.SUCCESS);
+            current = stage;
+            sample = metrics.start();
+            stage(job, stage);
+        }
+
+        /** Stage đang chạy kết thúc với outcome (error: stage làm job fail). */
+        void finish(String outcome) {
+            close(outcome);
+            metrics.stopImport(total, job.getProvider(), outcome);
+        }
+
+        private void close(String outcome) {
+            if (sample == null) return;
+            metrics.stop(sample, current, job.getProvider(), null, outcome);
+            sample = null;
+        }
+    }
+
+    // Job đã xong quá TTL thì bỏ, tránh map phình mãi
+    private void pruneFinished() {
+        Instant cutoff = Instant.now().minus(jobTtl);
+        jobs.values().removeIf(j -> j.isFinished() && j.getUpdatedAt().isBefore(cutoff));
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
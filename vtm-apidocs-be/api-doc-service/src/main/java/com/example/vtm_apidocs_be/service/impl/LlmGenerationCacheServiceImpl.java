@@ -0,0 +1,150 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.entity.LlmGenerationCache;
+import com.example.vtm_apidocs_be.repo.LlmGenerationCacheRepository;
+import com.example.vtm_apidocs_be.service.LlmGenerationCacheService;
+import com.example.vtm_apidocs_be.utils.HashUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache kết quả LLM trong bảng llm_generation_cache, evict theo LRU khi tổng dung lượng vượt llm.cache.max-size.
+ * Hit/miss/bypass đếm ở LlmService (llm.cache.requests).
+ */
+@Service
+@Slf4j
+public class LlmGenerationCacheServiceImpl implements LlmGenerationCacheService {
+
+    private static final long UNMEASURED = Long.MIN_VALUE;
+
+    private final LlmGenerationCacheRepository repo;
+    private final ObjectMapper canonicalMapper;
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final AtomicLong totalBytes = new AtomicLong(UNMEASURED);
+
+    public LlmGenerationCacheServiceImpl(LlmGenerationCacheRepository repo,
+                                         ObjectMapper objectMapper,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${llm.cache.enabled:true}") boolean enabled,
+                                         @Value("${llm.cache.max-size:256MB}") DataSize maxSize,
+                                         @Value("${llm.cache.max-entry-size:8MB}") DataSize maxEntrySize) {
+        this.repo = repo;
+        // key options phải ổn định bất kể thứ tự put vào map
+        this.canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.enabled = enabled;
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        // chưa put lần nào thì chưa đo: NaN (backend bỏ qua điểm) thay vì số âm làm lệch dashboard
+        Gauge.builder("llm.cache.size.bytes", totalBytes, t -> t.get() == UNMEASURED ? Double.NaN : t.get())
+                .description("Tổng dung lượng content trong llm_generation_cache (NaN = chưa đo)")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String keyOf(LlmGenerateRequest req, String promptVersion) {
+        Map<String, Object> parts = new LinkedHashMap<>();
+        parts.put("pdf", sourceHash(req));
+        parts.put("provider", req.getProvider());
+        parts.put("model", req.getModel());
+        parts.put("prompt", promptVersion);
+        parts.put("mode", req.getInputMode());
+        // title/version/description được nhúng vào prompt nên cũng ảnh hưởng kết quả
+        parts.put("title", req.getTitle());
+        parts.put("version", req.getVersion());
+        parts.put("description", req.getDescription());
+        parts.put("options", req.getOptions());
+        try {
+            return HashUtils.sha256Hex(canonicalMapper.writeValueAsString(parts));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Options are not serializable: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<String> get(String cacheKey) {
+        return repo.findByCacheKey(cacheKey).map(entry -> {
+            repo.touch(entry.getId(), Instant.now());
+            return entry.getContent();
+        });
+    }
+
+    @Override
+    public void put(String cacheKey, LlmGenerateRequest req, String promptVersion, String content) {
+        long size = content.getBytes(StandardCharsets.UTF_8).length;
+        if (size > maxEntryBytes) {
+            log.debug("Skip caching LLM result {} bytes > max entry {}", size, maxEntryBytes);
+            return;
+        }
+
+        Instant now = Instant.now();
+        LlmGenerationCache entry = repo.findByCacheKey(cacheKey).orElseGet(() -> LlmGenerationCache.builder()
+                .cacheKey(cacheKey)
+                .pdfSha256(sourceHash(req))
+                .provider(req.getProvider())
+                .model(req.getModel())
+                .promptVersion(promptVersion)
+                .createdAt(now)
+                .build());
+        entry.setContent(content);
+        entry.setSizeBytes(size);
+        entry.setLastAccessAt(now);
+        try {
+            repo.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // request khác vừa ghi cùng key, giữ bản đó
+            log.debug("LLM cache entry {} written concurrently", cacheKey);
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long total = repo.totalSizeBytes();
+        while (total > maxBytes) {
+            var victims = repo.findTop50ByOrderByLastAccessAtAsc();
+            if (victims.isEmpty()) break;
+            List<Long> ids = new ArrayList<>();
+            for (var v : victims) {
+                if (total <= maxBytes) break;
+                ids.add(v.getId());
+                total -= v.getSizeBytes();
+            }
+            repo.deleteAllByIdInBatch(ids);
+            log.info("Evicted {} LLM cache entries, total now ~{} bytes", ids.size(), total);
+        }
+        totalBytes.set(total);
+    }
+
+    /** Hash tài liệu nguồn: PDF nếu có, không thì text đã trích (DOC/DOCX gửi thẳng dạng TEXT). */
+    private static String sourceHash(LlmGenerateRequest req) {
+        if (req.getPdf() == null) {
+            return HashUtils.sha256Hex(req.getDocumentText() == null ? "" : req.getDocumentText());
+        }
+        return req.getPdf().sha256(); // upload spool: mmap file, không đọc vào heap
+    }
+}
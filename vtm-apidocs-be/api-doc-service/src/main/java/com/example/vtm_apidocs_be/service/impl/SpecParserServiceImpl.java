@@ -1,6 +1,7 @@
 package com.example.vtm_apidocs_be.service.impl;
 
 import com.example.vtm_apidocs_be.service.SpecParserService;
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import io.swagger.v3.parser.core.models.SwaggerParseResult;
@@ -21,7 +22,15 @@ public class SpecParserServiceImpl implements SpecParserService {
 
     @Override
     public OpenAPI parseOrThrow(String specText) {
-        SwaggerParseResult res = new OpenAPIV3Parser().readContents(specText, null, null);
+        return orThrow(new OpenAPIV3Parser().readContents(specText, null, null));
+    }
+
+    @Override
+    public OpenAPI parseOrThrow(JsonNode spec) {
+        return orThrow(new OpenAPIV3Parser().parseJsonNode(null, spec));
+    }
+
+    private static OpenAPI orThrow(SwaggerParseResult res) {
         if (res.getOpenAPI() == null) {
             var msg = (res.getMessages() == null || res.getMessages().isEmpty())
                     ? "Cannot parse OpenAPI spec"
@@ -0,0 +1,229 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.entity.ApiDocument;
+import com.example.vtm_apidocs_be.repo.DocumentRepository;
+import com.example.vtm_apidocs_be.service.DocumentService.SpecPayload;
+import com.example.vtm_apidocs_be.service.SpecSliceService;
+import com.example.vtm_apidocs_be.utils.HashUtils;
+import com.example.vtm_apidocs_be.utils.OpenApiRefs;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@Service
+public class SpecSliceServiceImpl implements SpecSliceService {
+
+    private static final Set<String> METHODS = Set.of("get", "put", "post", "delete", "options", "head", "patch", "trace");
+
+    private final DocumentRepository docRepo;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+    // LRU theo (docId, specHash, tagSet); spec đổi -> hash đổi -> key cũ tự bị đẩy ra
+    private final Map<String, String> cache;
+
+    public SpecSliceServiceImpl(DocumentRepository docRepo,
+                                @Value("${spec.slice.cache-size:64}") int cacheSize) {
+        this.docRepo = docRepo;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SpecPayload sliceByTags(Long docId, Collection<String> tags) {
+        Set<String> tagSet = new TreeSet<>();
+        for (String t : tags) if (t != null && !t.isBlank()) tagSet.add(t.trim());
+        if (tagSet.isEmpty()) throw new IllegalArgumentException("tags must not be empty");
+
+        String tagKey = String.join(",", tagSet);
+
+        // Tra cache theo hash trước, chỉ nạp specJson khi miss (hoặc bản ghi cũ chưa có specHash)
+        String hash = docRepo.findSpecHashById(docId).orElse(null);
+        if (hash != null) {
+            String sliced = cache.get(cacheKey(docId, hash, tagKey));
+            if (sliced != null) return new SpecPayload(sliced, MediaType.APPLICATION_JSON_VALUE);
+        }
+
+        ApiDocument doc = docRepo.findById(docId).orElseThrow();
+        hash = doc.getSpecHash() != null ? doc.getSpecHash() : HashUtils.sha256Hex(doc.getSpecJson());
+        String key = cacheKey(docId, hash, tagKey);
+        String sliced = cache.get(key);
+        if (sliced == null) {
+            sliced = buildSlice(doc, hash, tagSet);
+            cache.put(key, sliced);
+        }
+        return new SpecPayload(sliced, MediaType.APPLICATION_JSON_VALUE);
+    }
+
+    private static String cacheKey(Long docId, String hash, String tagKey) {
+        return docId + "|" + hash + "|" + tagKey;
+    }
+
+    private String buildSlice(ApiDocument doc, String hash, Set<String> tagSet) {
+        JsonNode root = readTree(doc.getSpecJson());
+        if (!root.isObject()) throw new IllegalArgumentException("Invalid OpenAPI: root must be an object");
+
+        // 1) Lọc paths, thu $ref của các operation được giữ
+        Set<String> seeds = new LinkedHashSet<>();
+        ObjectNode paths = jsonMapper.createObjectNode();
+        root.path("paths").properties().forEach(pe -> {
+            if (!pe.getValue().isObject()) return;
+            JsonNode resolved = resolvePathItem(pe.getValue(), root);
+            ObjectNode item = jsonMapper.createObjectNode();
+            Set<String> itemRefs = new LinkedHashSet<>();
+            boolean any = false;
+            for (Map.Entry<String, JsonNode> f : resolved.properties()) {
+                if (METHODS.contains(f.getKey())) {
+                    if (!hasAnyTag(f.getValue(), tagSet)) continue;
+                    item.set(f.getKey(), f.getValue());
+                    OpenApiRefs.collect(f.getValue(), seeds);
+                    any = true;
+                } else {
+                    item.set(f.getKey(), f.getValue()); // parameters, summary, servers, ...
+                    OpenApiRefs.collect(f.getValue(), itemRefs);
+                }
+            }
+            if (any) {
+                paths.set(pe.getKey(), item);
+                seeds.addAll(itemRefs);
+            }
+        });
+
+        // 2) Bao đóng $ref, dùng đồ thị đã tính lúc index nếu còn khớp spec hiện tại
+        Map<String, Set<String>> graph = hash.equals(doc.getRefGraphHash()) && doc.getRefGraphJson() != null
+                ? readGraph(doc.getRefGraphJson())
+                : OpenApiRefs.graph(root.get("components"));
+        Set<String> keep = OpenApiRefs.closure(seeds, graph);
+
+        // 3) Dựng lại document, giữ thứ tự field gốc
+        ObjectNode out = jsonMapper.createObjectNode();
+        root.properties().forEach(f -> {
+            switch (f.getKey()) {
+                case "paths" -> out.set("paths", paths);
+                case "components" -> out.set("components", pruneComponents(f.getValue(), keep));
+                case "tags" -> out.set("tags", pruneTags(f.getValue(), tagSet));
+                default -> out.set(f.getKey(), f.getValue());
+            }
+        });
+        try {
+            return jsonMapper.writeValueAsString(out);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize sliced spec", e);
+        }
+    }
+
+    /**
+     * Path item {"$ref": ...} không có method nào để lọc tag: gộp với đích (components.pathItems hoặc path khác
+     * trong spec) như StreamingEndpointExtractor, field cạnh $ref thắng, parameters gộp theo (in, name).
+     * Ref ngoài / quá sâu: giữ $ref còn lại cùng phần đã gộp được.
+     */
+    private JsonNode resolvePathItem(JsonNode item, JsonNode root) {
+        if (!item.has("$ref")) return item;
+        ObjectNode merged = jsonMapper.createObjectNode();
+        JsonNode current = item;
+        for (int d = 0; ; d++) {
+            current.properties().forEach(f -> {
+                if ("$ref".equals(f.getKey())) return;
+                if ("parameters".equals(f.getKey())) mergeParameters(merged, f.getValue());
+                else if (!merged.has(f.getKey())) merged.set(f.getKey(), f.getValue());
+            });
+            JsonNode ref = current.get("$ref");
+            if (ref == null) return merged;
+            JsonNode target = d < OpenApiRefs.MAX_PATH_ITEM_REF_DEPTH ? lookupPathItem(ref.asText(), root) : null;
+            if (target == null || !target.isObject()) {
+                merged.set("$ref", ref);
+                return merged;
+            }
+            current = target;
+        }
+    }
+
+    private static JsonNode lookupPathItem(String ref, JsonNode root) {
+        String key = OpenApiRefs.componentKey(ref);
+        if (key != null && key.startsWith("pathItems/")) {
+            return root.path("components").path("pathItems").get(key.substring("pathItems/".length()));
+        }
+        if (ref.startsWith("#/paths/")) {
+            return root.path("paths").get(OpenApiRefs.unescape(ref.substring("#/paths/".length())));
+        }
+        return null;
+    }
+
+    // params của tầng ngoài đã nằm trong merged: chỉ thêm param của đích chưa có cùng (in, name) / cùng $ref
+    private void mergeParameters(ObjectNode merged, JsonNode params) {
+        if (!params.isArray()) return;
+        ArrayNode out = merged.has("parameters") ? (ArrayNode) merged.get("parameters") : merged.putArray("parameters");
+        Set<String> seen = new HashSet<>();
+        out.forEach(p -> seen.add(paramKey(p)));
+        params.forEach(p -> {
+            if (seen.add(paramKey(p))) out.add(p);
+        });
+    }
+
+    private static String paramKey(JsonNode p) {
+        return p.has("$ref") ? p.path("$ref").asText() : p.path("in").asText() + ":" + p.path("name").asText();
+    }
+
+    private ObjectNode pruneComponents(JsonNode components, Set<String> keep) {
+        ObjectNode out = jsonMapper.createObjectNode();
+        components.properties().forEach(section -> {
+            // securitySchemes được tham chiếu theo tên (security requirement), không qua $ref -> giữ nguyên
+            if ("securitySchemes".equals(section.getKey()) || !section.getValue().isObject()) {
+                out.set(section.getKey(), section.getValue());
+                return;
+            }
+            ObjectNode kept = jsonMapper.createObjectNode();
+            section.getValue().properties().forEach(e -> {
+                if (keep.contains(section.getKey() + "/" + e.getKey())) kept.set(e.getKey(), e.getValue());
+            });
+            if (!kept.isEmpty()) out.set(section.getKey(), kept);
+        });
+        return out;
+    }
+
+    private ArrayNode pruneTags(JsonNode tags, Set<String> tagSet) {
+        ArrayNode out = jsonMapper.createArrayNode();
+        tags.forEach(t -> {
+            if (tagSet.contains(t.path("name").asText())) out.add(t);
+        });
+        return out;
+    }
+
+    private static boolean hasAnyTag(JsonNode op, Set<String> tagSet) {
+        for (JsonNode t : op.path("tags")) {
+            if (tagSet.contains(t.asText())) return true;
+        }
+        return false;
+    }
+
+    private JsonNode readTree(String raw) {
+        if (raw == null || raw.isBlank()) throw new IllegalArgumentException("Invalid OpenAPI: empty spec");
+        try {
+            return (raw.stripLeading().startsWith("{") ? jsonMapper : yamlMapper).readTree(raw);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid OpenAPI: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Set<String>> readGraph(String json) {
+        try {
+            return jsonMapper.readValue(json, new TypeReference<Map<String, Set<String>>>() {});
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.dto.EndpointRecord;
+import com.example.vtm_apidocs_be.utils.OpenApiRefs;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Đọc spec (JSON/YAML) bằng Jackson streaming parser và sinh EndpointRecord cho indexer,
+ * không dựng model io.swagger.v3.oas.models.OpenAPI.
+ * Chỉ giữ lại paths + components.parameters/requestBodies/responses (để resolve $ref);
+ * các subtree khác (schemas, examples, ...) chỉ được quét lấy $ref để dựng đồ thị tham chiếu
+ * giữa các component (dùng cho cắt spec theo tag), không giữ nội dung.
+ * Path item dạng {"$ref": ...} được resolve tới components.pathItems (3.1) hoặc path khác trong cùng spec;
+ * ref ra file/URL ngoài không resolve được -> bỏ qua, đếm và log warn.
+ */
+@Slf4j
+@Component
+public class StreamingEndpointExtractor {
+
+    private static final Set<String> METHODS = Set.of("get", "put", "post", "delete", "options", "head", "patch");
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+    private record ParamRef(String ref, String name, String in, boolean required) {}
+    private record BodyRef(String ref, List<String> mediaTypes) {}
+    private record PendingOp(String method, String path, String operationId, String summary, List<String> tags,
+                             boolean deprecated, String securityJson, List<ParamRef> params, BodyRef requestBody,
+                             Map<String, BodyRef> responses, Integer sizeBytes) {}
+    /** Path item chưa resolve: ops theo method (path gán lúc expand), parameters cấp path, $ref nếu có. */
+    private record PathItem(String ref, List<ParamRef> params, Map<String, PendingOp> ops) {}
+
+    /** Tra cứu components.* theo tên, điền trong lúc stream (components có thể nằm sau paths). */
+    private static final class Refs {
+        final Map<String, ParamRef> parameters = new HashMap<>();
+        final Map<String, BodyRef> requestBodies = new HashMap<>();
+        final Map<String, BodyRef> responses = new HashMap<>();
+        final Map<String, PathItem> pathItems = new HashMap<>();
+        final Map<String, Set<String>> graph = new LinkedHashMap<>();
+    }
+
+    /**
+     * Sinh EndpointRecord vào sink; trả về đồ thị "section/name" -> các component được $ref trực tiếp.
+     */
+    public Map<String, Set<String>> extract(String specText, Consumer<EndpointRecord> sink) {
+        if (specText == null || specText.isBlank()) {
+            throw new IllegalArgumentException("Invalid OpenAPI: empty spec");
+        }
+        boolean json = specText.stripLeading().startsWith("{");
+        ObjectMapper mapper = json ? jsonMapper : yamlMapper;
+
+        Map<String, PathItem> paths = new LinkedHashMap<>();
+        Refs refs = new Refs();
+        try (JsonParser p = mapper.getFactory().createParser(specText)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Invalid OpenAPI: root must be an object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                p.nextToken();
+                switch (name) {
+                    case "paths" -> readPaths(p, paths);
+                    case "components" -> readComponents(p, refs);
+                    default -> p.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid OpenAPI: " + e.getMessage(), e);
+        }
+
+        int unresolved = 0;
+        for (Map.Entry<String, PathItem> e : paths.entrySet()) {
+            List<PendingOp> ops = new ArrayList<>();
+            if (!expand(e.getKey(), e.getValue(), paths, refs, ops, 0)) unresolved++;
+            for (PendingOp op : ops) sink.accept(resolve(op, refs));
+        }
+        if (unresolved > 0) {
+            log.warn("Skipped {} path item $ref(s) that point outside this spec or cannot be resolved", unresolved);
+        }
+        return refs.graph;
+    }
+
+    // ----- paths -----
+
+    private void readPaths(JsonParser p, Map<String, PathItem> out) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return; }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String path = p.currentName();
+            p.nextToken();
+            PathItem item = readPathItem(p, null);
+            if (item != null) out.put(path, item);
+        }
+    }
+
+    /** Đọc một path item; path của operation để null, gán khi expand (cùng path item có thể được ref từ nhiều path). */
+    private PathItem readPathItem(JsonParser p, Set<String> collect) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return null; }
+        String ref = null;
+        List<ParamRef> params = List.of();
+        Map<String, PendingOp> ops = new LinkedHashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.currentName();
+            p.nextToken();
+            if (METHODS.contains(key)) {
+                ops.put(key, readOperation(p, key.toUpperCase(Locale.ROOT), collect));
+            } else if ("parameters".equals(key)) {
+                params = readParams(p, collect);
+            } else if ("$ref".equals(key)) {
+                ref = addRef(collect, p.getValueAsString());
+            } else {
+                skip(p, collect);
+            }
+        }
+        return new PathItem(ref, params, ops);
+    }
+
+    private PendingOp readOperation(JsonParser p, String method, Set<String> collect) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return new PendingOp(method, null, null, null, null, false, null, List.of(), null, Map.of(), null);
+        }
+        long start = p.currentTokenLocation().getCharOffset();
+        String operationId = null, summary = null, securityJson = null;
+        List<String> tags = null;
+        boolean deprecated = false;
+        List<ParamRef> params = List.of();
+        BodyRef requestBody = null;
+        Map<String, BodyRef> responses = new LinkedHashMap<>();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.currentName();
+            p.nextToken();
+            switch (key) {
+                case "operationId" -> operationId = p.getValueAsString();
+                case "summary" -> summary = p.getValueAsString();
+                case "deprecated" -> deprecated = p.getValueAsBoolean();
+                case "tags" -> tags = readStrings(p);
+                case "security" -> securityJson = jsonMapper.writeValueAsString(p.readValueAsTree());
+                case "parameters" -> params = readParams(p, collect);
+                case "requestBody" -> requestBody = readBody(p, collect);
+                case "responses" -> {
+                    if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String code = p.currentName();
+                        p.nextToken();
+                        responses.put(code, readBody(p, collect));
+                    }
+                }
+                default -> skip(p, collect);
+            }
+        }
+        long end = p.currentLocation().getCharOffset();
+        Integer size = (start >= 0 && end > start) ? (int) (end - start) : null;
+        return new PendingOp(method, null, operationId, summary, tags, deprecated, securityJson,
+                params, requestBody, responses, size);
+    }
+
+    private List<ParamRef> readParams(JsonParser p, Set<String> collect) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) { p.skipChildren(); return List.of(); }
+        List<ParamRef> out = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            out.add(readParam(p, collect));
+        }
+        return out;
+    }
+
+    private ParamRef readParam(JsonParser p, Set<String> collect) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return new ParamRef(null, null, null, false); }
+        String ref = null, name = null, in = null;
+        boolean required = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.currentName();
+            p.nextToken();
+            switch (key) {
+                case "$ref" -> ref = addRef(collect, p.getValueAsString());
+                case "name" -> name = p.getValueAsString();
+                case "in" -> in = p.getValueAsString();
+                case "required" -> required = p.getValueAsBoolean();
+                default -> skip(p, collect);
+            }
+        }
+        return new ParamRef(ref, name, in, required);
+    }
+
+    /** requestBody / response: chỉ lấy $ref và danh sách media type trong content. */
+    private BodyRef readBody(JsonParser p, Set<String> collect) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return new BodyRef(null, List.of()); }
+        String ref = null;
+        List<String> mediaTypes = new ArrayList<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.currentName();
+            p.nextToken();
+            if ("$ref".equals(key)) {
+                ref = addRef(collect, p.getValueAsString());
+            } else if ("content".equals(key) && p.currentToken() == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    mediaTypes.add(p.currentName());
+                    p.nextToken();
+                    skip(p, collect);
+                }
+            } else {
+                skip(p, collect);
+            }
+        }
+        return new BodyRef(ref, mediaTypes);
+    }
+
+    private List<String> readStrings(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) { p.skipChildren(); return null; }
+        List<String> out = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (p.currentToken().isScalarValue()) out.add(p.getValueAsString());
+            else p.skipChildren();
+        }
+        return out;
+    }
+
+    // ----- components -----
+
+    private void readComponents(JsonParser p, Refs refs) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return; }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String section = p.currentName();
+            p.nextToken();
+            switch (section) {
+                case "parameters" -> readNamed(p, name -> refs.parameters.put(name, readParam(p, edges(refs, section, name))));
+                case "requestBodies" -> readNamed(p, name -> refs.requestBodies.put(name, readBody(p, edges(refs, section, name))));
+                case "responses" -> readNamed(p, name -> refs.responses.put(name, readBody(p, edges(refs, section, name))));
+                case "pathItems" -> readNamed(p, name -> {
+                    PathItem item = readPathItem(p, edges(refs, section, name));
+                    if (item != null) refs.pathItems.put(name, item);
+                });
+                // schemas, examples, securitySchemes, ...: chỉ lấy cạnh $ref
+                default -> readNamed(p, name -> skip(p, edges(refs, section, name)));
+            }
+        }
+    }
+
+    private interface NamedReader { void read(String name) throws IOException; }
+
+    private void readNamed(JsonParser p, NamedReader reader) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) { p.skipChildren(); return; }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            reader.read(name);
+        }
+    }
+
+    private static Set<String> edges(Refs refs, String section, String name) {
+        return refs.graph.computeIfAbsent(section + "/" + name, k -> new LinkedHashSet<>());
+    }
+
+    private static String addRef(Set<String> collect, String ref) {
+        if (collect != null) {
+            String key = OpenApiRefs.componentKey(ref);
+            if (key != null) collect.add(key);
+        }
+        return ref;
+    }
+
+    /** skipChildren(); nếu collect != null thì vừa bỏ qua vừa thu các giá trị "$ref" trong subtree. */
+    private static void skip(JsonParser p, Set<String> collect) throws IOException {
+        if (collect == null || !p.currentToken().isStructStart()) { p.skipChildren(); return; }
+        int depth = 1;
+        while (depth > 0) {
+            JsonToken t = p.nextToken();
+            if (t == null) return;
+            if (t.isStructStart()) depth++;
+            else if (t.isStructEnd()) depth--;
+            else if (t == JsonToken.FIELD_NAME && "$ref".equals(p.currentName())) {
+                JsonToken v = p.nextToken();
+                if (v == JsonToken.VALUE_STRING) addRef(collect, p.getText());
+                else if (v != null && v.isStructStart()) depth++;
+            }
+        }
+    }
+
+    // ----- resolve -----
+
+    /**
+     * Trải path item thành các operation gắn path; field cạnh $ref (3.1) đè lên path item được ref.
+     * Trả false nếu có $ref trong chuỗi không resolve được (ops đã resolve được vẫn được giữ).
+     */
+    private boolean expand(String path, PathItem item, Map<String, PathItem> paths, Refs refs,
+                           List<PendingOp> out, int depth) {
+        Map<String, PendingOp> ops = new LinkedHashMap<>();
+        List<ParamRef> params = new ArrayList<>();
+        boolean resolved = true;
+        PathItem current = item;
+        for (int d = depth; current != null; d++) {
+            current.ops().forEach(ops::putIfAbsent);
+            params.addAll(0, current.params()); // ngoài cùng đứng sau -> override theo (in, name) khi resolve
+            if (current.ref() == null) break;
+            PathItem target = d < OpenApiRefs.MAX_PATH_ITEM_REF_DEPTH ? lookupPathItem(current.ref(), paths, refs) : null;
+            if (target == null) {
+                resolved = false;
+                log.debug("Unresolved path item $ref {} at {}", current.ref(), path);
+            }
+            current = target;
+        }
+        for (PendingOp op : ops.values()) out.add(withPath(op, path, params));
+        return resolved;
+    }
+
+    private static PathItem lookupPathItem(String ref, Map<String, PathItem> paths, Refs refs) {
+        if (ref == null) return null;
+        String key = OpenApiRefs.componentKey(ref);
+        if (key != null && key.startsWith("pathItems/")) {
+            return refs.pathItems.get(key.substring("pathItems/".length()));
+        }
+        if (ref.startsWith("#/paths/")) {
+            return paths.get(OpenApiRefs.unescape(ref.substring("#/paths/".length())));
+        }
+        return null;
+    }
+
+    private static PendingOp withPath(PendingOp op, String path, List<ParamRef> pathParams) {
+        List<ParamRef> all = new ArrayList<>(pathParams);
+        all.addAll(op.params());
+        return new PendingOp(op.method(), path, op.operationId(), op.summary(), op.tags(), op.deprecated(),
+                op.securityJson(), all, op.requestBody(), op.responses(), op.sizeBytes());
+    }
+
+    private EndpointRecord resolve(PendingOp op, Refs refs) {
+        // operation override path-level theo (in, name)
+        Map<String, Map<String, Object>> params = new LinkedHashMap<>();
+        for (ParamRef raw : op.params()) {
+            ParamRef r = raw.ref() != null ? refs.parameters.get(refName(raw.ref())) : raw;
+            if (r == null || r.name() == null) continue;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", r.name());
+            m.put("in", r.in());
+            m.put("required", r.required());
+            params.put(r.in() + ":" + r.name(), m);
+        }
+
+        BodyRef rb = op.requestBody();
+        if (rb != null && rb.ref() != null) rb = refs.requestBodies.get(refName(rb.ref()));
+
+        Set<String> respTypes = new LinkedHashSet<>();
+        for (BodyRef resp : op.responses().values()) {
+            if (resp != null && resp.ref() != null) resp = refs.responses.get(refName(resp.ref()));
+            if (resp != null) respTypes.addAll(resp.mediaTypes());
+        }
+
+        return EndpointRecord.builder()
+                .method(op.method())
+                .path(op.path())
+                .operationId(op.operationId())
+                .summary(op.summary())
+                .tags(op.tags())
+                .deprecated(op.deprecated())
+                .securityJson(op.securityJson())
+                .parameters(new ArrayList<>(params.values()))
+                .requestMediaTypes(rb == null ? List.of() : rb.mediaTypes())
+                .responseMediaTypes(new ArrayList<>(respTypes))
+                .responseCodes(new ArrayList<>(op.responses().keySet()))
+                .sizeBytes(op.sizeBytes())
+                .build();
+    }
+
+    private static String refName(String ref) {
+        return OpenApiRefs.unescape(ref.substring(ref.lastIndexOf('/') + 1));
+    }
+}
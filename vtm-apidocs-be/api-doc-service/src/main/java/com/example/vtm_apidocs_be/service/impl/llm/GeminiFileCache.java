@@ -0,0 +1,151 @@
+package com.example.vtm_apidocs_be.service.impl.llm;
+
+import com.example.vtm_apidocs_be.utils.HashUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache file đã upload lên Gemini Files API theo sha256(PDF) + API key (file thuộc về project của key).
+ * Hạn dùng lấy theo expirationTime Gemini trả về (file sống ~48h) trừ margin, tối đa ttl.
+ * Hit quá verify-after thì kiểm tra lại file còn trên Gemini (GET files/...) trước khi dùng; mất thì upload lại.
+ * Upload đồng thời cùng key được gộp làm một.
+ * Metric: llm.gemini.file_cache{result=hit|miss|stale|expired}, llm.gemini.file_cache.size.
+ */
+@Component
+@Slf4j
+class GeminiFileCache {
+
+    /** File đã upload: uri dùng trong file_data, name ("files/...") để verify. */
+    record Entry(String uri, String name, Instant expiresAt, Instant verifiedAt) {
+        Entry verified(Instant at) {
+            return new Entry(uri, name, expiresAt, at);
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Mono<Entry>> uploading = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final Duration margin;
+    private final Duration verifyAfter;
+    private final int maxEntries;
+
+    GeminiFileCache(MeterRegistry meterRegistry,
+                    @Value("${llm.gemini.file-cache.ttl:47h}") Duration ttl,
+                    @Value("${llm.gemini.file-cache.expiry-margin:15m}") Duration margin,
+                    @Value("${llm.gemini.file-cache.verify-after:10m}") Duration verifyAfter,
+                    @Value("${llm.gemini.file-cache.max-entries:500}") int maxEntries) {
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.margin = margin;
+        this.verifyAfter = verifyAfter;
+        this.maxEntries = Math.max(1, maxEntries);
+        Gauge.builder("llm.gemini.file_cache.size", entries, Map::size)
+                .description("Số file Gemini đang được cache")
+                .register(meterRegistry);
+    }
+
+    /** Key không chứa API key dạng rõ. */
+    static String key(String pdfSha256, String apiKey) {
+        return pdfSha256 + ":" + HashUtils.sha256Hex(apiKey).substring(0, 16);
+    }
+
+    /**
+     * uri của file cho key: dùng entry còn hạn (verify lại nếu lâu chưa kiểm tra), không có thì upload.
+     * verifier trả false khi file không còn dùng được.
+     */
+    Mono<String> resolve(String key, Function<Entry, Mono<Boolean>> verifier, Supplier<Mono<Entry>> uploader) {
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                count("miss");
+                return upload(key, uploader);
+            }
+            if (!entry.expiresAt().isAfter(now)) {
+                entries.remove(key, entry);
+                count("expired");
+                return upload(key, uploader);
+            }
+            if (entry.verifiedAt().plus(verifyAfter).isAfter(now)) {
+                count("hit");
+                return Mono.just(entry.uri());
+            }
+            return verifier.apply(entry)
+                    .onErrorResume(ex -> {
+                        log.warn("Gemini file {} verify failed: {}", entry.name(), ex.toString());
+                        return Mono.just(false);
+                    })
+                    .flatMap(ok -> {
+                        if (ok) {
+                            entries.replace(key, entry, entry.verified(Instant.now()));
+                            count("hit");
+                            return Mono.just(entry.uri());
+                        }
+                        entries.remove(key, entry);
+                        count("stale");
+                        return upload(key, uploader);
+                    });
+        });
+    }
+
+    /** Gemini từ chối file_uri khi generate: bỏ entry để lần sau upload lại. */
+    void invalidateUri(String uri) {
+        entries.values().removeIf(e -> e.uri().equals(uri));
+    }
+
+    /** Hạn dùng cache: sớm hơn expirationTime của Gemini một margin, không quá ttl. */
+    Instant expiresAt(Instant uploadedAt, String remoteExpiration) {
+        Instant local = uploadedAt.plus(ttl);
+        if (remoteExpiration == null) return local;
+        try {
+            Instant remote = Instant.parse(remoteExpiration).minus(margin);
+            return remote.isBefore(local) ? remote : local;
+        } catch (RuntimeException ex) {
+            return local;
+        }
+    }
+
+    private Mono<String> upload(String key, Supplier<Mono<Entry>> uploader) {
+        return uploading.computeIfAbsent(key, k -> uploader.get()
+                        .doOnNext(entry -> put(k, entry))
+                        .doFinally(s -> uploading.remove(k))
+                        .cache())
+                .map(Entry::uri);
+    }
+
+    private void put(String key, Entry entry) {
+        if (entries.size() >= maxEntries) {
+            Instant now = Instant.now();
+            entries.values().removeIf(e -> !e.expiresAt().isAfter(now));
+            // vẫn đầy: bỏ entry sắp hết hạn nhất
+            while (entries.size() >= maxEntries) {
+                entries.entrySet().stream()
+                        .min(Comparator.comparing(e -> e.getValue().expiresAt()))
+                        .ifPresent(e -> entries.remove(e.getKey(), e.getValue()));
+            }
+        }
+        entries.put(key, entry);
+    }
+
+    private void count(String result) {
+        Counter.builder("llm.gemini.file_cache")
+                .description("Tra cache file Gemini Files API: hit | miss | stale | expired")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
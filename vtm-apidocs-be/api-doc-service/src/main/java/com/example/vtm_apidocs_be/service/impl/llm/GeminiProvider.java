@@ -1,17 +1,31 @@
 package com.example.vtm_apidocs_be.service.impl.llm;
 
+import com.example.vtm_apidocs_be.config.LlmWebClients;
 import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
 import com.example.vtm_apidocs_be.service.LlmProviderService;
+import com.example.vtm_apidocs_be.utils.Base64JsonBody;
+import com.example.vtm_apidocs_be.utils.DocumentSource;
+import com.example.vtm_apidocs_be.utils.ImportMetrics;
+import com.example.vtm_apidocs_be.utils.LlmRateLimitedException;
+import com.example.vtm_apidocs_be.utils.TokenBudget;
 import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.Base64;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -19,12 +33,23 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class GeminiProvider implements LlmProviderService {
 
-    private final WebClient.Builder webClientBuilder;
+    private final LlmWebClients webClients;
+    private final ObjectMapper objectMapper;
+    private final GeminiFileCache fileCache;
+    private final TokenBudget tokenBudget;
+    private final ImportMetrics metrics;
 
     // Models & endpoints
     private static final String DEFAULT_MODEL   = "gemini-1.5-flash";
-    private static final String GEN_URL_TPL     = "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent?key=%s";
-    private static final String UPLOAD_URL      = "https://generativelanguage.googleapis.com/upload/v1beta/files";
+    private static final String GEN_URL_TPL     = "%s/v1beta/models/%s:generateContent?key=%s";
+    private static final String STREAM_URL_TPL  = "%s/v1beta/models/%s:streamGenerateContent?alt=sse&key=%s";
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_STRING = new ParameterizedTypeReference<>() {};
+    private static final String UPLOAD_URL_TPL  = "%s/upload/v1beta/files";
+    private static final String FILE_URL_TPL    = "%s/v1beta/%s";
+
+    // Đổi được để trỏ sang stub local (profile llm-stub)
+    @Value("${gemini.api.base-url:https://generativelanguage.googleapis.com}")
+    private String baseUrl;
 
     // Switch inline vs files API at 20MB
     private static final long INLINE_LIMIT_BYTES = 20L * 1024 * 1024; // 20 MB
@@ -35,16 +60,128 @@ public class GeminiProvider implements LlmProviderService {
     }
 
     @Override
-    public String generateOpenApiFromPdf(LlmGenerateRequest req) {
-        String model  = (req.getModel() == null || req.getModel().isBlank()) ? DEFAULT_MODEL : req.getModel();
+    public Mono<String> generateOpenApiFromPdf(LlmGenerateRequest req) {
+        String apiKey = requireApiKey(req);
+        String apiUrl = GEN_URL_TPL.formatted(baseUrl, model(req), apiKey);
+
+        return contentsPart(req, apiKey).flatMap(part -> post(apiUrl, apiKey, part, req, false)
+                        .retrieve()
+                        .onStatus(HttpStatusCode::isError, r ->
+                                r.bodyToMono(String.class)
+                                        .flatMap(body -> Mono.error(LlmRateLimitedException.fromResponse(LlmProviderType.GEMINI, "Gemini", r, body)))
+                        )
+                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                        .doOnError(ex -> forgetUpload(part, ex)))
+                .map(resp -> {
+                    if (resp.get("usageMetadata") instanceof Map<?, ?> usage) {
+                        tokenBudget.recordUsage(req, (Number) usage.get("promptTokenCount"), (Number) usage.get("candidatesTokenCount"));
+                    }
+                    String json = extractText(resp);
+                    if (json == null || json.isBlank()) {
+                        throw new RuntimeException("Gemini returned empty content");
+                    }
+                    return json;
+                });
+    }
+
+    /** streamGenerateContent?alt=sse: mỗi event là một GenerateContentResponse chỉ chứa phần text mới. */
+    @Override
+    public Flux<String> streamOpenApiFromPdf(LlmGenerateRequest req) {
+        String apiKey = requireApiKey(req);
+        String apiUrl = STREAM_URL_TPL.formatted(baseUrl, model(req), apiKey);
+
+        return contentsPart(req, apiKey).flatMapMany(part -> post(apiUrl, apiKey, part, req, true)
+                        .retrieve()
+                        .onStatus(HttpStatusCode::isError, r ->
+                                r.bodyToMono(String.class)
+                                        .flatMap(body -> Mono.error(LlmRateLimitedException.fromResponse(LlmProviderType.GEMINI, "Gemini", r, body)))
+                        )
+                        .bodyToFlux(SSE_STRING)
+                        .doOnError(ex -> forgetUpload(part, ex)))
+                .mapNotNull(ServerSentEvent::data)
+                .map(this::extractStreamText)
+                .filter(t -> !t.isEmpty());
+    }
+
+    private WebClient.RequestHeadersSpec<?> post(String apiUrl, String apiKey, Map<String, Object> part,
+                                                 LlmGenerateRequest req, boolean stream) {
+        var request = webClients.get(LlmProviderType.GEMINI).post()
+                .uri(apiUrl)
+                .attribute(LlmWebClients.MODEL_ATTRIBUTE, model(req))
+                .header("X-Goog-Api-Key", apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(stream ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_JSON);
+        var payload = Map.of("contents", List.of(part));
+        if (!inlinePdf(req)) {
+            return request.bodyValue(payload);
+        }
+        // inlineData.data = PLACEHOLDER → base64 được encode dần khi ghi body
+        return Base64JsonBody.of(objectMapper, payload,
+                req.getPdf(), req.getPdf().size(),
+                metrics.nanos("base64_encode", LlmProviderType.GEMINI, model(req))).writeTo(request);
+    }
+
+    private boolean inlinePdf(LlmGenerateRequest req) {
+        return !req.isTextMode() && req.getPdf() != null && req.getPdf().size() <= INLINE_LIMIT_BYTES;
+    }
+
+    private String model(LlmGenerateRequest req) {
+        return (req.getModel() == null || req.getModel().isBlank()) ? DEFAULT_MODEL : req.getModel();
+    }
+
+    private String requireApiKey(LlmGenerateRequest req) {
         String apiKey = req.getApiKey();
         if (apiKey == null || apiKey.isBlank()) {
             throw new IllegalStateException("Gemini API key is required for this provider");
         }
-        String apiUrl = GEN_URL_TPL.formatted(model, apiKey);
+        return apiKey;
+    }
+
+    /** Prompt + PDF (inline base64 hoặc qua Files API nếu lớn). */
+    private Mono<Map<String, Object>> contentsPart(LlmGenerateRequest req, String apiKey) {
+        String prompt = prompt(req);
+        String mime = "application/pdf";
+        Mono<Map<String, Object>> contentsPart;
+
+        if (req.isTextMode()) {
+            // Text trích sẵn → không cần base64 hay Files API
+            contentsPart = Mono.just(Map.of("parts", List.of(
+                    Map.of("text", prompt),
+                    Map.of("text", "PDF DOCUMENT TEXT (extracted locally; tabs separate table columns)\n" + req.getDocumentText())
+            )));
+        } else if (!inlinePdf(req)) {
+            // Large file → Files API; file đã upload (cùng nội dung + key) còn hạn thì dùng lại, khỏi upload
+            DocumentSource pdf = req.getPdf();
+            String displayName = req.getTitle() == null ? "document.pdf" : req.getTitle();
+            contentsPart = Mono.fromCallable(() -> GeminiFileCache.key(pdf.sha256(), apiKey))
+                    .subscribeOn(Schedulers.boundedElastic()) // sha256 (mmap) của file > 20MB, không chạy trên event loop
+                    .flatMap(key -> fileCache.resolve(key,
+                            cached -> fileActive(cached.name(), apiKey),
+                            () -> uploadFile(pdf, apiKey, displayName, mime)))
+                    .map(fileUri -> Map.of("parts", List.of(
+                            Map.of("text", prompt),
+                            Map.of("file_data", Map.of(
+                                    "mime_type", mime,
+                                    "file_uri", fileUri
+                            ))
+                    )));
+        } else {
+            // Small file → inline base64
+            contentsPart = Mono.just(Map.of("parts", List.of(
+                    Map.of("text", prompt),
+                    Map.of("inlineData", Map.of(
+                            "mimeType", mime,
+                            "data", Base64JsonBody.PLACEHOLDER
+                    ))
+            )));
+        }
 
-        // Prompt (kept from your original version)
-        String prompt = """
+        return contentsPart;
+    }
+
+    // Prompt (kept from your original version)
+    private String prompt(LlmGenerateRequest req) {
+        return """
         You are a senior API architect and meticulous OpenAPI author.
         
         TASK
@@ -114,104 +251,84 @@ public class GeminiProvider implements LlmProviderService {
         OUTPUT
         * Output ONLY the OpenAPI JSON object. Nothing else.
         """.formatted(req.getTitle(), req.getVersion(), req.getDescription() == null ? "" : req.getDescription());
+    }
 
-        String mime = "application/pdf";
-        Map<String, Object> contentsPart;
+    /** Upload qua Files API rồi đổi metadata trả về thành entry cache. */
+    private Mono<GeminiFileCache.Entry> uploadFile(DocumentSource data, String apiKey, String displayName, String mime) {
+        Instant uploadedAt = Instant.now();
+        return geminiUpload(data, apiKey, displayName, mime)
+                .map(uploaded -> {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> file = (Map<String, Object>) uploaded.get("file");
+                    if (file == null || file.get("uri") == null) {
+                        throw new RuntimeException("Gemini upload failed: missing file.uri");
+                    }
+                    return new GeminiFileCache.Entry((String) file.get("uri"), (String) file.get("name"),
+                            fileCache.expiresAt(uploadedAt, (String) file.get("expirationTime")), uploadedAt);
+                });
+    }
 
-        if (req.getPdfBytes() != null && req.getPdfBytes().length > INLINE_LIMIT_BYTES) {
-            // Large file → Files API
-            Map<String, Object> uploaded = geminiUpload(req.getPdfBytes(), apiKey,
-                    req.getTitle() == null ? "document.pdf" : req.getTitle(), mime);
+    /** GET files/{id}: còn tồn tại và không FAILED thì dùng tiếp được. */
+    private Mono<Boolean> fileActive(String name, String apiKey) {
+        if (name == null) return Mono.just(false);
+        return webClients.get(LlmProviderType.GEMINI).get()
+                .uri(FILE_URL_TPL.formatted(baseUrl, name))
+                .header("X-Goog-Api-Key", apiKey)
+                .exchangeToMono(r -> r.statusCode().is2xxSuccessful()
+                        ? r.bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                                .map(file -> !"FAILED".equals(file.get("state")))
+                        : r.releaseBody().thenReturn(false));
+    }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> file = (Map<String, Object>) uploaded.get("file");
-            if (file == null || file.get("uri") == null) {
-                throw new RuntimeException("Gemini upload failed: missing file.uri");
+    /** Generate lỗi với file đã cache (trừ 429): có thể file đã bị xoá phía Gemini → bỏ cache, lần sau upload lại. */
+    @SuppressWarnings("unchecked")
+    private void forgetUpload(Map<String, Object> part, Throwable ex) {
+        if (ex instanceof LlmRateLimitedException) return;
+        for (Map<String, Object> p : (List<Map<String, Object>>) part.get("parts")) {
+            if (p.get("file_data") instanceof Map<?, ?> fileData && fileData.get("file_uri") instanceof String uri) {
+                fileCache.invalidateUri(uri);
             }
-            String fileUri = (String) file.get("uri");
-
-            contentsPart = Map.of("parts", List.of(
-                    Map.of("text", prompt),
-                    Map.of("file_data", Map.of(
-                            "mime_type", mime,
-                            "file_uri", fileUri
-                    ))
-            ));
-        } else {
-            // Small file → inline base64
-            String b64 = Base64.getEncoder().encodeToString(req.getPdfBytes());
-            contentsPart = Map.of("parts", List.of(
-                    Map.of("text", prompt),
-                    Map.of("inlineData", Map.of(
-                            "mimeType", mime,
-                            "data", b64
-                    ))
-            ));
         }
-
-        Map<String, Object> payload = Map.of("contents", List.of(contentsPart));
-
-        WebClient client = webClientBuilder
-                .defaultHeader("X-Goog-Api-Key", apiKey)
-                .build();
-
-        Map<String, Object> resp = client.post()
-                .uri(apiUrl)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(payload)
-                .retrieve()
-                .onStatus(HttpStatusCode::isError, r ->
-                        r.bodyToMono(String.class)
-                                .flatMap(body -> Mono.error(new RuntimeException("Gemini " + r.statusCode().value() + " -> " + body)))
-                )
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block();
-
-        String json = stripCodeFences(extractText(resp));
-        if (json == null || json.isBlank()) {
-            throw new RuntimeException("Gemini returned empty content");
-        }
-        return json;
     }
 
     /**
      * Gemini Files API: resumable upload (start → upload+finalize) and return file metadata JSON.
      * Response contains "file": { "uri": "files/..." , ... }
      */
-    private Map<String, Object> geminiUpload(byte[] data, String apiKey, String displayName, String mime) {
-        WebClient client = webClientBuilder.build();
+    private Mono<Map<String, Object>> geminiUpload(DocumentSource data, String apiKey, String displayName, String mime) {
+        WebClient client = webClients.get(LlmProviderType.GEMINI);
 
         // Start session (returns X-Goog-Upload-URL in headers)
-        var startResp = client.post()
-                .uri(UPLOAD_URL + "?key=" + apiKey)
+        return client.post()
+                .uri(UPLOAD_URL_TPL.formatted(baseUrl) + "?key=" + apiKey)
                 .header("X-Goog-Upload-Protocol", "resumable")
                 .header("X-Goog-Upload-Command", "start")
-                .header("X-Goog-Upload-Header-Content-Length", String.valueOf(data.length))
+                .header("X-Goog-Upload-Header-Content-Length", String.valueOf(data.size()))
                 .header("X-Goog-Upload-Header-Content-Type", mime)
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(Map.of("file", Map.of("display_name", displayName)))
                 .exchangeToMono(r -> r.toBodilessEntity())
-                .block();
-
-        String uploadUrl = startResp != null ? startResp.getHeaders().getFirst("X-Goog-Upload-URL") : null;
-        if (uploadUrl == null || uploadUrl.isBlank()) {
-            throw new RuntimeException("No X-Goog-Upload-URL from Gemini");
-        }
-
-        // Upload bytes & finalize
-        return client.post()
-                .uri(uploadUrl)
-                .header("X-Goog-Upload-Offset", "0")
-                .header("X-Goog-Upload-Command", "upload, finalize")
-                .contentType(MediaType.parseMediaType(mime))
-                .bodyValue(data)
-                .retrieve()
-                .onStatus(HttpStatusCode::isError, r ->
-                        r.bodyToMono(String.class)
-                                .flatMap(body -> Mono.error(new RuntimeException("Gemini upload " + r.statusCode().value() + " -> " + body)))
-                )
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block();
+                .flatMap(startResp -> {
+                    String uploadUrl = startResp.getHeaders().getFirst("X-Goog-Upload-URL");
+                    if (uploadUrl == null || uploadUrl.isBlank()) {
+                        return Mono.error(new RuntimeException("No X-Goog-Upload-URL from Gemini"));
+                    }
+
+                    // Upload bytes & finalize
+                    return client.post()
+                            .uri(uploadUrl)
+                            .header("X-Goog-Upload-Offset", "0")
+                            .header("X-Goog-Upload-Command", "upload, finalize")
+                            .contentType(MediaType.parseMediaType(mime))
+                            .contentLength(data.size())
+                            .body(BodyInserters.fromDataBuffers(Base64JsonBody.raw(data)))
+                            .retrieve()
+                            .onStatus(HttpStatusCode::isError, r ->
+                                    r.bodyToMono(String.class)
+                                            .flatMap(body -> Mono.error(LlmRateLimitedException.fromResponse(LlmProviderType.GEMINI, "Gemini upload", r, body)))
+                            )
+                            .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {});
+                });
     }
 
     /**
@@ -236,13 +353,15 @@ public class GeminiProvider implements LlmProviderService {
         return sb.toString();
     }
 
-    private String stripCodeFences(String s) {
-        if (s == null) return null;
-        if (s.startsWith("```")) {
-            int i = s.indexOf('{');
-            int j = s.lastIndexOf('}');
-            if (i >= 0 && j > i) return s.substring(i, j + 1);
+    /** Text trong một event stream; event cuối có thể chỉ có finishReason/usageMetadata → "". */
+    private String extractStreamText(String data) {
+        try {
+            JsonNode parts = objectMapper.readTree(data).path("candidates").path(0).path("content").path("parts");
+            var sb = new StringBuilder();
+            for (JsonNode p : parts) sb.append(p.path("text").asText(""));
+            return sb.toString();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Gemini stream: invalid event " + e.getOriginalMessage(), e);
         }
-        return s;
     }
 }
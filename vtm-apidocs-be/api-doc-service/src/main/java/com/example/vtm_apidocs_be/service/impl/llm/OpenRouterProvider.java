@@ -1,19 +1,27 @@
 package com.example.vtm_apidocs_be.service.impl.llm;
 
 
+import com.example.vtm_apidocs_be.config.LlmWebClients;
 import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
 import com.example.vtm_apidocs_be.service.LlmProviderService;
+import com.example.vtm_apidocs_be.utils.Base64JsonBody;
+import com.example.vtm_apidocs_be.utils.ImportMetrics;
+import com.example.vtm_apidocs_be.utils.LlmRateLimitedException;
+import com.example.vtm_apidocs_be.utils.TokenBudget;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
@@ -21,7 +29,12 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class OpenRouterProvider implements LlmProviderService {
 
-    private final WebClient.Builder webClientBuilder;
+    private final LlmWebClients webClients;
+    private final ObjectMapper objectMapper;
+    private final TokenBudget tokenBudget;
+    private final ImportMetrics metrics;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_STRING = new ParameterizedTypeReference<>() {};
 
     // defaults (có thể override qua req.apiUrl/req.model)
     private static final String DEFAULT_API_URL = "https://openrouter.ai/api/v1/chat/completions";
@@ -30,7 +43,25 @@ public class OpenRouterProvider implements LlmProviderService {
     @Override public LlmProviderType providerType() { return LlmProviderType.OPENROUTER; }
 
     @Override
-    public String generateOpenApiFromPdf(LlmGenerateRequest req) {
+    public Mono<String> generateOpenApiFromPdf(LlmGenerateRequest req) {
+        return call(req, false)
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .doOnNext(resp -> recordUsage(req, resp))
+                .map(this::extractContent);
+    }
+
+    /** stream:true → SSE "data: {choices:[{delta:{content}}]}", kết thúc bằng "data: [DONE]". */
+    @Override
+    public Flux<String> streamOpenApiFromPdf(LlmGenerateRequest req) {
+        return call(req, true)
+                .bodyToFlux(SSE_STRING)
+                .mapNotNull(ServerSentEvent::data) // event chỉ có comment (keep-alive) không có data
+                .takeWhile(data -> !"[DONE]".equals(data))
+                .map(this::extractDelta)
+                .filter(t -> !t.isEmpty());
+    }
+
+    private WebClient.ResponseSpec call(LlmGenerateRequest req, boolean stream) {
         var apiUrl = (req.getApiUrl() == null || req.getApiUrl().isBlank()) ? DEFAULT_API_URL : req.getApiUrl();
         var model  = (req.getModel()  == null || req.getModel().isBlank())  ? DEFAULT_MODEL   : req.getModel();
         var apiKey = req.getApiKey(); // cần truyền riêng cho openrouter
@@ -39,8 +70,6 @@ public class OpenRouterProvider implements LlmProviderService {
             throw new IllegalStateException("OpenRouter API key is required for this provider");
         }
 
-        var dataUrl = "data:application/pdf;base64," + Base64.getEncoder().encodeToString(req.getPdfBytes());
-
         var prompt = """
                 You are a senior API architect and meticulous OpenAPI author.
                 
@@ -107,10 +136,7 @@ public class OpenRouterProvider implements LlmProviderService {
                 "role", "user",
                 "content", List.of(
                         Map.of("type", "text", "text", prompt),
-                        Map.of("type", "file", "file", Map.of(
-                                "filename", "document.pdf",
-                                "file_data", dataUrl
-                        ))
+                        documentPart(req)
                 )
         ));
 
@@ -123,38 +149,62 @@ public class OpenRouterProvider implements LlmProviderService {
         payload.put("messages", messages);
         if (plugins != null) payload.put("plugins", plugins);
         payload.put("temperature", temperature);
+        if (stream) payload.put("stream", true);
 
-        var client = webClientBuilder
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
-
-        Map<String, Object> resp = client.post()
+        var request = webClients.get(LlmProviderType.OPENROUTER).post()
                 .uri(apiUrl)
-                .bodyValue(payload)
+                .attribute(LlmWebClients.MODEL_ATTRIBUTE, model)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(stream ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_JSON);
+
+        // PDF mode: base64 được encode dần khi ghi body, không dựng String base64 trong heap
+        var withBody = req.isTextMode()
+                ? request.bodyValue(payload)
+                : Base64JsonBody.of(objectMapper, payload,
+                        req.getPdf(), req.getPdf().size(),
+                        metrics.nanos("base64_encode", LlmProviderType.OPENROUTER, model)).writeTo(request);
+
+        return withBody
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, r ->
                         r.bodyToMono(String.class).flatMap(body ->
-                                Mono.error(new RuntimeException("OpenRouter " + r.statusCode().value() + " -> " + body))
+                                Mono.error(LlmRateLimitedException.fromResponse(LlmProviderType.OPENROUTER, "OpenRouter", r, body))
                         )
-                )
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block();
+                );
+    }
 
-        @SuppressWarnings("unchecked")
-        var choices = (List<Map<String, Object>>) resp.get("choices");
-        var msg = (Map<String, Object>) choices.get(0).get("message");
-        var content = (String) msg.get("content");
-        return stripCodeFences(content);
+    private Map<String, Object> documentPart(LlmGenerateRequest req) {
+        if (req.isTextMode()) {
+            return Map.of("type", "text", "text",
+                    "PDF DOCUMENT TEXT (extracted locally; tabs separate table columns)\n" + req.getDocumentText());
+        }
+        return Map.of("type", "file", "file", Map.of(
+                "filename", "document.pdf",
+                "file_data", "data:application/pdf;base64," + Base64JsonBody.PLACEHOLDER
+        ));
+    }
+
+    /** usage.prompt_tokens / completion_tokens → TokenBudget hiệu chỉnh ước lượng. */
+    private void recordUsage(LlmGenerateRequest req, Map<String, Object> resp) {
+        if (resp.get("usage") instanceof Map<?, ?> usage) {
+            tokenBudget.recordUsage(req, (Number) usage.get("prompt_tokens"), (Number) usage.get("completion_tokens"));
+        }
     }
 
-    private String stripCodeFences(String content) {
-        if (content == null) return null;
-        if (content.startsWith("```")) {
-            int i = content.indexOf('{');
-            int j = content.lastIndexOf('}');
-            if (i >= 0 && j > i) return content.substring(i, j + 1);
+    private String extractDelta(String data) {
+        try {
+            return objectMapper.readTree(data).path("choices").path(0).path("delta").path("content").asText("");
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("OpenRouter stream: invalid event " + e.getOriginalMessage(), e);
         }
-        return content;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String extractContent(Map<String, Object> resp) {
+        var choices = (List<Map<String, Object>>) resp.get("choices");
+        var msg = (Map<String, Object>) choices.get(0).get("message");
+        var content = (String) msg.get("content");
+        return content; // fence / prose được JsonRepair xử lý ở LlmService
     }
 }
@@ -0,0 +1,115 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Body JSON có một giá trị base64 lớn (PDF), ghi dạng Flux&lt;DataBuffer&gt;: phần JSON quanh nó serialize bình thường,
+ * còn file được đọc và encode base64 theo từng chunk khi gửi → không có String base64 / body hoàn chỉnh nào trong heap.
+ * Đặt {@link #PLACEHOLDER} vào đúng chỗ cần base64 trong payload (có thể nằm giữa một string, vd. sau "data:...;base64,").
+ * Flux subscribe lại được (mỗi lần mở stream mới) nên dùng được với retry.
+ */
+public record Base64JsonBody(Flux<DataBuffer> body, long contentLength) {
+
+    public static final String PLACEHOLDER = "@@VTM_BASE64_STREAM@@";
+
+    private static final int CHUNK = 48 * 1024; // bội số của 3 → nối các đoạn base64 không cần padding giữa chừng
+    private static final DataBufferFactory BUFFERS = DefaultDataBufferFactory.sharedInstance;
+
+    public static Base64JsonBody of(ObjectMapper objectMapper, Object payload, InputStreamSource source, long sourceLength) {
+        return of(objectMapper, payload, source, sourceLength, nanos -> {});
+    }
+
+    /** encodeNanos nhận tổng thời gian encode base64 (không tính I/O gửi) mỗi lần body được ghi xong. */
+    public static Base64JsonBody of(ObjectMapper objectMapper, Object payload, InputStreamSource source, long sourceLength,
+                                    LongConsumer encodeNanos) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize LLM payload: " + e.getOriginalMessage(), e);
+        }
+        byte[] marker = PLACEHOLDER.getBytes(StandardCharsets.US_ASCII);
+        int at = indexOf(json, marker);
+        if (at < 0 || indexOf(Arrays.copyOfRange(json, at + marker.length, json.length), marker) >= 0) {
+            throw new IllegalArgumentException("Payload must contain the base64 placeholder exactly once");
+        }
+        byte[] prefix = Arrays.copyOfRange(json, 0, at);
+        byte[] suffix = Arrays.copyOfRange(json, at + marker.length, json.length);
+
+        Flux<DataBuffer> body = Flux.concat(
+                Flux.defer(() -> Flux.just(BUFFERS.wrap(prefix))),
+                base64(source, encodeNanos),
+                Flux.defer(() -> Flux.just(BUFFERS.wrap(suffix))));
+        return new Base64JsonBody(body, prefix.length + 4 * ((sourceLength + 2) / 3) + suffix.length);
+    }
+
+    /** Gắn body vào request, kèm Content-Length chính xác (tránh chunked transfer-encoding). */
+    public WebClient.RequestHeadersSpec<?> writeTo(WebClient.RequestBodySpec request) {
+        return request.contentLength(contentLength).body(BodyInserters.fromDataBuffers(body));
+    }
+
+    /** Bytes gốc (không base64), vd. upload lên Gemini Files API. */
+    public static Flux<DataBuffer> raw(InputStreamSource source) {
+        return DataBufferUtils.readInputStream(source::getInputStream, BUFFERS, CHUNK)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Flux<DataBuffer> base64(InputStreamSource source, LongConsumer encodeNanos) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        return Flux.defer(() -> {
+            AtomicLong nanos = new AtomicLong();
+            return Flux.<DataBuffer, InputStream>generate(source::getInputStream, (in, sink) -> {
+                        try {
+                            byte[] buf = in.readNBytes(CHUNK);
+                            if (buf.length > 0) {
+                                long start = System.nanoTime();
+                                byte[] encoded = encoder.encode(buf);
+                                nanos.addAndGet(System.nanoTime() - start);
+                                sink.next(BUFFERS.wrap(encoded));
+                            }
+                            if (buf.length < CHUNK) sink.complete();
+                        } catch (IOException e) {
+                            sink.error(new UncheckedIOException(e));
+                        }
+                        return in;
+                    }, in -> {
+                        try {
+                            in.close();
+                        } catch (IOException ignored) {
+                            // đã đọc xong hoặc đã lỗi
+                        }
+                    })
+                    .doOnComplete(() -> encodeNanos.accept(nanos.get()));
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
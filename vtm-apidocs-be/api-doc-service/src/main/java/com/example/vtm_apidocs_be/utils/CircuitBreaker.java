@@ -0,0 +1,117 @@
+package com.example.vtm_apidocs_be.utils;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Circuit breaker theo cửa sổ N lần gọi gần nhất (count-based).
+ * CLOSED → OPEN khi tỉ lệ lỗi hoặc tỉ lệ gọi chậm vượt ngưỡng (sau tối thiểu minCalls lần);
+ * OPEN → HALF_OPEN sau openFor, cho đúng một request thử: thành công (và không chậm) thì CLOSED, ngược lại OPEN lại.
+ * Cửa sổ cũng dùng để ước lượng p95 latency của các lần gọi thành công (phục vụ hedging).
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double slowRateThreshold;
+    private final long slowCallNanos;
+    private final long openForNanos;
+
+    private final long[] latencies;
+    private final boolean[] failed;
+    private int size;
+    private int next;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int window, int minCalls, double failureRateThreshold, double slowRateThreshold,
+                          Duration slowCall, Duration openFor) {
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowRateThreshold = slowRateThreshold;
+        this.slowCallNanos = slowCall.toNanos();
+        this.openForNanos = openFor.toNanos();
+        this.latencies = new long[window];
+        this.failed = new boolean[window];
+    }
+
+    /** false = đang OPEN (hoặc HALF_OPEN đã có request thử), không nên gọi provider. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openForNanos) return false;
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) return false;
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long nanos) {
+        record(nanos, false);
+    }
+
+    public synchronized void onError(long nanos) {
+        record(nanos, true);
+    }
+
+    /** Bị huỷ (vd. thua hedge): không tính là lỗi, chỉ trả lượt thử nếu đang HALF_OPEN. */
+    public synchronized void onCancel() {
+        if (state == State.HALF_OPEN) probeInFlight = false;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** p95 latency các lần thành công trong cửa sổ; null nếu chưa đủ minSamples. */
+    public synchronized Duration p95(int minSamples) {
+        long[] ok = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (!failed[i]) ok[n++] = latencies[i];
+        }
+        if (n < Math.max(1, minSamples)) return null;
+        Arrays.sort(ok, 0, n);
+        return Duration.ofNanos(ok[Math.min(n - 1, (int) Math.ceil(n * 0.95) - 1)]);
+    }
+
+    private void record(long nanos, boolean error) {
+        latencies[next] = nanos;
+        failed[next] = error;
+        next = (next + 1) % latencies.length;
+        if (size < latencies.length) size++;
+
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (error || nanos >= slowCallNanos) open();
+            else close();
+            return;
+        }
+        if (state == State.CLOSED && size >= minCalls) {
+            int errors = 0, slow = 0;
+            for (int i = 0; i < size; i++) {
+                if (failed[i]) errors++;
+                if (latencies[i] >= slowCallNanos) slow++;
+            }
+            if (errors >= failureRateThreshold * size || slow >= slowRateThreshold * size) open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        size = 0;
+        next = 0;
+    }
+}
@@ -1,48 +1,193 @@
 package com.example.vtm_apidocs_be.utils;
 
-import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.XMLHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
-@Component
-public class DocTextExtractor {
+/**
+ * DOC/DOCX → text cho LLM, cùng quy ước với PdfTextExtractor: "\t" giữa các ô bảng, "=== Page n ===" theo ngắt trang.
+ * - .docx: mở zip từ file (không nạp cả package), SAX trên phần document chính → chỉ giữ text trong heap,
+ *   không dựng DOM XWPFDocument (300 trang Word từng làm hết heap)
+ * - .doc (binary cũ): HWPF vẫn nạp cả document, POIFS đọc từ file thay vì copy stream vào heap
+ * Trang lấy theo ngắt trang cứng và lastRenderedPageBreak Word lưu lúc save (nếu có).
+ */
+public final class DocTextExtractor {
 
-    public static String extract(MultipartFile file) {
-        String name = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
-        try (InputStream in = file.getInputStream()) {
+    private DocTextExtractor() {}
+
+    /** Chọn định dạng theo đuôi filename; file lỗi / không hỗ trợ → IllegalArgumentException. */
+    public static String extract(Path file, String filename) {
+        String name = filename == null ? "" : filename.toLowerCase();
+        try {
             if (name.endsWith(".docx")) {
-                return extractDocx(in);
-            } else if (name.endsWith(".doc")) {
-                return extractDoc(in);
-            } else {
-                throw new IllegalArgumentException("Unsupported file type");
+                return extractDocx(file);
+            }
+            if (name.endsWith(".doc")) {
+                return extractDoc(file);
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Read DOC/DOCX failed", e);
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IllegalArgumentException("Read DOC/DOCX failed: " + e.getMessage(), e);
         }
+        throw new IllegalArgumentException("Unsupported file type: " + filename);
     }
 
-    private static String extractDocx(InputStream in) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        try (org.apache.poi.xwpf.usermodel.XWPFDocument doc = new org.apache.poi.xwpf.usermodel.XWPFDocument(in)) {
-            for (var p : doc.getParagraphs()) {
-                sb.append(p.getText()).append("\n");
+    private static String extractDocx(Path file) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            PackageRelationship main = mainDocument(pkg);
+            if (main == null) {
+                throw new IllegalArgumentException("DOCX has no main document part");
+            }
+            PackagePart part = pkg.getPart(main);
+            BodyHandler handler = new BodyHandler();
+            XMLReader reader = XMLHelper.newXMLReader();
+            reader.setContentHandler(handler);
+            try (InputStream in = part.getInputStream()) {
+                reader.parse(new InputSource(in));
             }
-            // có thể đọc bảng:
-            doc.getTables().forEach(t -> t.getRows().forEach(r -> {
-                r.getTableCells().forEach(c -> sb.append(c.getText()).append("\t"));
-                sb.append("\n");
-            }));
+            return handler.text();
+        }
+    }
+
+    /** Quan hệ tới document.xml: transitional (Word mặc định) hoặc strict (Save As "Strict Open XML"). */
+    private static PackageRelationship mainDocument(OPCPackage pkg) {
+        for (String type : new String[]{PackageRelationshipTypes.CORE_DOCUMENT, PackageRelationshipTypes.STRICT_CORE_DOCUMENT}) {
+            PackageRelationshipCollection rels = pkg.getRelationshipsByType(type);
+            if (rels.size() > 0) return rels.getRelationship(0);
+        }
+        return null;
+    }
+
+    private static String extractDoc(Path file) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true);
+             WordExtractor extractor = new WordExtractor(fs)) {
+            return extractor.getText();
         }
-        return sb.toString();
     }
 
-    private static String extractDoc(InputStream in) throws IOException {
-        try (org.apache.poi.hwpf.HWPFDocument doc = new org.apache.poi.hwpf.HWPFDocument(in);
-             org.apache.poi.hwpf.extractor.WordExtractor ex = new org.apache.poi.hwpf.extractor.WordExtractor(doc)) {
-            return ex.getText();
+    /** Duyệt body của document.xml (so theo localName, dùng được cho cả namespace transitional / strict). */
+    private static final class BodyHandler extends DefaultHandler {
+
+        private final StringBuilder out = new StringBuilder();
+        private int page = 1;
+        private int lastMark;     // vị trí dòng "=== Page n ===" gần nhất
+        private boolean textSincePageMark;
+        private boolean inText;   // w:t
+        private int runDepth;     // w:r (w:tab trong w:tabs của pPr là tab stop, không phải ký tự)
+        private int tableDepth;   // w:tbl lồng nhau
+        private int skipDepth;    // mc:Fallback lặp lại nội dung của mc:Choice (text box)
+
+        BodyHandler() {
+            out.append("=== Page 1 ===\n");
+        }
+
+        String text() {
+            if (page > 1 && !textSincePageMark) out.setLength(lastMark); // ngắt trang cuối document, sau đó không còn gì
+            return out.toString();
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            if (skipDepth > 0 || "Fallback".equals(localName)) {
+                skipDepth++;
+                return;
+            }
+            switch (localName) {
+                case "t" -> inText = true;
+                case "r" -> runDepth++;
+                case "tbl" -> tableDepth++;
+                case "tab" -> {
+                    if (runDepth > 0) out.append('\t');
+                }
+                case "br" -> {
+                    if ("page".equals(attr(atts, "type"))) pageBreak();
+                    else out.append('\n');
+                }
+                case "cr" -> out.append('\n');
+                case "lastRenderedPageBreak" -> pageBreak();
+                case "pStyle" -> heading(attr(atts, "val"));
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (skipDepth > 0) {
+                skipDepth--;
+                return;
+            }
+            switch (localName) {
+                case "t" -> inText = false;
+                case "r" -> runDepth--;
+                case "tbl" -> tableDepth--;
+                case "p" -> out.append(tableDepth > 0 ? ' ' : '\n'); // đoạn trong ô bảng giữ trên cùng dòng
+                case "tc" -> trimTrailingSpace().append('\t');
+                case "tr" -> {
+                    if (!out.isEmpty() && out.charAt(out.length() - 1) == '\t') out.setLength(out.length() - 1);
+                    out.append('\n');
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText && skipDepth == 0) {
+                out.append(ch, start, length);
+                textSincePageMark = true;
+            }
+        }
+
+        /** Ngắt trang cứng và lastRenderedPageBreak thường đi liền nhau: chỉ đánh dấu khi đã có text từ lần trước. */
+        private void pageBreak() {
+            if (tableDepth > 0 || !textSincePageMark) return;
+            if (out.charAt(out.length() - 1) != '\n') out.append('\n');
+            lastMark = out.length();
+            out.append("=== Page ").append(++page).append(" ===\n");
+            textSincePageMark = false;
+        }
+
+        /** Heading1..9 / Title → "#" theo cấp, giữ cấu trúc mục lục cho LLM. */
+        private void heading(String style) {
+            if (style == null || tableDepth > 0) return;
+            if (style.equals("Title")) {
+                out.append("# ");
+            } else if (style.startsWith("Heading") && style.length() == 8 && Character.isDigit(style.charAt(7))) {
+                out.append("#".repeat(style.charAt(7) - '0')).append(' ');
+            }
+        }
+
+        private StringBuilder trimTrailingSpace() {
+            int len = out.length();
+            while (len > 0 && out.charAt(len - 1) == ' ') len--;
+            out.setLength(len);
+            return out;
+        }
+
+        /** Attribute theo localName (w:type, w:val...). */
+        private static String attr(Attributes atts, String localName) {
+            for (int i = 0; i < atts.getLength(); i++) {
+                if (localName.equals(atts.getLocalName(i))) return atts.getValue(i);
+            }
+            return null;
         }
     }
 }
@@ -0,0 +1,80 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Tài liệu gửi cho LLM: upload lớn nằm trên đĩa ({@link SpooledUpload}), đoạn PDF nhỏ (chunk) nằm trong heap.
+ * Đọc qua stream / PDFBox / hash, không cần có toàn bộ byte[] trong heap.
+ */
+public interface DocumentSource extends InputStreamSource, AutoCloseable {
+
+    long size();
+
+    /** SHA-256 hex của nội dung, tính một lần. */
+    String sha256();
+
+    /** Tối đa n byte đầu, để sniff loại file. */
+    byte[] head(int n) throws IOException;
+
+    PDDocument loadPdf() throws IOException;
+
+    /** Giải phóng tài nguyên (file tạm, ngân sách upload); gọi nhiều lần không sao. */
+    @Override
+    default void close() {
+    }
+
+    default DocumentType type() {
+        try {
+            return DocumentType.sniff(head(DocumentType.HEAD_BYTES));
+        } catch (IOException e) {
+            return DocumentType.UNKNOWN;
+        }
+    }
+
+    static DocumentSource ofBytes(byte[] bytes) {
+        return new Bytes(bytes);
+    }
+
+    /** Nội dung nằm sẵn trong heap (chunk PDF cắt ra, test). */
+    final class Bytes implements DocumentSource {
+        private final byte[] bytes;
+        private volatile String sha256;
+
+        private Bytes(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public String sha256() {
+            if (sha256 == null) sha256 = HashUtils.sha256Hex(bytes);
+            return sha256;
+        }
+
+        @Override
+        public byte[] head(int n) {
+            return Arrays.copyOf(bytes, Math.min(n, bytes.length));
+        }
+
+        @Override
+        public PDDocument loadPdf() throws IOException {
+            return Loader.loadPDF(bytes);
+        }
+    }
+}
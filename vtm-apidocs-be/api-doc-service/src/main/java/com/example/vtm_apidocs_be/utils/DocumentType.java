@@ -0,0 +1,34 @@
+package com.example.vtm_apidocs_be.utils;
+
+/** Loại file theo magic bytes đầu file, không tin phần mở rộng / Content-Type client gửi. */
+public enum DocumentType {
+    PDF, DOCX, DOC, TEXT, UNKNOWN;
+
+    /** Số byte đầu file cần để sniff. */
+    public static final int HEAD_BYTES = 512;
+
+    public static DocumentType sniff(byte[] head) {
+        if (startsWith(head, 0x25, 0x50, 0x44, 0x46, 0x2D)) return PDF;                  // %PDF-
+        if (startsWith(head, 0x50, 0x4B, 0x03, 0x04)) return DOCX;                       // zip (OOXML)
+        if (startsWith(head, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1)) return DOC; // OLE2
+        return looksLikeText(head) ? TEXT : UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] head, int... magic) {
+        if (head.length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[i] & 0xFF) != magic[i]) return false;
+        }
+        return true;
+    }
+
+    /** Text (JSON/YAML, UTF-8): không có byte NUL / ký tự điều khiển ngoài tab, xuống dòng. */
+    private static boolean looksLikeText(byte[] head) {
+        if (head.length == 0) return false;
+        for (byte b : head) {
+            int c = b & 0xFF;
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' && c != '\f') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Xấp xỉ tokenizer BPE trong một lượt duyệt, không cần vocab:
+ * - chữ / số ASCII: ~4 ký tự một token theo từng từ
+ * - chữ Latin có dấu (tiếng Việt...): ~2 ký tự một token, BPE tách nhỏ hơn
+ * - CJK: mỗi ký tự một token
+ * - dấu câu / ký hiệu: mỗi ký tự một token; khoảng trắng gộp vào từ kế tiếp
+ * Sai số thực tế được hiệu chỉnh dần bởi TokenBudget theo usage provider trả về.
+ */
+@Component
+public class HeuristicTokenCounter implements TokenCounter {
+
+    @Override
+    public long count(CharSequence text) {
+        if (text == null) return 0;
+        long tokens = 0;
+        int ascii = 0;    // độ dài đoạn chữ/số ASCII đang đếm
+        int accented = 0; // độ dài đoạn chữ có dấu đang đếm
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && Character.isLetterOrDigit(c)) {
+                ascii++;
+                continue;
+            }
+            if (Character.isLetter(c) && !isCjk(c)) {
+                accented++;
+                continue;
+            }
+            tokens += (ascii + 3) / 4 + (accented + 1) / 2;
+            ascii = 0;
+            accented = 0;
+            if (!Character.isWhitespace(c)) tokens++; // dấu câu, ký hiệu, CJK
+        }
+        return tokens + (ascii + 3) / 4 + (accented + 1) / 2;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
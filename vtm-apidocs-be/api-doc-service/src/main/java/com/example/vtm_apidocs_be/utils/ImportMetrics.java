@@ -0,0 +1,96 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.config.LlmProviderSettings;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Metric theo stage của import / generate, cùng bộ tag provider + model để dựng dashboard p99 theo provider:
+ * - import.stage{stage, provider, model, outcome}: upload_read, base64_encode, provider_http, response_decode,
+ *   repair, generate, normalize, parse, persist, index
+ * - import.payload{stage, provider, model} (bytes): upload, request, response
+ * - import.duration{provider, model, outcome}: cả job import từ lúc submit tới khi index xong
+ */
+@Component
+@RequiredArgsConstructor
+public class ImportMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final LlmProviderSettings providerSettings;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stop(Timer.Sample sample, String stage, LlmProviderType provider, String model, String outcome) {
+        sample.stop(stageTimer(stage, provider, model, outcome));
+    }
+
+    public <T> T time(String stage, LlmProviderType provider, String model, Supplier<T> work) {
+        Timer.Sample sample = start();
+        String outcome = ERROR;
+        try {
+            T result = work.get();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            stop(sample, stage, provider, model, outcome);
+        }
+    }
+
+    /** Ghi thời gian đã đo sẵn (vd. tổng thời gian encode base64 cộng dồn qua các chunk). */
+    public LongConsumer nanos(String stage, LlmProviderType provider, String model) {
+        return nanos -> stageTimer(stage, provider, model, SUCCESS).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void bytes(String stage, LlmProviderType provider, String model, long bytes) {
+        DistributionSummary.builder("import.payload")
+                .description("Kích thước dữ liệu theo stage import: upload | request | response")
+                .baseUnit("bytes")
+                .tag("stage", stage)
+                .tag("provider", provider(provider))
+                .tag("model", model(provider, model))
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    public void stopImport(Timer.Sample sample, LlmProviderType provider, String outcome) {
+        sample.stop(Timer.builder("import.duration")
+                .description("Thời gian cả job import: generate + normalize + parse + persist + index")
+                .tag("provider", provider(provider))
+                .tag("model", model(provider, null))
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private Timer stageTimer(String stage, LlmProviderType provider, String model, String outcome) {
+        return Timer.builder("import.stage")
+                .description("Thời gian từng stage của import / generate OpenAPI")
+                .tag("stage", stage)
+                .tag("provider", provider(provider))
+                .tag("model", model(provider, model))
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String provider(LlmProviderType provider) {
+        return provider == null ? "none" : provider.name().toLowerCase();
+    }
+
+    /** model không truyền thì lấy model cấu hình của provider. */
+    private String model(LlmProviderType provider, String model) {
+        if (model != null && !model.isBlank()) return model;
+        return provider == null ? "none" : providerSettings.model(provider);
+    }
+}
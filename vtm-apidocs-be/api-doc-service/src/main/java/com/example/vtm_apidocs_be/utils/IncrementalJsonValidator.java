@@ -0,0 +1,157 @@
+package com.example.vtm_apidocs_be.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Kiểm tra cấu trúc JSON theo từng đoạn text (stream LLM) mà không cần giữ cả document:
+ * lỗi như thiếu dấu phẩy, đóng sai ngoặc, key không phải string... bị phát hiện ngay tại ký tự sai.
+ * Bỏ qua phần trước dấu '{' đầu tiên (vd. ```json) và mọi thứ sau khi object gốc đóng.
+ * Literal true/false/null và số được kiểm tra theo grammar JSON ("tru", "1e", "01" là lỗi); escape trong string thì không.
+ * Những lỗi JsonRepair sửa được chắc chắn (dấu phẩy thừa trước } ], ký tự điều khiển trong string) không làm fail:
+ * caller chạy JsonRepair trên toàn văn khi stream kết thúc, giống đường không stream.
+ */
+public final class IncrementalJsonValidator {
+
+    private enum Expect { VALUE, VALUE_OR_END, KEY, KEY_OR_END, COLON, COMMA_OR_END }
+
+    private final Deque<Character> stack = new ArrayDeque<>(); // '{' hoặc '['
+    private Expect expect = Expect.VALUE;
+    private boolean started;
+    private boolean complete;
+    private boolean inString;
+    private boolean escape;
+    private boolean inScalar; // number / true / false / null
+    private final StringBuilder scalar = new StringBuilder();
+    private boolean afterComma;
+    private long position;
+
+    /** @throws IllegalArgumentException khi gặp lỗi cấu trúc, kèm vị trí ký tự */
+    public void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++, position++) {
+            if (complete) return;
+            char c = chunk.charAt(i);
+            if (!started) {
+                if (c != '{') continue;
+                started = true;
+            }
+            accept(c);
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    private void accept(char c) {
+        if (inString) {
+            if (escape) escape = false;
+            else if (c == '\\') escape = true;
+            else if (c == '"') {
+                inString = false;
+                expect = expect == Expect.COLON ? Expect.COLON : Expect.COMMA_OR_END;
+            }
+            // ký tự điều khiển chưa escape: JsonRepair escape lại, không fail
+            return;
+        }
+        if (inScalar) {
+            if (Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '+') {
+                if (scalar.length() > 64) fail("scalar too long");
+                scalar.append(c);
+                return;
+            }
+            inScalar = false;
+            if (!isValidScalar(scalar)) fail("invalid literal '" + scalar + "'");
+            expect = Expect.COMMA_OR_END;
+        }
+        if (Character.isWhitespace(c)) return;
+
+        switch (c) {
+            case '{', '[' -> {
+                requireValue(c);
+                afterComma = false;
+                stack.push(c);
+                expect = c == '{' ? Expect.KEY_OR_END : Expect.VALUE_OR_END;
+            }
+            case '}', ']' -> {
+                char open = c == '}' ? '{' : '[';
+                boolean canClose = expect == Expect.COMMA_OR_END
+                        || (open == '{' && expect == Expect.KEY_OR_END)
+                        || (open == '[' && expect == Expect.VALUE_OR_END)
+                        // dấu phẩy thừa trước ngoặc đóng: JsonRepair bỏ đi
+                        || (afterComma && expect == (open == '{' ? Expect.KEY : Expect.VALUE));
+                if (!canClose || stack.isEmpty() || stack.peek() != open) fail("unexpected '" + c + "'");
+                afterComma = false;
+                stack.pop();
+                expect = Expect.COMMA_OR_END;
+                if (stack.isEmpty()) complete = true;
+            }
+            case '"' -> {
+                if (expect == Expect.KEY || expect == Expect.KEY_OR_END) {
+                    expect = Expect.COLON; // string này là key
+                } else {
+                    requireValue(c);
+                }
+                afterComma = false;
+                inString = true;
+            }
+            case ':' -> {
+                if (expect != Expect.COLON) fail("unexpected ':'");
+                expect = Expect.VALUE;
+            }
+            case ',' -> {
+                if (expect != Expect.COMMA_OR_END || stack.isEmpty()) fail("unexpected ','");
+                expect = stack.peek() == '{' ? Expect.KEY : Expect.VALUE;
+                afterComma = true;
+            }
+            default -> {
+                if (!(c == '-' || Character.isDigit(c) || c == 't' || c == 'f' || c == 'n')) fail("unexpected '" + c + "'");
+                requireValue(c);
+                afterComma = false;
+                inScalar = true;
+                scalar.setLength(0);
+                scalar.append(c);
+            }
+        }
+    }
+
+    /** true / false / null, hoặc số: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)? */
+    static boolean isValidScalar(CharSequence s) {
+        String v = s.toString();
+        if (v.equals("true") || v.equals("false") || v.equals("null")) return true;
+        int i = 0, n = v.length();
+        if (i < n && v.charAt(i) == '-') i++;
+        if (i >= n) return false;
+        if (v.charAt(i) == '0') i++;
+        else if (isDigit(v, i)) while (isDigit(v, i)) i++;
+        else return false;
+        if (i < n && v.charAt(i) == '.') {
+            i++;
+            if (!isDigit(v, i)) return false;
+            while (isDigit(v, i)) i++;
+        }
+        if (i < n && (v.charAt(i) == 'e' || v.charAt(i) == 'E')) {
+            i++;
+            if (i < n && (v.charAt(i) == '+' || v.charAt(i) == '-')) i++;
+            if (!isDigit(v, i)) return false;
+            while (isDigit(v, i)) i++;
+        }
+        return i == n;
+    }
+
+    private static boolean isDigit(String v, int i) {
+        return i < v.length() && v.charAt(i) >= '0' && v.charAt(i) <= '9';
+    }
+
+    private void requireValue(char c) {
+        if (expect != Expect.VALUE && expect != Expect.VALUE_OR_END) fail("unexpected '" + c + "'");
+    }
+
+    private void fail(String message) {
+        throw new IllegalArgumentException("Malformed JSON at char " + position + ": " + message);
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.vtm_apidocs_be.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sửa output JSON của LLM trong một lượt duyệt, ghi thẳng ra một StringBuilder:
+ * bỏ code fence / prose trước và sau object gốc, "\/" và "u002f" → "/", bỏ dấu phẩy thừa trước } ],
+ * escape ký tự điều khiển trong string, sửa ngoặc đóng sai, và output bị cắt cụt thì đóng string/ngoặc còn mở
+ * (key hoặc giá trị dở dang bị bỏ, quay về giá trị hoàn chỉnh gần nhất).
+ * Không đổi khoảng trắng / thứ tự key: JSON vốn hợp lệ đi qua giữ nguyên (trừ escape "/").
+ */
+public final class JsonRepair {
+
+    private JsonRepair() {}
+
+    /** Những gì đã sửa; {@link #isClean()} = output vốn là JSON sạch. */
+    public record Report(boolean fenced, int leadingChars, int trailingChars, int slashEscapes, int trailingCommas,
+                         int controlChars, int mismatchedClosers, boolean truncated, int closersAdded) {
+
+        public boolean isClean() {
+            return actions().isEmpty();
+        }
+
+        /** Tên các loại sửa đã làm, dùng cho log / tag metric. */
+        public List<String> actions() {
+            List<String> actions = new ArrayList<>();
+            if (fenced) actions.add("code_fence");
+            if (leadingChars > 0 || trailingChars > 0) actions.add("surrounding_text");
+            if (slashEscapes > 0) actions.add("slash_escape");
+            if (trailingCommas > 0) actions.add("trailing_comma");
+            if (controlChars > 0) actions.add("control_char");
+            if (mismatchedClosers > 0) actions.add("mismatched_closer");
+            if (truncated) actions.add("truncated");
+            return actions;
+        }
+
+        @Override
+        public String toString() {
+            return "JsonRepair{fenced=%s, leading=%d, trailing=%d, slashEscapes=%d, trailingCommas=%d, controlChars=%d, mismatchedClosers=%d, truncated=%s, closersAdded=%d}"
+                    .formatted(fenced, leadingChars, trailingChars, slashEscapes, trailingCommas,
+                            controlChars, mismatchedClosers, truncated, closersAdded);
+        }
+    }
+
+    /** json rỗng khi input không có object JSON nào. */
+    public record Result(String json, Report report) {
+        public boolean found() {
+            return !json.isEmpty();
+        }
+    }
+
+    public static Result repair(String input) {
+        return new Repairer(input == null ? "" : input).run();
+    }
+
+    /** Như repair nhưng không có object JSON thì IllegalArgumentException. */
+    public static Result repairOrThrow(String input) {
+        Result result = repair(input);
+        if (!result.found()) {
+            throw new IllegalArgumentException("LLM output contains no JSON object");
+        }
+        return result;
+    }
+
+    private static final class Repairer {
+        private final String in;
+        private final int n;
+        private final StringBuilder out;
+        private final StringBuilder pendingWs = new StringBuilder();
+        private char[] stack = new char[32]; // '{' hoặc '['
+        private int depth;
+
+        private boolean inString;
+        private boolean inKey;
+        private boolean expectKey;
+        private boolean pendingComma;
+        private int literalStart = -1;
+        private int safeLen; // độ dài out tại giá trị hoàn chỉnh gần nhất, để cắt khi output bị cụt
+
+        private boolean fenced;
+        private int leadingChars;
+        private int trailingChars;
+        private int slashEscapes;
+        private int trailingCommas;
+        private int controlChars;
+        private int mismatchedClosers;
+        private boolean truncated;
+        private int closersAdded;
+
+        Repairer(String in) {
+            this.in = in;
+            this.n = in.length();
+            this.out = new StringBuilder(n);
+        }
+
+        Result run() {
+            int start = in.indexOf('{');
+            if (start < 0) {
+                return new Result("", report());
+            }
+            fenced = in.lastIndexOf("```", start) >= 0;
+            leadingChars = countNonWhitespace(0, start);
+
+            int i = start;
+            boolean closed = false;
+            for (; i < n; i++) {
+                char c = in.charAt(i);
+                if (inString) {
+                    int consumed = string(c, i);
+                    if (consumed < 0) break; // escape bị cắt ở cuối input
+                    i += consumed;
+                } else if (structural(c, i)) {
+                    closed = true;
+                    break;
+                }
+            }
+
+            if (closed) {
+                trailingChars = countNonWhitespace(i + 1, n);
+                fenced |= in.indexOf("```", i + 1) >= 0;
+            } else {
+                closeTruncated();
+            }
+            return new Result(out.toString(), report());
+        }
+
+        /** Một ký tự trong string; trả số ký tự input dùng thêm (lookahead), -1 nếu escape dở dang ở cuối input. */
+        private int string(char c, int i) {
+            if (c == '\\') {
+                if (i + 1 >= n) return -1;
+                char next = in.charAt(i + 1);
+                if (next == '/') {
+                    out.append('/');
+                    slashEscapes++;
+                    return 1;
+                }
+                if (next == 'u') {
+                    if (i + 5 >= n) return -1;
+                    if (isEscapedSlash(i + 2)) {
+                        out.append('/');
+                        slashEscapes++;
+                    } else {
+                        out.append(in, i, i + 6);
+                    }
+                    return 5;
+                }
+                out.append(c).append(next);
+                return 1;
+            }
+            if (c == '"') {
+                out.append(c);
+                inString = false;
+                if (inKey) {
+                    inKey = false;
+                } else {
+                    safeLen = out.length();
+                }
+                return 0;
+            }
+            if (c < 0x20) {
+                controlChars++;
+                switch (c) {
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> out.append("\\u%04x".formatted((int) c));
+                }
+                return 0;
+            }
+            // "applicationu002fjson": LLM làm rơi dấu '\' của /
+            if (c == 'u' && i + 4 < n && isEscapedSlash(i + 1)) {
+                out.append('/');
+                slashEscapes++;
+                return 4;
+            }
+            out.append(c);
+            return 0;
+        }
+
+        /** Ký tự ngoài string; true khi object gốc vừa đóng. */
+        private boolean structural(char c, int i) {
+            if (Character.isWhitespace(c)) {
+                endLiteral();
+                (pendingComma ? pendingWs : out).append(c);
+                return false;
+            }
+            switch (c) {
+                case ',' -> {
+                    endLiteral();
+                    if (pendingComma) trailingCommas++; // ",," → một dấu
+                    pendingComma = true;
+                    return false;
+                }
+                case '}', ']' -> {
+                    endLiteral();
+                    if (pendingComma) {
+                        trailingCommas++;
+                        pendingComma = false;
+                    }
+                    flushWs();
+                    return close(c);
+                }
+                case '`' -> {
+                    return false; // fence lạc giữa document
+                }
+                default -> {
+                }
+            }
+
+            if (pendingComma) {
+                out.append(',');
+                pendingComma = false;
+                expectKey = depth > 0 && stack[depth - 1] == '{';
+            }
+            flushWs();
+            switch (c) {
+                case '"' -> {
+                    endLiteral();
+                    inString = true;
+                    inKey = expectKey;
+                    out.append(c);
+                }
+                case '{', '[' -> {
+                    endLiteral();
+                    push(c);
+                    out.append(c);
+                    safeLen = out.length();
+                    expectKey = c == '{';
+                }
+                case ':' -> {
+                    endLiteral();
+                    expectKey = false;
+                    out.append(c);
+                }
+                default -> {
+                    if (literalStart < 0) literalStart = out.length();
+                    out.append(c);
+                }
+            }
+            return false;
+        }
+
+        /** Đóng ngoặc; đóng sai loại thì đóng luôn các cấp bên trong nếu có cấp khớp, không thì bỏ ký tự. */
+        private boolean close(char closer) {
+            char opener = closer == '}' ? '{' : '[';
+            int match = depth - 1;
+            while (match >= 0 && stack[match] != opener) match--;
+            if (match < 0) {
+                mismatchedClosers++;
+                return false;
+            }
+            while (depth - 1 > match) {
+                out.append(closerOf(stack[--depth]));
+                mismatchedClosers++;
+            }
+            out.append(closer);
+            depth--;
+            safeLen = out.length();
+            expectKey = false;
+            return depth == 0;
+        }
+
+        /** Output bị cắt: giữ string giá trị dở (đóng lại), bỏ key / literal dở, rồi đóng các ngoặc còn mở. */
+        private void closeTruncated() {
+            truncated = true;
+            if (inString && !inKey) {
+                out.append('"');
+                safeLen = out.length();
+            } else if (!inString && literalStart >= 0 && isLiteral(literalStart, out.length())) {
+                safeLen = out.length();
+            }
+            out.setLength(safeLen);
+            while (depth > 0) {
+                out.append(closerOf(stack[--depth]));
+                closersAdded++;
+            }
+        }
+
+        private void endLiteral() {
+            if (literalStart < 0) return;
+            literalStart = -1;
+            safeLen = out.length();
+        }
+
+        private void flushWs() {
+            if (pendingWs.isEmpty()) return;
+            out.append(pendingWs);
+            pendingWs.setLength(0);
+        }
+
+        private void push(char c) {
+            if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+            stack[depth++] = c;
+        }
+
+        private boolean isEscapedSlash(int hexStart) {
+            return in.startsWith("002", hexStart) && (in.charAt(hexStart + 3) == 'f' || in.charAt(hexStart + 3) == 'F');
+        }
+
+        /** true / false / null / số kết thúc bằng chữ số. */
+        private boolean isLiteral(int from, int to) {
+            String s = out.substring(from, to);
+            if (s.equals("true") || s.equals("false") || s.equals("null")) return true;
+            return s.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+        }
+
+        private int countNonWhitespace(int from, int to) {
+            int count = 0;
+            for (int k = from; k < to; k++) {
+                if (!Character.isWhitespace(in.charAt(k))) count++;
+            }
+            return count;
+        }
+
+        private static char closerOf(char opener) {
+            return opener == '{' ? '}' : ']';
+        }
+
+        private Report report() {
+            return new Report(fenced, leadingChars, trailingChars, slashEscapes, trailingCommas,
+                    controlChars, mismatchedClosers, truncated, closersAdded);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Admission control cho từng LLM provider: token bucket requests/phút + token ước lượng/phút,
+ * giới hạn số request đang chạy và hàng chờ có giới hạn. Không block thread: request chờ nằm trong hàng đợi,
+ * được đánh thức khi có permit trả về hoặc bucket nạp lại. Hàng chờ đầy / chờ quá max-wait thì lỗi ngay
+ * {@link LlmRateLimitedException} (HTTP 429 + Retry-After). Upstream trả 429 thì tạm dừng provider theo Retry-After.
+ *
+ * Cấu hình: llm.limits.&lt;provider&gt;.{rpm,tpm,max-in-flight,queue,max-wait}, fallback llm.limits.default.*;
+ * rpm/tpm = 0 là không giới hạn.
+ * Metric: llm.admission.in_flight, llm.admission.queued, llm.admission.wait, llm.admission.rejected{reason}.
+ */
+@Component
+@Slf4j
+public class LlmAdmissionControl {
+
+    private final Map<LlmProviderType, Limiter> limiters = new EnumMap<>(LlmProviderType.class);
+    private final MeterRegistry meterRegistry;
+
+    public LlmAdmissionControl(Environment env, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (LlmProviderType type : LlmProviderType.values()) {
+            String p = "llm.limits." + type.name().toLowerCase() + ".";
+            Limiter limiter = new Limiter(type,
+                    prop(env, p, "rpm", Long.class, 0L),
+                    prop(env, p, "tpm", Long.class, 0L),
+                    prop(env, p, "max-in-flight", Integer.class, 8),
+                    prop(env, p, "queue", Integer.class, 32),
+                    DurationStyle.detectAndParse(prop(env, p, "max-wait", String.class, "60s")));
+            limiters.put(type, limiter);
+            String tag = type.name().toLowerCase();
+            Gauge.builder("llm.admission.in_flight", limiter, Limiter::inFlight)
+                    .tag("provider", tag).register(meterRegistry);
+            Gauge.builder("llm.admission.queued", limiter, Limiter::queued)
+                    .tag("provider", tag).register(meterRegistry);
+            log.info("LLM admission {}: rpm={}, tpm={}, maxInFlight={}, queue={}",
+                    type, limiter.rpm.perMinute, limiter.tpm.perMinute, limiter.maxInFlight, limiter.queueCapacity);
+        }
+    }
+
+    private static <T> T prop(Environment env, String prefix, String key, Class<T> type, T def) {
+        T value = env.getProperty(prefix + key, type);
+        return value != null ? value : env.getProperty("llm.limits.default." + key, type, def);
+    }
+
+    /** Chạy call khi provider còn quota; permit được trả khi call kết thúc (thành công, lỗi hoặc bị huỷ). */
+    public <T> Mono<T> admit(LlmProviderType type, long estimatedTokens, Supplier<Mono<T>> call) {
+        Limiter limiter = limiters.get(type);
+        return Mono.usingWhen(limiter.acquire(estimatedTokens),
+                permit -> call.get().doOnError(limiter::onUpstreamError),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    public <T> Flux<T> admitMany(LlmProviderType type, long estimatedTokens, Supplier<Flux<T>> call) {
+        Limiter limiter = limiters.get(type);
+        return Flux.usingWhen(limiter.acquire(estimatedTokens),
+                permit -> call.get().doOnError(limiter::onUpstreamError),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    /** Kiểm tra nhanh lúc nhận request (vd. submit import job): hàng chờ đã đầy thì 429 luôn. */
+    public void checkCapacity(LlmProviderType type) {
+        Limiter limiter = limiters.get(type);
+        Duration retryAfter = limiter.rejectIfSaturated();
+        if (retryAfter != null) {
+            reject(type, "queue_full");
+            throw new LlmRateLimitedException(type, retryAfter, type + " is saturated, retry later");
+        }
+    }
+
+    private void reject(LlmProviderType type, String reason) {
+        Counter.builder("llm.admission.rejected")
+                .description("Request LLM bị từ chối bởi admission control: queue_full | timeout")
+                .tag("provider", type.name().toLowerCase())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /** Token bucket nạp liên tục theo phút; không thread-safe, Limiter giữ lock. */
+    static final class Bucket {
+        final long perMinute;
+        private double available;
+        private long refilledAt = System.nanoTime();
+
+        Bucket(long perMinute) {
+            this.perMinute = perMinute;
+            this.available = perMinute;
+        }
+
+        boolean unlimited() {
+            return perMinute <= 0;
+        }
+
+        /** Request lớn hơn cả bucket thì chỉ đòi đầy bucket, tránh chờ mãi. */
+        long clamp(long amount) {
+            return unlimited() ? 0 : Math.min(amount, perMinute);
+        }
+
+        long nanosUntil(long amount, long now) {
+            if (unlimited()) return 0;
+            refill(now);
+            double missing = clamp(amount) - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing * TimeUnit.MINUTES.toNanos(1) / perMinute);
+        }
+
+        void take(long amount) {
+            if (!unlimited()) available -= clamp(amount);
+        }
+
+        private void refill(long now) {
+            available = Math.min(perMinute, available + (double) (now - refilledAt) * perMinute / TimeUnit.MINUTES.toNanos(1));
+            refilledAt = now;
+        }
+    }
+
+    static final class Permit {
+        private final Limiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Limiter limiter) {
+            this.limiter = limiter;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) limiter.release();
+        }
+    }
+
+    private static final class Waiter {
+        final long tokens;
+        final long enqueuedAt = System.nanoTime();
+        final MonoSink<Permit> sink;
+        Permit permit; // gán dưới lock của Limiter khi được cấp
+
+        Waiter(long tokens, MonoSink<Permit> sink) {
+            this.tokens = tokens;
+            this.sink = sink;
+        }
+    }
+
+    final class Limiter {
+        final LlmProviderType type;
+        final Bucket rpm;
+        final Bucket tpm;
+        final int maxInFlight;
+        final int queueCapacity;
+        final Duration maxWait;
+        private final Timer waitTimer;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private int inFlight;
+        private long pausedUntil;
+        private Disposable scheduledDrain;
+
+        Limiter(LlmProviderType type, long rpm, long tpm, int maxInFlight, int queueCapacity, Duration maxWait) {
+            this.type = type;
+            this.rpm = new Bucket(rpm);
+            this.tpm = new Bucket(tpm);
+            this.maxInFlight = Math.max(1, maxInFlight);
+            this.queueCapacity = Math.max(0, queueCapacity);
+            this.maxWait = maxWait;
+            this.waitTimer = Timer.builder("llm.admission.wait")
+                    .description("Thời gian request LLM chờ trong hàng admission")
+                    .tag("provider", type.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int queued() {
+            return queue.size();
+        }
+
+        Mono<Permit> acquire(long tokens) {
+            return Mono.<Permit>create(sink -> {
+                        Waiter waiter = new Waiter(tokens, sink);
+                        Duration rejected;
+                        synchronized (this) {
+                            long now = System.nanoTime();
+                            boolean immediate = queue.isEmpty() && inFlight < maxInFlight && admissible(tokens, now) == 0;
+                            if (queue.size() >= queueCapacity && !immediate) {
+                                rejected = retryAfter(now);
+                            } else {
+                                rejected = null;
+                                queue.addLast(waiter);
+                            }
+                        }
+                        if (rejected != null) {
+                            reject(type, "queue_full");
+                            sink.error(new LlmRateLimitedException(type, rejected,
+                                    type + " admission queue is full (" + queueCapacity + "), retry later"));
+                            return;
+                        }
+                        sink.onCancel(() -> {
+                            Permit orphan;
+                            synchronized (this) {
+                                queue.remove(waiter);
+                                orphan = waiter.permit;
+                            }
+                            // bị huỷ đúng lúc vừa được cấp: permit không tới được subscriber, tự trả lại
+                            if (orphan != null) orphan.release();
+                            drain();
+                        });
+                        drain();
+                    })
+                    .timeout(maxWait, Mono.defer(() -> {
+                        reject(type, "timeout");
+                        return Mono.error(new LlmRateLimitedException(type, retryAfterNow(),
+                                type + " admission wait exceeded " + maxWait + ", retry later"));
+                    }));
+        }
+
+        /** Cấp permit cho các request đầu hàng còn đủ quota; thiếu bucket thì hẹn lần drain kế tiếp. */
+        void drain() {
+            List<Waiter> admitted = new ArrayList<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                while (!queue.isEmpty() && inFlight < maxInFlight) {
+                    Waiter head = queue.peekFirst();
+                    long wait = admissible(head.tokens, now);
+                    if (wait > 0) {
+                        scheduleDrain(wait);
+                        break;
+                    }
+                    queue.pollFirst();
+                    rpm.take(1);
+                    tpm.take(head.tokens);
+                    inFlight++;
+                    head.permit = new Permit(this);
+                    admitted.add(head);
+                }
+            }
+            // gọi sink ngoài lock: subscriber có thể chạy call ngay trên thread này
+            for (Waiter w : admitted) {
+                waitTimer.record(System.nanoTime() - w.enqueuedAt, TimeUnit.NANOSECONDS);
+                w.sink.success(w.permit);
+            }
+        }
+
+        void release() {
+            synchronized (this) {
+                inFlight--;
+            }
+            drain();
+        }
+
+        /** Upstream 429: dừng cấp permit tới khi hết Retry-After. */
+        void onUpstreamError(Throwable ex) {
+            if (!(ex instanceof LlmRateLimitedException rl) || rl.getProvider() != type) return;
+            synchronized (this) {
+                pausedUntil = Math.max(pausedUntil, System.nanoTime() + rl.getRetryAfter().toNanos());
+            }
+            log.warn("{} rate limited upstream, pausing admissions for {}", type, rl.getRetryAfter());
+        }
+
+        synchronized Duration rejectIfSaturated() {
+            return queue.size() >= queueCapacity && inFlight >= maxInFlight ? retryAfter(System.nanoTime()) : null;
+        }
+
+        private synchronized Duration retryAfterNow() {
+            return retryAfter(System.nanoTime());
+        }
+
+        /** 0 = cấp được ngay, > 0 = số nano cần chờ bucket / thời gian pause. */
+        private long admissible(long tokens, long now) {
+            long wait = Math.max(pausedUntil - now, 0);
+            wait = Math.max(wait, rpm.nanosUntil(1, now));
+            wait = Math.max(wait, tpm.nanosUntil(tokens, now));
+            return wait;
+        }
+
+        /** Ước lượng thô: chờ bucket cho request đầu hàng + mỗi request đang xếp hàng một "slot" rpm. */
+        private Duration retryAfter(long now) {
+            long nanos = queue.isEmpty() ? admissible(0, now) : admissible(queue.peekFirst().tokens, now);
+            if (!rpm.unlimited()) {
+                nanos += queue.size() * TimeUnit.MINUTES.toNanos(1) / rpm.perMinute;
+            }
+            return Duration.ofNanos(Math.max(nanos, TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        private void scheduleDrain(long delayNanos) {
+            if (scheduledDrain != null && !scheduledDrain.isDisposed()) return;
+            scheduledDrain = Schedulers.parallel().schedule(() -> {
+                synchronized (this) {
+                    scheduledDrain = null;
+                }
+                drain();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import lombok.Getter;
+
+/** Tài liệu ước lượng vượt context của model: từ chối trước khi gọi provider (hoặc chuyển sang chunked). */
+@Getter
+public class LlmBudgetExceededException extends RuntimeException {
+
+    private final LlmProviderType provider;
+    private final String model;
+    private final long estimatedTokens;
+    private final long limitTokens;
+    private final int pages;
+
+    public LlmBudgetExceededException(LlmProviderType provider, String model, long estimatedTokens, long limitTokens, int pages) {
+        super("Document needs ~%d tokens (%d pages) but %s/%s allows %d; use chunked mode or a larger-context model"
+                .formatted(estimatedTokens, pages, provider, model, limitTokens));
+        this.provider = provider;
+        this.model = model;
+        this.estimatedTokens = estimatedTokens;
+        this.limitTokens = limitTokens;
+        this.pages = pages;
+    }
+}
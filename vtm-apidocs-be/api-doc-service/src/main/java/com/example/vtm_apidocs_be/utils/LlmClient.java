@@ -1,5 +1,8 @@
 package com.example.vtm_apidocs_be.utils;
 
+import com.example.vtm_apidocs_be.config.LlmWebClients;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -7,12 +10,9 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.HttpStatusCode;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import io.netty.resolver.DefaultAddressResolverGroup;
 
 import java.util.List;
 import java.util.Map;
@@ -21,7 +21,10 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class LlmClient {
 
-    private final WebClient.Builder webClientBuilder;
+    private final LlmWebClients webClients;
+    private final LlmAdmissionControl admission;
+    private final ImportMetrics metrics;
+    private final ObjectMapper objectMapper;
     private WebClient llmWebClient;
 
     @Value("${llm.api.url}") private String apiUrl;
@@ -34,11 +37,8 @@ public class LlmClient {
         if (apiKey == null || apiKey.isBlank()) {
             throw new IllegalStateException("OPENROUTER_API_KEY/llm.api.key is missing");
         }
-        HttpClient httpClient = HttpClient.create()
-                .resolver(DefaultAddressResolverGroup.INSTANCE);
-
-        this.llmWebClient = webClientBuilder
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
+        // mutate() giữ connector (pool OpenRouter dùng chung), chỉ thêm default header cho bản sao này
+        this.llmWebClient = webClients.get(LlmProviderType.OPENROUTER).mutate()
                 .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader("HTTP-Referer", publicUrl)
@@ -46,7 +46,7 @@ public class LlmClient {
                 .build();
     }
 
-    public String generateOpenApiFromPdf(byte[] pdfBytes, String title, String version, String description) {
+    public Mono<String> generateOpenApiFromPdf(DocumentSource pdf, String title, String version, String description) {
         String prompt = """
             You are an API architect. Read the provided PDF and OUTPUT ONLY a valid OpenAPI 3.0.3 JSON object (no markdown, no code fences, no prose).
             Include: openapi, info(title/version/description), tags, components(schemas), paths, and security if mentioned.
@@ -55,9 +55,6 @@ public class LlmClient {
             Description: %s
         """.formatted(title, version, description == null ? "" : description);
 
-        String dataUrl = "data:application/pdf;base64," +
-                java.util.Base64.getEncoder().encodeToString(pdfBytes);
-
         // messages: text + file (base64 data URL) theo tài liệu PDF Inputs
         var messages = List.of(Map.of(
                 "role", "user",
@@ -65,7 +62,7 @@ public class LlmClient {
                         Map.of("type", "text", "text", prompt),
                         Map.of("type", "file", "file", Map.of(
                                 "filename", "document.pdf",
-                                "file_data", dataUrl
+                                "file_data", "data:application/pdf;base64," + Base64JsonBody.PLACEHOLDER
                         ))
                 )
         ));
@@ -85,19 +82,23 @@ public class LlmClient {
                 // ,"response_format", Map.of("type", "json_object")
         );
 
-        Map<String, Object> resp = llmWebClient.post()
-                .uri(apiUrl)
-                .bodyValue(payload)
+        // dùng chung quota OpenRouter với LlmService; base64 encode dần từ file khi ghi body
+        return admission.admit(LlmProviderType.OPENROUTER, pdf.size() / 8 + 4_000, () -> Base64JsonBody.of(objectMapper, payload,
+                        pdf, pdf.size(), metrics.nanos("base64_encode", LlmProviderType.OPENROUTER, model))
+                .writeTo(llmWebClient.post()
+                        .uri(apiUrl)
+                        .attribute(LlmWebClients.MODEL_ATTRIBUTE, model))
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, r ->
                         r.bodyToMono(String.class).flatMap(body ->
-                                Mono.error(new RuntimeException("OpenRouter "
-                                        + r.statusCode().value() + " -> " + body)))
+                                Mono.error(LlmRateLimitedException.fromResponse(LlmProviderType.OPENROUTER, "OpenRouter", r, body)))
                 )
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .block();
+                .map(LlmClient::extractContent));
+    }
 
-        @SuppressWarnings("unchecked")
+    @SuppressWarnings("unchecked")
+    private static String extractContent(Map<String, Object> resp) {
         var choices = (List<Map<String, Object>>) resp.get("choices");
         var msg = (Map<String, Object>) choices.get(0).get("message");
         var content = (String) msg.get("content");
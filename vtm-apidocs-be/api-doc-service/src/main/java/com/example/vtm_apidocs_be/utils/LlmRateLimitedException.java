@@ -0,0 +1,51 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import java.time.Duration;
+
+/**
+ * Provider LLM đang quá tải: hàng chờ admission đầy / chờ quá lâu, hoặc upstream trả 429.
+ * Controller map sang HTTP 429 + Retry-After.
+ */
+@Getter
+public class LlmRateLimitedException extends RuntimeException {
+
+    private final LlmProviderType provider;
+    private final Duration retryAfter;
+
+    public LlmRateLimitedException(LlmProviderType provider, Duration retryAfter, String message) {
+        super(message);
+        this.provider = provider;
+        this.retryAfter = retryAfter;
+    }
+
+    /** Giá trị header Retry-After (giây, làm tròn lên, tối thiểu 1). */
+    public long retryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    /** Lỗi HTTP từ provider: 429 thành LlmRateLimitedException (giữ Retry-After), còn lại RuntimeException như cũ. */
+    public static RuntimeException fromResponse(LlmProviderType provider, String label, ClientResponse response, String body) {
+        if (response.statusCode().value() == 429) {
+            return upstream(provider, response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER), label + " 429 -> " + body);
+        }
+        return new RuntimeException(label + " " + response.statusCode().value() + " -> " + body);
+    }
+
+    /** Retry-After của upstream (nếu có, dạng giây) được giữ lại. */
+    public static LlmRateLimitedException upstream(LlmProviderType provider, String retryAfterHeader, String message) {
+        Duration retryAfter = Duration.ofSeconds(30);
+        if (retryAfterHeader != null) {
+            try {
+                retryAfter = Duration.ofSeconds(Math.max(1, Long.parseLong(retryAfterHeader.trim())));
+            } catch (NumberFormatException ignored) {
+                // dạng HTTP-date: giữ mặc định
+            }
+        }
+        return new LlmRateLimitedException(provider, retryAfter, message);
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.config.LlmProviderSettings;
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Chính sách route LLM: thử provider chính rồi lần lượt các fallback (theo request, sau đó theo cấu hình),
+ * bỏ qua provider đang mở circuit. Nếu bật hedging: provider hiện tại chạy quá p95 quan sát được thì gọi song song
+ * provider kế tiếp, lấy kết quả hợp lệ đầu tiên và huỷ bên còn lại.
+ * Thời gian chờ admission không tính vào latency của breaker (p95 dùng cho hedge) và không chạy hedge timer:
+ * call nhận onAdmit và phải bọc phần chạy sau khi có permit bằng nó.
+ * Kết quả trả kèm request đã thực sự sinh ra nó (Routed): có thể là fallback / hedge chứ không phải provider chính.
+ * Metric: llm.route.decisions{provider,decision}, llm.circuit.state{provider}.
+ */
+@Component
+@Slf4j
+public class LlmRouter {
+
+    private final LlmProviderSettings settings;
+    private final MeterRegistry meterRegistry;
+    private final Map<LlmProviderType, CircuitBreaker> breakers = new EnumMap<>(LlmProviderType.class);
+    private final List<LlmProviderType> defaultFallbacks;
+    private final boolean hedgeEnabled;
+    private final int hedgeMinSamples;
+    private final Duration hedgeMinDelay;
+
+    /** Content cùng request (provider, model...) đã sinh ra nó. */
+    public record Routed(LlmGenerateRequest request, String content) {}
+
+    public LlmRouter(LlmProviderSettings settings,
+                     MeterRegistry meterRegistry,
+                     @Value("${llm.routing.fallbacks:}") List<LlmProviderType> defaultFallbacks,
+                     @Value("${llm.circuit.window:20}") int window,
+                     @Value("${llm.circuit.min-calls:5}") int minCalls,
+                     @Value("${llm.circuit.failure-rate:0.5}") double failureRate,
+                     @Value("${llm.circuit.slow-call-rate:0.8}") double slowCallRate,
+                     @Value("${llm.circuit.slow-call:120s}") Duration slowCall,
+                     @Value("${llm.circuit.open-for:60s}") Duration openFor,
+                     @Value("${llm.hedge.enabled:false}") boolean hedgeEnabled,
+                     @Value("${llm.hedge.min-samples:10}") int hedgeMinSamples,
+                     @Value("${llm.hedge.min-delay:5s}") Duration hedgeMinDelay) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.defaultFallbacks = defaultFallbacks == null ? List.of() : defaultFallbacks;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinSamples = hedgeMinSamples;
+        this.hedgeMinDelay = hedgeMinDelay;
+        for (LlmProviderType type : LlmProviderType.values()) {
+            CircuitBreaker breaker = new CircuitBreaker(window, minCalls, failureRate, slowCallRate, slowCall, openFor);
+            breakers.put(type, breaker);
+            Gauge.builder("llm.circuit.state", breaker, b -> b.state().ordinal())
+                    .description("0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN")
+                    .tag("provider", type.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /** Provider chính + fallback theo request + fallback mặc định, không trùng, chỉ gồm provider đã đăng ký. */
+    public List<LlmProviderType> chain(LlmGenerateRequest req, Set<LlmProviderType> registered) {
+        Set<LlmProviderType> chain = new LinkedHashSet<>();
+        chain.add(req.getProvider());
+        if (req.getFallbacks() != null) chain.addAll(req.getFallbacks());
+        chain.addAll(defaultFallbacks);
+        chain.retainAll(registered);
+        return new ArrayList<>(chain);
+    }
+
+    public Mono<Routed> route(LlmGenerateRequest req, List<LlmProviderType> chain,
+                              BiFunction<LlmGenerateRequest, UnaryOperator<Mono<String>>, Mono<String>> call) {
+        return attempt(req, chain, 0, call, null);
+    }
+
+    /** Provider đầu tiên trong chain có circuit cho phép (dùng cho stream: không failover giữa chừng). */
+    public Mono<LlmGenerateRequest> pick(LlmGenerateRequest req, List<LlmProviderType> chain) {
+        for (int i = 0; i < chain.size(); i++) {
+            LlmProviderType type = chain.get(i);
+            if (!breakers.get(type).tryAcquire()) {
+                decision(type, "skipped_open");
+                continue;
+            }
+            try {
+                LlmGenerateRequest target = i == 0 ? req : settings.forProvider(req, type);
+                decision(type, i == 0 ? "primary" : "fallback");
+                return Mono.just(target);
+            } catch (RuntimeException ex) {
+                breakers.get(type).onCancel();
+                decision(type, "unconfigured");
+            }
+        }
+        decision(req.getProvider(), "exhausted");
+        return Mono.error(new IllegalStateException("No LLM provider available (circuits open): " + chain));
+    }
+
+    /**
+     * Ghi kết quả một lần gọi vào circuit breaker của provider.
+     * Hết quota (429 / admission) không phải provider hỏng: không tính là lỗi, chỉ trả lượt half-open.
+     */
+    public <T> Mono<T> guarded(LlmProviderType type, Mono<T> call) {
+        CircuitBreaker breaker = breakers.get(type);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(v -> breaker.onSuccess(System.nanoTime() - start))
+                    .doOnError(ex -> onError(breaker, ex, start))
+                    .doOnCancel(breaker::onCancel);
+        });
+    }
+
+    public <T> Flux<T> guarded(LlmProviderType type, Flux<T> call) {
+        CircuitBreaker breaker = breakers.get(type);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnComplete(() -> breaker.onSuccess(System.nanoTime() - start))
+                    .doOnError(ex -> onError(breaker, ex, start))
+                    .doOnCancel(breaker::onCancel);
+        });
+    }
+
+    /**
+     * Như guarded, nhưng đồng hồ breaker chỉ chạy từ khi call gọi onAdmit (đã có permit admission).
+     * Kết thúc trước lúc đó (bị từ chối, hết hạn chờ, cancel) thì chỉ trả lượt half-open, không tính là lỗi.
+     */
+    public <T> Flux<T> admitted(LlmProviderType type, Function<UnaryOperator<Flux<T>>, Flux<T>> call) {
+        CircuitBreaker breaker = breakers.get(type);
+        return Flux.defer(() -> {
+            AtomicBoolean started = new AtomicBoolean();
+            return call.apply(inner -> Flux.defer(() -> {
+                        started.set(true);
+                        return guarded(type, inner);
+                    }))
+                    .doFinally(s -> {
+                        if (!started.get()) breaker.onCancel();
+                    });
+        });
+    }
+
+    private Mono<String> admitted(LlmProviderType type, Function<UnaryOperator<Mono<String>>, Mono<String>> call, Runnable onStart) {
+        CircuitBreaker breaker = breakers.get(type);
+        return Mono.defer(() -> {
+            AtomicBoolean started = new AtomicBoolean();
+            return call.apply(inner -> Mono.defer(() -> {
+                        started.set(true);
+                        onStart.run();
+                        return guarded(type, inner);
+                    }))
+                    .doFinally(s -> {
+                        if (!started.get()) breaker.onCancel();
+                    });
+        });
+    }
+
+    private static void onError(CircuitBreaker breaker, Throwable ex, long start) {
+        // từ chối phía mình (429 / vượt context) không phải dấu hiệu provider hỏng
+        if (ex instanceof LlmRateLimitedException || ex instanceof LlmBudgetExceededException) breaker.onCancel();
+        else breaker.onError(System.nanoTime() - start);
+    }
+
+    private Mono<Routed> attempt(LlmGenerateRequest req, List<LlmProviderType> chain, int i,
+                                 BiFunction<LlmGenerateRequest, UnaryOperator<Mono<String>>, Mono<String>> call,
+                                 Throwable lastError) {
+        if (i >= chain.size()) {
+            decision(req.getProvider(), "exhausted");
+            return Mono.error(lastError != null ? lastError
+                    : new IllegalStateException("No LLM provider available (circuits open): " + chain));
+        }
+        LlmProviderType type = chain.get(i);
+        if (!breakers.get(type).tryAcquire()) {
+            decision(type, "skipped_open");
+            return attempt(req, chain, i + 1, call, lastError);
+        }
+
+        LlmGenerateRequest target;
+        try {
+            target = i == 0 ? req : settings.forProvider(req, type);
+        } catch (RuntimeException ex) {
+            breakers.get(type).onCancel();
+            decision(type, "unconfigured");
+            return attempt(req, chain, i + 1, call, ex);
+        }
+        decision(type, i == 0 ? "primary" : "fallback");
+        Sinks.Empty<Void> primaryAdmitted = Sinks.empty();
+        Mono<Routed> current = admitted(type, onAdmit -> call.apply(target, onAdmit), primaryAdmitted::tryEmitEmpty)
+                .map(content -> new Routed(target, content));
+
+        Duration hedgeAfter = hedgeDelay(type);
+        if (hedgeAfter != null && i + 1 < chain.size()) {
+            LlmProviderType hedgeType = chain.get(i + 1);
+            AtomicBoolean hedgeRan = new AtomicBoolean();
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            AtomicReference<Throwable> hedgeError = new AtomicReference<>();
+            Sinks.One<Boolean> primaryFailed = Sinks.one();
+
+            Mono<Routed> primary = current.doOnError(ex -> {
+                primaryError.set(ex);
+                primaryFailed.tryEmitValue(true);
+            });
+            // timer chỉ bắt đầu khi primary đã có permit (không hedge lúc primary còn xếp hàng);
+            // primary lỗi khi chưa hết delay: huỷ timer, hedge không chạy, đi tiếp chain ngay (i + 1)
+            Mono<Routed> hedge = primaryAdmitted.asMono().then(Mono.delay(hedgeAfter))
+                    .takeUntilOther(primaryFailed.asMono())
+                    .flatMap(tick -> {
+                        if (!breakers.get(hedgeType).tryAcquire()) {
+                            decision(hedgeType, "skipped_open");
+                            return Mono.<Routed>empty();
+                        }
+                        LlmGenerateRequest hedgeTarget;
+                        try {
+                            hedgeTarget = settings.forProvider(req, hedgeType);
+                        } catch (RuntimeException ex) {
+                            breakers.get(hedgeType).onCancel();
+                            decision(hedgeType, "unconfigured");
+                            return Mono.<Routed>empty();
+                        }
+                        hedgeRan.set(true);
+                        decision(hedgeType, "hedge");
+                        log.info("Hedging {} with {} after {}", type, hedgeType, hedgeAfter);
+                        return admitted(hedgeType, onAdmit -> call.apply(hedgeTarget, onAdmit), () -> {})
+                                .map(content -> new Routed(hedgeTarget, content))
+                                .doOnError(hedgeError::set);
+                    });
+            // bên nào có kết quả hợp lệ trước thì thắng, bên còn lại bị cancel; không có kết quả thì đi tiếp chain,
+            // bỏ qua hedgeType chỉ khi nó thực sự đã chạy
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorResume(ex -> {
+                        boolean ran = hedgeRan.get();
+                        Throwable cause = ran && hedgeError.get() != null ? hedgeError.get()
+                                : primaryError.get() != null ? primaryError.get() : ex;
+                        log.warn("LLM provider {} failed{}: {}", type, ran ? " (hedge " + hedgeType + " too)" : "", cause.toString());
+                        return attempt(req, chain, ran ? i + 2 : i + 1, call, cause);
+                    });
+        }
+        return current.onErrorResume(ex -> {
+            log.warn("LLM provider {} failed: {}", type, ex.toString());
+            return attempt(req, chain, i + 1, call, ex);
+        });
+    }
+
+    private Duration hedgeDelay(LlmProviderType type) {
+        if (!hedgeEnabled) return null;
+        Duration p95 = breakers.get(type).p95(hedgeMinSamples);
+        if (p95 == null) return null;
+        return p95.compareTo(hedgeMinDelay) < 0 ? hedgeMinDelay : p95;
+    }
+
+    private void decision(LlmProviderType type, String decision) {
+        Counter.builder("llm.route.decisions")
+                .description("Quyết định route LLM: primary | fallback | hedge | skipped_open | unconfigured | exhausted")
+                .tag("provider", type.name().toLowerCase())
+                .tag("decision", decision)
+                .register(meterRegistry)
+                .increment();
+    }
+}
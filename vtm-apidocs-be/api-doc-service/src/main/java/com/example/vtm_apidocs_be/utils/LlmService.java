@@ -3,13 +3,25 @@ package com.example.vtm_apidocs_be.utils;
 
 import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import com.example.vtm_apidocs_be.service.LlmGenerationCacheService;
 import com.example.vtm_apidocs_be.service.LlmProviderService;
+import com.example.vtm_apidocs_be.service.SpecParserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
 
 
 @Service
@@ -17,8 +29,24 @@ import java.util.Map;
 public class LlmService {
 
     private final Map<LlmProviderType, LlmProviderService> providerMap = new EnumMap<>(LlmProviderType.class);
+    private final LlmGenerationCacheService cache;
+    private final LlmRouter router;
+    private final LlmAdmissionControl admission;
+    private final TokenBudget budget;
+    private final ImportMetrics metrics;
+    private final SpecParserService parser;
+    private final MeterRegistry meterRegistry;
 
-    public LlmService(List<LlmProviderService> providers) {
+    public LlmService(List<LlmProviderService> providers, LlmGenerationCacheService cache, LlmRouter router,
+                      LlmAdmissionControl admission, TokenBudget budget, ImportMetrics metrics,
+                      SpecParserService parser, MeterRegistry meterRegistry) {
+        this.parser = parser;
+        this.cache = cache;
+        this.router = router;
+        this.admission = admission;
+        this.budget = budget;
+        this.metrics = metrics;
+        this.meterRegistry = meterRegistry;
         // Tự “factory hoá”: Map<ProviderType, Provider>
         for (LlmProviderService p : providers) {
             var type = p.providerType();
@@ -29,18 +57,241 @@ public class LlmService {
         log.info("Registered LLM providers: {}", providerMap.keySet());
     }
 
-    public String generateOpenApiFromPdf(LlmGenerateRequest req) {
+    public Mono<String> generateOpenApiFromPdf(LlmGenerateRequest req) {
+        return provider(req).flatMap(provider -> {
+            // Text trích + ước lượng token một lần, dùng chung cho mọi provider trong chain failover/hedge
+            Mono<LlmRouter.Routed> call = prepare(req)
+                    .flatMap(r -> router.route(r, router.chain(r, providerMap.keySet()), this::callProvider));
+            if (!cache.isEnabled()) {
+                return call.map(LlmRouter.Routed::content);
+            }
+
+            return cacheKey(req, provider.promptVersion()).flatMap(key -> lookup(req, key)
+                    .switchIfEmpty(Mono.defer(() -> call.flatMap(routed ->
+                            store(key, req, routed.request(), routed.content()).thenReturn(routed.content())))));
+        });
+    }
+
+    /**
+     * Stream từng đoạn text từ provider. JSON được kiểm tra cấu trúc ngay khi nhận: gặp lỗi thì
+     * Flux lỗi và cancel upstream (đóng kết nối tới provider), không chờ model sinh hết.
+     * Cache hit trả cả document trong một phần tử.
+     */
+    public Flux<String> streamOpenApiFromPdf(LlmGenerateRequest req) {
+        return provider(req).flatMapMany(provider -> {
+            Mono<String> key = cache.isEnabled() ? cacheKey(req, provider.promptVersion()) : Mono.just(""); // "" = không dùng cache
+            return key.flatMapMany(k -> {
+                // Stream không failover giữa chừng: chỉ chọn provider đầu tiên có circuit cho phép
+                Flux<String> live = prepare(req)
+                        .flatMap(r -> router.pick(r, router.chain(r, providerMap.keySet())))
+                        // breaker đo từ lúc có permit admission, không tính thời gian xếp hàng
+                        .flatMapMany(r -> router.<String>admitted(r.getProvider(), onAdmit -> Flux.defer(() -> {
+                    budget.checkFits(r);
+                    return admission.admitMany(r.getProvider(), estimateTokens(r), () -> onAdmit.apply(Flux.defer(() -> {
+                    var validator = new IncrementalJsonValidator();
+                    var full = new StringBuilder();
+                    Timer.Sample sample = startCall(r);
+                    return providerMap.get(r.getProvider()).streamOpenApiFromPdf(r)
+                            .doOnComplete(() -> stopCall(sample, r, "success"))
+                            .doOnError(ex -> stopCall(sample, r, "error"))
+                            .doOnCancel(() -> stopCall(sample, r, "cancelled"))
+                            .doOnNext(delta -> {
+                                validator.feed(delta);
+                                full.append(delta);
+                            })
+                            .concatWith(Mono.defer(() -> {
+                                if (!validator.isComplete()) {
+                                    return Mono.error(new IllegalArgumentException(
+                                            "LLM stream ended before the JSON document was complete (" + validator.position() + " chars)"));
+                                }
+                                // cùng JsonRepair như đường không stream (dấu phẩy thừa, ký tự điều khiển) trước khi validate / cache
+                                JsonRepair.Result repaired = JsonRepair.repair(full.toString());
+                                recordRepair(r, repaired.report());
+                                return k.isEmpty() ? Mono.empty() : store(k, req, r, repaired.json()).then(Mono.empty());
+                            }));
+                    })));
+                })));
+                return k.isEmpty() ? live : lookup(req, k).flux().switchIfEmpty(live);
+            });
+        });
+    }
+
+    /**
+     * Một lần gọi provider của r. Output được sửa bằng JsonRepair (fence, dấu phẩy thừa, ký tự điều khiển...);
+     * rỗng, không có object JSON nào, hoặc bị cắt cụt thì coi là lỗi, để router chuyển sang fallback /
+     * để bên hedge còn lại thắng (và không cache bản thiếu).
+     * Vượt context model thì lỗi ngay, không chiếm slot admission.
+     * onAdmit (của router) bọc phần chạy sau khi có permit: breaker và hedge timer không tính thời gian xếp hàng.
+     */
+    private Mono<String> callProvider(LlmGenerateRequest r, UnaryOperator<Mono<String>> onAdmit) {
+        var provider = providerMap.get(r.getProvider());
+        // latency chỉ đo từ lúc được admission cấp permit; defer: lỗi validate đồng bộ (thiếu key...) đi qua Mono.error
+        return Mono.fromRunnable(() -> budget.checkFits(r)).then(admission.admit(r.getProvider(), estimateTokens(r),
+                () -> onAdmit.apply(Mono.defer(() -> {
+                        Timer.Sample sample = startCall(r);
+                        return provider.generateOpenApiFromPdf(r)
+                                .doOnSuccess(c -> stopCall(sample, r, "success"))
+                                .doOnError(ex -> stopCall(sample, r, "error"))
+                                .doOnCancel(() -> stopCall(sample, r, "cancelled"));
+                    })
+                    .filter(content -> !content.isBlank())
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException("LLM returned empty content")))
+                    .map(content -> {
+                        JsonRepair.Result repaired = metrics.time("repair", r.getProvider(), r.getModel(), () -> JsonRepair.repair(content));
+                        if (!repaired.found()) {
+                            throw new IllegalArgumentException(r.getProvider() + " returned no JSON object (" + content.length() + " chars)");
+                        }
+                        recordRepair(r, repaired.report());
+                        if (repaired.report().truncated()) {
+                            throw new LlmTruncatedOutputException(r.getProvider(), r.getModel(), content.length());
+                        }
+                        return repaired.json();
+                    }))));
+    }
+
+    private void recordRepair(LlmGenerateRequest req, JsonRepair.Report report) {
+        if (report.isClean()) return;
+        log.info("Repaired {} output: {}", req.getProvider(), report);
+        for (String action : report.actions()) {
+            Counter.builder("llm.output.repairs")
+                    .description("Sửa output JSON của LLM theo loại: code_fence | surrounding_text | slash_escape | trailing_comma | control_char | mismatched_closer | truncated")
+                    .tag("provider", req.getProvider().name().toLowerCase())
+                    .tag("action", action)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Trích text PDF bằng PDFBox (CPU + blocking) đúng một lần rồi ước lượng token (TokenBudget) trên text đó.
+     * TEXT mode gửi text cho provider, trích lỗi thì fail; PDF mode chỉ cần text để ước lượng,
+     * trích lỗi thì TokenBudget ước lượng theo số trang / dung lượng.
+     */
+    private Mono<LlmGenerateRequest> prepare(LlmGenerateRequest req) {
+        boolean textMode = req.getInputMode() == LlmGenerateRequest.InputMode.TEXT;
+        if (req.getDocumentText() != null || req.getPdf() == null || (!textMode && !budget.needsEstimate(req))) {
+            return budget.estimate(req, req.getDocumentText() == null ? "" : req.getDocumentText());
+        }
+        return Mono.fromCallable(() -> {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    String text = PdfTextExtractor.extract(req.getPdf());
+                    sample.stop(Timer.builder("llm.pdf.extract")
+                            .description("Thời gian trích text PDF")
+                            .register(meterRegistry));
+                    return text;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(IllegalArgumentException.class, ex -> {
+                    if (textMode) return Mono.error(ex);
+                    log.warn("PDF text extraction failed, estimating tokens without text: {}", ex.getMessage());
+                    return Mono.empty();
+                })
+                .flatMap(text -> budget.estimate(textMode ? req.toBuilder().documentText(text).build() : req, text))
+                .switchIfEmpty(Mono.defer(() -> budget.estimate(req, null)));
+    }
+
+    /**
+     * Số token (input + output) cho bucket TPM: lấy từ pre-flight của TokenBudget nếu có,
+     * không thì ước lượng thô ~4 ký tự/token với text, PDF gửi nguyên file thì tính theo dung lượng.
+     */
+    private long estimateTokens(LlmGenerateRequest req) {
+        long expected = budget.expectedTokens(req);
+        if (expected >= 0) return expected;
+        long input = req.isTextMode()
+                ? req.getDocumentText().length() / 4
+                : (req.getPdf() == null ? 0 : req.getPdf().size() / 8);
+        return input + 4_000;
+    }
+
+    /** Ghi kích thước phần tài liệu gửi đi và bắt đầu đo thời gian gọi provider, tag theo mode để so sánh TEXT vs PDF. */
+    private Timer.Sample startCall(LlmGenerateRequest req) {
+        long bytes = req.isTextMode()
+                ? req.getDocumentText().getBytes(StandardCharsets.UTF_8).length
+                : (req.getPdf() == null ? 0 : 4L * ((req.getPdf().size() + 2) / 3)); // kích thước base64
+        DistributionSummary.builder("llm.request.payload")
+                .description("Kích thước tài liệu gửi tới LLM")
+                .baseUnit("bytes")
+                .tag("provider", req.getProvider().name().toLowerCase())
+                .tag("mode", req.getInputMode().name().toLowerCase())
+                .register(meterRegistry)
+                .record(bytes);
+        return Timer.start(meterRegistry);
+    }
+
+    private void stopCall(Timer.Sample sample, LlmGenerateRequest req, String outcome) {
+        sample.stop(Timer.builder("llm.request.latency")
+                .description("Thời gian một lần gọi LLM provider (không tính cache hit)")
+                .tag("provider", req.getProvider().name().toLowerCase())
+                .tag("model", req.getModel() == null ? "none" : req.getModel())
+                .tag("mode", req.getInputMode().name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private Mono<LlmProviderService> provider(LlmGenerateRequest req) {
         if (req.getProvider() == null) {
-            throw new IllegalArgumentException("provider is required");
+            return Mono.error(new IllegalArgumentException("provider is required"));
         }
         var provider = providerMap.get(req.getProvider());
         if (provider == null) {
-            throw new IllegalArgumentException("No provider registered for: " + req.getProvider());
+            return Mono.error(new IllegalArgumentException("No provider registered for: " + req.getProvider()));
         }
-        String content = provider.generateOpenApiFromPdf(req);
-        if (content == null || content.isBlank()) {
-            throw new RuntimeException("LLM returned empty content");
+        return Mono.just(provider);
+    }
+
+    // Cache nằm trong DB (JPA blocking) → chạy trên boundedElastic, không chiếm event loop
+    private Mono<String> cacheKey(LlmGenerateRequest req, String promptVersion) {
+        return Mono.fromCallable(() -> cache.keyOf(req, promptVersion))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Nội dung đã cache, hoặc rỗng khi miss/bypass/lỗi DB. */
+    private Mono<String> lookup(LlmGenerateRequest req, String key) {
+        if (req.isBypassCache()) {
+            cacheCounter(req.getProvider(), "bypass").increment();
+            return Mono.empty();
         }
-        return content;
+        return Mono.fromCallable(() -> cache.get(key).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(ex -> {
+                    log.warn("LLM cache lookup failed, calling provider: {}", ex.toString());
+                    return Mono.empty();
+                })
+                .doOnNext(hit -> cacheCounter(req.getProvider(), "hit").increment())
+                .switchIfEmpty(Mono.fromRunnable(() -> cacheCounter(req.getProvider(), "miss").increment()));
+    }
+
+    /**
+     * Chỉ cache output parse được thành OpenAPI (bản bị cắt cụt đã bị callProvider loại từ trước):
+     * output hỏng không được trả lại cho các request sau qua cache hit.
+     * used là request thực sự sinh ra content (failover / hedge / circuit mở có thể đổi provider, model):
+     * ghi theo key + prompt version của nó, không ghi đè key tra cứu của provider chính.
+     */
+    private Mono<Void> store(String key, LlmGenerateRequest req, LlmGenerateRequest used, String content) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        parser.parseOrThrow(content);
+                    } catch (IllegalArgumentException ex) {
+                        log.info("Not caching {} output: {}", used.getProvider(), ex.getMessage());
+                        return;
+                    }
+                    String promptVersion = providerMap.get(used.getProvider()).promptVersion();
+                    boolean primary = used.getProvider() == req.getProvider() && Objects.equals(used.getModel(), req.getModel());
+                    cache.put(primary ? key : cache.keyOf(used, promptVersion), used, promptVersion, content);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(ex -> {
+                    log.warn("Cannot store LLM result in cache: {}", ex.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Counter cacheCounter(LlmProviderType provider, String result) {
+        return Counter.builder("llm.cache.requests")
+                .description("Tra cứu cache kết quả LLM (hit rate = hit / (hit + miss))")
+                .tag("provider", provider.name().toLowerCase())
+                .tag("result", result)
+                .register(meterRegistry);
     }
 }
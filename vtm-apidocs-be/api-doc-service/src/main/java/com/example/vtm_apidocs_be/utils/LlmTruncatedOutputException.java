@@ -0,0 +1,24 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import lombok.Getter;
+
+/**
+ * Output của LLM bị cắt cụt (hết max tokens / đứt kết nối): JsonRepair đóng được ngoặc nhưng nội dung thiếu.
+ * Router coi như provider lỗi để chuyển fallback / để bên hedge còn lại thắng; kết quả không được cache.
+ */
+@Getter
+public class LlmTruncatedOutputException extends RuntimeException {
+
+    private final LlmProviderType provider;
+    private final String model;
+    private final int chars;
+
+    public LlmTruncatedOutputException(LlmProviderType provider, String model, int chars) {
+        super("%s/%s output was truncated after %d chars; the generated spec is incomplete"
+                .formatted(provider, model, chars));
+        this.provider = provider;
+        this.model = model;
+        this.chars = chars;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gộp các mảnh OpenAPI sinh theo từng đoạn PDF thành một document.
+ * Tất định: duyệt mảnh theo thứ tự trang, trùng tên chính xác thì mảnh đầu thắng.
+ * - paths: gộp theo path, rồi theo method
+ * - components: gộp theo section, rồi theo tên
+ * - tags: theo name; servers: theo url
+ * - còn lại (info, security, externalDocs...): giá trị đầu tiên khác rỗng
+ */
+public final class OpenApiFragmentMerger {
+
+    private static final JsonNodeFactory NF = JsonNodeFactory.instance;
+
+    private OpenApiFragmentMerger() {}
+
+    public static ObjectNode merge(List<JsonNode> fragments) {
+        ObjectNode root = NF.objectNode();
+        ArrayNode tags = NF.arrayNode();
+        ArrayNode servers = NF.arrayNode();
+        Set<String> tagNames = new HashSet<>();
+        Set<String> serverUrls = new HashSet<>();
+        ObjectNode paths = NF.objectNode();
+        ObjectNode components = NF.objectNode();
+
+        for (JsonNode f : fragments) {
+            if (f == null || !f.isObject()) continue;
+            f.properties().forEach(e -> {
+                String key = e.getKey();
+                JsonNode value = e.getValue();
+                switch (key) {
+                    case "paths" -> mergeTwoLevels(paths, value);
+                    case "components" -> mergeTwoLevels(components, value);
+                    case "tags" -> appendUnique(tags, tagNames, value, "name");
+                    case "servers" -> appendUnique(servers, serverUrls, value, "url");
+                    default -> {
+                        if (!root.has(key) && !isEmpty(value)) root.set(key, value);
+                    }
+                }
+            });
+        }
+
+        if (!root.has("openapi")) root.put("openapi", "3.0.3");
+        if (!servers.isEmpty()) root.set("servers", servers);
+        if (!tags.isEmpty()) root.set("tags", tags);
+        root.set("paths", paths);
+        if (!components.isEmpty()) root.set("components", components);
+        return root;
+    }
+
+    /** target[k1][k2] = source[k1][k2] nếu chưa có. */
+    private static void mergeTwoLevels(ObjectNode target, JsonNode source) {
+        if (source == null || !source.isObject()) return;
+        source.properties().forEach(outer -> {
+            JsonNode inner = outer.getValue();
+            if (!inner.isObject()) {
+                if (!target.has(outer.getKey())) target.set(outer.getKey(), inner);
+                return;
+            }
+            JsonNode existing = target.get(outer.getKey());
+            ObjectNode slot = existing instanceof ObjectNode o ? o : target.putObject(outer.getKey());
+            inner.properties().forEach(e -> {
+                if (!slot.has(e.getKey())) slot.set(e.getKey(), e.getValue());
+            });
+        });
+    }
+
+    private static void appendUnique(ArrayNode target, Set<String> seen, JsonNode source, String idField) {
+        if (source == null || !source.isArray()) return;
+        for (JsonNode item : source) {
+            String id = item.path(idField).asText(null);
+            if (id == null || seen.add(id)) target.add(item);
+        }
+    }
+
+    private static boolean isEmpty(JsonNode v) {
+        return v == null || v.isNull() || (v.isContainerNode() && v.isEmpty());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/** Tiện ích cho $ref nội bộ dạng "#/components/{section}/{name}". */
+public final class OpenApiRefs {
+
+    private static final String PREFIX = "#/components/";
+
+    /** Số bước $ref tối đa khi resolve path item (chặn vòng lặp A -> B -> A). */
+    public static final int MAX_PATH_ITEM_REF_DEPTH = 8;
+
+    private OpenApiRefs() {}
+
+    /**
+     * "#/components/schemas/Pet" -> "schemas/Pet"; ref ngoài (file, URL) -> null.
+     * Tên component được giải mã theo RFC 6901 ("a~1b" -> "a/b") để khớp key trong components.
+     */
+    public static String componentKey(String ref) {
+        if (ref == null || !ref.startsWith(PREFIX)) return null;
+        String key = ref.substring(PREFIX.length());
+        int slash = key.indexOf('/');
+        if (slash <= 0 || slash == key.length() - 1) return null;
+        return unescape(key.substring(0, slash)) + "/" + unescape(key.substring(slash + 1));
+    }
+
+    /** Giải mã một reference token JSON Pointer (RFC 6901): "~1" -> "/", "~0" -> "~" (đúng thứ tự này). */
+    public static String unescape(String token) {
+        if (token == null || token.indexOf('~') < 0) return token;
+        return token.replace("~1", "/").replace("~0", "~");
+    }
+
+    /** Thu mọi $ref trỏ vào components trong subtree. */
+    public static void collect(JsonNode node, Set<String> out) {
+        if (node == null) return;
+        if (node.isObject()) {
+            JsonNode ref = node.get("$ref");
+            if (ref != null && ref.isTextual()) {
+                String key = componentKey(ref.asText());
+                if (key != null) out.add(key);
+            }
+            node.elements().forEachRemaining(child -> collect(child, out));
+        } else if (node.isArray()) {
+            node.elements().forEachRemaining(child -> collect(child, out));
+        }
+    }
+
+    /** Đồ thị component -> các component nó tham chiếu trực tiếp, dựng từ node "components". */
+    public static Map<String, Set<String>> graph(JsonNode components) {
+        Map<String, Set<String>> graph = new LinkedHashMap<>();
+        if (components == null || !components.isObject()) return graph;
+        components.properties().forEach(section -> {
+            if (!section.getValue().isObject()) return;
+            section.getValue().properties().forEach(entry -> {
+                Set<String> refs = new LinkedHashSet<>();
+                collect(entry.getValue(), refs);
+                graph.put(section.getKey() + "/" + entry.getKey(), refs);
+            });
+        });
+        return graph;
+    }
+
+    /** Bao đóng bắc cầu của seeds theo graph. */
+    public static Set<String> closure(Collection<String> seeds, Map<String, ? extends Collection<String>> graph) {
+        Set<String> seen = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(seeds);
+        while (!queue.isEmpty()) {
+            String key = queue.poll();
+            if (!seen.add(key)) continue;
+            Collection<String> next = graph.get(key);
+            if (next != null) queue.addAll(next);
+        }
+        return seen;
+    }
+}
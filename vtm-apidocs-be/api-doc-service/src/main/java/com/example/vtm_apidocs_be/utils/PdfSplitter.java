@@ -0,0 +1,95 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Cắt PDF thành các đoạn liên tiếp, mỗi đoạn tối đa maxPages trang.
+ * Nếu PDF có bookmark cấp 1 (thường là heading chương/section) thì ưu tiên cắt tại đầu section,
+ * gộp các section ngắn liền nhau; section dài hơn maxPages mới bị cắt giữa chừng.
+ */
+public final class PdfSplitter {
+
+    /** Trang 1-based, [fromPage, toPage]. */
+    public record Chunk(int index, int fromPage, int toPage, int totalPages, byte[] pdfBytes) {}
+
+    private PdfSplitter() {}
+
+    public static int pageCount(DocumentSource pdf) throws IOException {
+        try (PDDocument doc = pdf.loadPdf()) {
+            return doc.getNumberOfPages();
+        }
+    }
+
+    /** Đọc PDF nguồn từ file (nếu là upload spool); từng đoạn cắt ra vẫn nằm trong heap, nhỏ hơn nhiều. */
+    public static List<Chunk> split(DocumentSource pdf, int maxPages) throws IOException {
+        if (maxPages < 1) throw new IllegalArgumentException("maxPages must be >= 1");
+        try (PDDocument doc = pdf.loadPdf()) {
+            int total = doc.getNumberOfPages();
+            List<Chunk> chunks = new ArrayList<>();
+            for (int[] r : ranges(sectionStarts(doc), total, maxPages)) {
+                chunks.add(new Chunk(chunks.size(), r[0] + 1, r[1], total, extract(doc, r[0], r[1])));
+            }
+            return chunks;
+        }
+    }
+
+    /** Trang bắt đầu (0-based) của các bookmark cấp 1, luôn có 0. */
+    private static TreeSet<Integer> sectionStarts(PDDocument doc) throws IOException {
+        TreeSet<Integer> starts = new TreeSet<>();
+        starts.add(0);
+        PDDocumentOutline outline = doc.getDocumentCatalog().getDocumentOutline();
+        if (outline == null) return starts;
+        for (PDOutlineItem item : outline.children()) {
+            PDPage page = item.findDestinationPage(doc);
+            if (page == null) continue;
+            int idx = doc.getPages().indexOf(page);
+            if (idx >= 0) starts.add(idx);
+        }
+        return starts;
+    }
+
+    /** Các khoảng [from, to) 0-based. */
+    static List<int[]> ranges(TreeSet<Integer> sectionStarts, int total, int maxPages) {
+        List<int[]> out = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>(sectionStarts.headSet(total));
+        int from = 0;
+        for (int i = 0; i < starts.size(); i++) {
+            int a = starts.get(i);
+            int b = i + 1 < starts.size() ? starts.get(i + 1) : total;
+            // section hiện tại không vừa đoạn đang gom → chốt đoạn tại đầu section
+            if (b - from > maxPages && a > from) {
+                out.add(new int[]{from, a});
+                from = a;
+            }
+            while (b - from > maxPages) {
+                out.add(new int[]{from, from + maxPages});
+                from += maxPages;
+            }
+        }
+        if (from < total) out.add(new int[]{from, total});
+        return out;
+    }
+
+    private static byte[] extract(PDDocument doc, int from, int to) throws IOException {
+        Splitter splitter = new Splitter();
+        splitter.setStartPage(from + 1);
+        splitter.setEndPage(to);
+        splitter.setSplitAtPage(to - from);
+        List<PDDocument> parts = splitter.split(doc);
+        try (PDDocument part = parts.get(0)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            part.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * PDF → text cho LLM (bản PDF của DocTextExtractor). Giữ bố cục ở mức đủ dùng:
+ * - sắp theo toạ độ (cột, header/footer không bị trộn)
+ * - khoảng trống ngang lớn giữa các chữ → "\t", để ô trong bảng vẫn tách cột
+ * - mỗi trang có dòng "=== Page n ===" để model trích dẫn đúng vị trí
+ */
+public final class PdfTextExtractor {
+
+    private PdfTextExtractor() {}
+
+    public static String extract(DocumentSource pdf) {
+        try (PDDocument doc = pdf.loadPdf()) {
+            LayoutStripper stripper = new LayoutStripper();
+            StringBuilder sb = new StringBuilder();
+            for (int page = 1; page <= doc.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                sb.append("=== Page ").append(page).append(" ===\n");
+                sb.append(stripper.getText(doc).strip()).append("\n\n");
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Read PDF failed: " + e.getMessage(), e);
+        }
+    }
+
+    /** PDFTextStripper ghi " " giữa các từ; ở đây thay bằng "\t" khi khoảng cách ngang đủ lớn để là cột khác. */
+    private static final class LayoutStripper extends PDFTextStripper {
+
+        private static final float COLUMN_GAP_FACTOR = 2.5f; // gap > 2.5 lần độ rộng dấu cách → sang cột mới
+
+        private TextPosition lastInLine;
+        private boolean pendingSeparator;
+
+        LayoutStripper() {
+            setSortByPosition(true);
+            setLineSeparator("\n");
+        }
+
+        @Override
+        protected void writeWordSeparator() {
+            pendingSeparator = true; // quyết định " " hay "\t" khi biết vị trí từ kế tiếp
+        }
+
+        @Override
+        protected void writeLineSeparator() throws IOException {
+            pendingSeparator = false;
+            lastInLine = null;
+            super.writeLineSeparator();
+        }
+
+        @Override
+        protected void writeString(String text, List<TextPosition> positions) throws IOException {
+            if (pendingSeparator) {
+                pendingSeparator = false;
+                boolean column = false;
+                if (lastInLine != null && !positions.isEmpty()) {
+                    float gap = positions.get(0).getXDirAdj() - (lastInLine.getXDirAdj() + lastInLine.getWidthDirAdj());
+                    column = gap > Math.max(lastInLine.getWidthOfSpace(), 1f) * COLUMN_GAP_FACTOR;
+                }
+                writeString(column ? "\t" : getWordSeparator());
+            }
+            super.writeString(text, positions);
+            if (!positions.isEmpty()) lastInLine = positions.get(positions.size() - 1);
+        }
+    }
+}
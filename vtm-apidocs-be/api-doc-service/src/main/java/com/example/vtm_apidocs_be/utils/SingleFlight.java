@@ -0,0 +1,59 @@
+package com.example.vtm_apidocs_be.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các lời gọi đồng thời cùng key thành 1 lần tính (single-flight).
+ * Lời gọi đầu tiên (leader) chạy loader trên thread của nó; các lời gọi đến trong lúc
+ * đang chạy chờ chung CompletableFuture. Không cache: xong là bỏ khỏi map.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, MeterRegistry registry) {
+        this.leaders = Counter.builder("singleflight.calls").tag("name", name).tag("role", "leader")
+                .description("Calls that executed the loader").register(registry);
+        this.coalesced = Counter.builder("singleflight.calls").tag("name", name).tag("role", "coalesced")
+                .description("Calls that joined an in-flight computation").register(registry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inflight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        leaders.increment();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+}
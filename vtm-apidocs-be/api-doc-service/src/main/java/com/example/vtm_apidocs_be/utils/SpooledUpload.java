@@ -0,0 +1,129 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Upload được chép ra file tạm riêng (file tạm của multipart bị xoá khi request kết thúc, còn job import chạy nền lâu hơn).
+ * Đọc bằng channel / mmap / PDFBox trên file → heap mỗi upload không tỉ lệ với kích thước file.
+ * Ngân sách {@link UploadBudget}: phần "receiving" chỉ giữ trong lúc chép, phần "spooled" giữ tới khi close;
+ * close xoá file tạm.
+ */
+public final class SpooledUpload implements DocumentSource {
+
+    private final Path path;
+    private final long size;
+    private final String filename;
+    private final UploadBudget.Permit permit;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile String sha256;
+
+    private SpooledUpload(Path path, long size, String filename, UploadBudget.Permit permit) {
+        this.path = path;
+        this.size = size;
+        this.filename = filename;
+        this.permit = permit;
+    }
+
+    /**
+     * Lấy cả hai ngân sách theo kích thước file rồi chép ra file tạm; ngân sách "receiving" trả lại ngay khi chép xong
+     * (job xếp hàng chỉ giữ phần "spooled"), lỗi thì trả lại cả hai.
+     */
+    public static SpooledUpload spool(MultipartFile file, UploadBudget budget) throws IOException {
+        UploadBudget.Permit spooled = budget.acquireSpooled(file.getSize());
+        Path path = null;
+        try (UploadBudget.Permit receiving = budget.acquire(file.getSize())) {
+            path = Files.createTempFile("vtm-upload-", suffix(file.getOriginalFilename()));
+            file.transferTo(path);
+            return new SpooledUpload(path, Files.size(path), file.getOriginalFilename(), spooled);
+        } catch (IOException | RuntimeException e) {
+            if (path != null) Files.deleteIfExists(path);
+            spooled.close();
+            throw e;
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /** Tên file client gửi (có thể null). */
+    public String filename() {
+        return filename;
+    }
+
+    /** Nội dung dạng UTF-8, cho file spec (JSON/YAML) vốn phải nằm trong heap để parse. */
+    public String readString() throws IOException {
+        return Files.readString(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public String sha256() {
+        if (sha256 == null) {
+            try {
+                sha256 = HashUtils.sha256Hex(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Hash upload failed", e);
+            }
+        }
+        return sha256;
+    }
+
+    @Override
+    public byte[] head(int n) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(n, size));
+            while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                // đọc tới khi đủ n byte hoặc hết file
+            }
+            return Arrays.copyOf(buf.array(), buf.position());
+        }
+    }
+
+    /** PDFBox đọc trực tiếp từ file, bộ đệm tạm của nó cũng nằm trên đĩa. */
+    @Override
+    public PDDocument loadPdf() throws IOException {
+        return Loader.loadPDF(path.toFile(), IOUtils.createTempFileOnlyStreamCache());
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // file tạm sót lại sẽ bị hệ điều hành dọn
+        } finally {
+            permit.close();
+        }
+    }
+
+    private static String suffix(String filename) {
+        if (filename == null) return ".tmp";
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 && filename.length() - dot <= 6 ? filename.substring(dot).toLowerCase() : ".tmp";
+    }
+}
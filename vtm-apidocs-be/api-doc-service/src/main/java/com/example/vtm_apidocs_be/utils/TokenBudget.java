@@ -0,0 +1,235 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-flight ngân sách token: ước lượng prompt + tài liệu (text qua {@link TokenCounter}, PDF mode cộng thêm
+ * token ảnh mỗi trang) rồi so với context của model trước khi gọi provider.
+ * Text do LlmService trích một lần và truyền vào; không có text (trích PDF lỗi) thì ước lượng theo số trang,
+ * không đọc được số trang thì theo dung lượng file.
+ * Usage provider trả về được ghi lại để hiệu chỉnh: tỉ lệ thực tế / ước lượng (EWMA theo provider)
+ * nhân vào các lần ước lượng sau.
+ *
+ * Cấu hình: llm.budget.{enabled, default-context, context-limits (model=tokens,...), output-reserve,
+ * prompt-tokens, page-tokens}.
+ * Metric: llm.preflight, llm.preflight.fallback{basis}, llm.tokens.estimated, llm.tokens.actual{provider, model, kind},
+ * llm.tokens.calibration, llm.budget.rejections.
+ */
+@Component
+@Slf4j
+public class TokenBudget {
+
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double MIN_CALIBRATION = 0.25;
+    private static final double MAX_CALIBRATION = 4.0;
+    private static final String PAGE_MARKER = "=== Page ";
+    private static final long FALLBACK_PAGE_TEXT_TOKENS = 700; // ~1 trang A4 chữ dày
+    private static final long FALLBACK_BYTES_PER_TOKEN = 8;   // cùng tỉ lệ ước lượng thô của bucket TPM
+
+    private final TokenCounter counter;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long defaultContext;
+    private final Map<String, Long> contextLimits = new HashMap<>();
+    private final long outputReserve;
+    private final long promptTokens;
+    private final long pageTokens;
+    private final Map<LlmProviderType, double[]> calibration = new EnumMap<>(LlmProviderType.class);
+
+    public TokenBudget(TokenCounter counter,
+                       MeterRegistry meterRegistry,
+                       @Value("${llm.budget.enabled:true}") boolean enabled,
+                       @Value("${llm.budget.default-context:128000}") long defaultContext,
+                       @Value("${llm.budget.context-limits:}") List<String> contextLimits,
+                       @Value("${llm.budget.output-reserve:16000}") long outputReserve,
+                       @Value("${llm.budget.prompt-tokens:2500}") long promptTokens,
+                       @Value("${llm.budget.page-tokens:260}") long pageTokens) {
+        this.counter = counter;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultContext = defaultContext;
+        this.outputReserve = outputReserve;
+        this.promptTokens = promptTokens;
+        this.pageTokens = pageTokens;
+        for (String entry : contextLimits) {
+            // tên model có thể chứa ':' / '/', tách ở dấu '=' cuối
+            int eq = entry.lastIndexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("llm.budget.context-limits entry must be model=tokens: " + entry);
+            this.contextLimits.put(entry.substring(0, eq).trim(), Long.parseLong(entry.substring(eq + 1).trim()));
+        }
+        for (LlmProviderType type : LlmProviderType.values()) {
+            double[] factor = {1.0};
+            calibration.put(type, factor);
+            Gauge.builder("llm.tokens.calibration", factor, f -> f[0])
+                    .description("Hệ số hiệu chỉnh ước lượng token (thực tế / ước lượng, EWMA)")
+                    .tag("provider", type.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /** false khi tắt budget hoặc request đã có ước lượng: caller khỏi trích text chỉ để ước lượng. */
+    public boolean needsEstimate(LlmGenerateRequest req) {
+        return enabled && req.getEstimatedPromptTokens() == null;
+    }
+
+    /**
+     * Ước lượng token tài liệu (CPU, chạy trên boundedElastic) và ghi vào request; request đã có ước lượng thì trả nguyên.
+     * text: text tài liệu đã trích, null nếu trích lỗi / không có (ước lượng theo số trang hoặc dung lượng file).
+     */
+    public Mono<LlmGenerateRequest> estimate(LlmGenerateRequest req, String text) {
+        if (!needsEstimate(req)) {
+            return Mono.just(req);
+        }
+        return Mono.fromCallable(() -> {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    int pages;
+                    long documentTokens;
+                    if (text != null) {
+                        pages = countPages(text);
+                        documentTokens = counter.count(text);
+                    } else {
+                        pages = pdfPages(req.getPdf());
+                        documentTokens = fallbackTokens(req.getPdf(), pages);
+                    }
+                    long tokens = promptTokens
+                            + documentTokens
+                            + counter.count(req.getTitle())
+                            + counter.count(req.getDescription())
+                            + (req.isTextMode() ? 0 : pages * pageTokens); // PDF gốc: model nhận thêm ảnh từng trang
+                    sample.stop(Timer.builder("llm.preflight")
+                            .description("Thời gian ước lượng token trước khi gọi LLM")
+                            .register(meterRegistry));
+                    DistributionSummary.builder("llm.tokens.estimated")
+                            .description("Token prompt ước lượng trước khi gọi LLM")
+                            .tag("mode", req.getInputMode().name().toLowerCase())
+                            .register(meterRegistry)
+                            .record(tokens);
+                    return req.toBuilder().estimatedPromptTokens(tokens).documentPages(pages).build();
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Ném {@link LlmBudgetExceededException} nếu prompt (đã hiệu chỉnh) + phần chừa cho output vượt context model của r.
+     * Request không có model thì so với default-context (có log cảnh báo, vì limit có thể sai).
+     */
+    public void checkFits(LlmGenerateRequest r) {
+        if (!enabled || r.getEstimatedPromptTokens() == null) return;
+        if (r.getModel() == null) {
+            log.warn("{} request has no model, checking budget against default context {}", r.getProvider(), defaultContext);
+        }
+        long needed = expectedTokens(r);
+        long limit = contextLimit(r.getModel());
+        if (needed > limit) {
+            Counter.builder("llm.budget.rejections")
+                    .description("Request bị từ chối trước khi gọi LLM vì vượt context model")
+                    .tag("provider", r.getProvider().name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+            throw new LlmBudgetExceededException(r.getProvider(), r.getModel(), needed, limit,
+                    r.getDocumentPages() == null ? 0 : r.getDocumentPages());
+        }
+    }
+
+    /** Token dự kiến cho cả lần gọi (prompt đã hiệu chỉnh + output), -1 nếu chưa ước lượng. */
+    public long expectedTokens(LlmGenerateRequest r) {
+        if (r.getEstimatedPromptTokens() == null) return -1;
+        double factor;
+        synchronized (calibration) {
+            factor = calibration.get(r.getProvider())[0];
+        }
+        return (long) Math.ceil(promptEstimate(r) * factor) + outputReserve;
+    }
+
+    /** OpenAI PDF mode nhét base64 thẳng vào prompt: base64 tokenize kém, ~3 ký tự một token. */
+    private static long promptEstimate(LlmGenerateRequest r) {
+        long inline = r.getProvider() == LlmProviderType.OPENAI && !r.isTextMode() && r.getPdf() != null
+                ? 4L * ((r.getPdf().size() + 2) / 3) / 3
+                : 0;
+        return r.getEstimatedPromptTokens() + inline;
+    }
+
+    /** Usage provider trả về (null nếu response không có): ghi metric và cập nhật hệ số hiệu chỉnh. */
+    public void recordUsage(LlmGenerateRequest req, Number promptTokens, Number completionTokens) {
+        String provider = req.getProvider().name().toLowerCase();
+        if (completionTokens != null) actual(provider, req.getModel(), "completion").record(completionTokens.doubleValue());
+        if (promptTokens == null || promptTokens.longValue() <= 0) return;
+        actual(provider, req.getModel(), "prompt").record(promptTokens.doubleValue());
+
+        if (req.getEstimatedPromptTokens() == null) return;
+        long estimated = promptEstimate(req);
+        if (estimated <= 0) return;
+        double ratio = promptTokens.doubleValue() / estimated;
+        double updated;
+        synchronized (calibration) {
+            double[] factor = calibration.get(req.getProvider());
+            factor[0] = clamp(factor[0] + EWMA_ALPHA * (ratio - factor[0]));
+            updated = factor[0];
+        }
+        log.debug("{} prompt tokens: estimated={}, actual={}, calibration={}", provider, estimated, promptTokens, updated);
+    }
+
+    private DistributionSummary actual(String provider, String model, String kind) {
+        return DistributionSummary.builder("llm.tokens.actual")
+                .description("Token provider báo trong usage")
+                .tag("provider", provider)
+                .tag("model", model == null ? "none" : model)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private long contextLimit(String model) {
+        return model == null ? defaultContext : contextLimits.getOrDefault(model, defaultContext);
+    }
+
+    private int pdfPages(DocumentSource pdf) {
+        if (pdf == null) return 0;
+        try (PDDocument doc = pdf.loadPdf()) {
+            return doc.getNumberOfPages();
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /** Text không trích được: ~FALLBACK_PAGE_TEXT_TOKENS mỗi trang, không có số trang thì theo dung lượng file. */
+    private long fallbackTokens(DocumentSource pdf, int pages) {
+        if (pdf == null) return 0;
+        String basis = pages > 0 ? "pages" : "bytes";
+        long tokens = pages > 0 ? pages * FALLBACK_PAGE_TEXT_TOKENS : pdf.size() / FALLBACK_BYTES_PER_TOKEN;
+        Counter.builder("llm.preflight.fallback")
+                .description("Ước lượng token không có text tài liệu (trích PDF lỗi): theo số trang | dung lượng")
+                .tag("basis", basis)
+                .register(meterRegistry)
+                .increment();
+        log.warn("No document text for token estimate, using {} basis: {} tokens ({} pages, {} bytes)", basis, tokens, pages, pdf.size());
+        return tokens;
+    }
+
+    private static double clamp(double v) {
+        return Math.max(MIN_CALIBRATION, Math.min(MAX_CALIBRATION, v));
+    }
+
+    private static int countPages(String text) {
+        int pages = 0;
+        for (int i = text.indexOf(PAGE_MARKER); i >= 0; i = text.indexOf(PAGE_MARKER, i + PAGE_MARKER.length())) pages++;
+        return pages;
+    }
+}
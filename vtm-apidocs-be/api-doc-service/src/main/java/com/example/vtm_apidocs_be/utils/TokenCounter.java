@@ -0,0 +1,10 @@
+package com.example.vtm_apidocs_be.utils;
+
+/**
+ * Ước lượng số token của text cho pre-flight ngân sách context. Bean mặc định là {@link HeuristicTokenCounter};
+ * muốn dùng tokenizer thật (tiktoken...) thì khai báo bean khác với @Primary.
+ */
+public interface TokenCounter {
+
+    long count(CharSequence text);
+}
@@ -0,0 +1,91 @@
+package com.example.vtm_apidocs_be.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hai ngân sách dung lượng upload, hết thì từ chối ngay bằng 503:
+ * - receiving: upload đang được nhận / chép ra file tạm (heap + IO của request), trả lại ngay khi spool xong
+ * - spooled: file tạm nằm trên đĩa chờ job import / generate chạy xong, giới hạn riêng để job xếp hàng
+ *   không chiếm chỗ của upload mới
+ * Cấu hình: upload.budget.max-bytes, upload.budget.spooled-max-bytes.
+ * Metric: upload.budget.used{pool} (bytes), upload.budget.rejected{pool}.
+ */
+@Component
+public class UploadBudget {
+
+    private final Pool receiving;
+    private final Pool spooled;
+
+    public UploadBudget(MeterRegistry meterRegistry,
+                        @Value("${upload.budget.max-bytes:200MB}") DataSize maxBytes,
+                        @Value("${upload.budget.spooled-max-bytes:2GB}") DataSize spooledMaxBytes) {
+        this.receiving = new Pool("receiving", maxBytes.toBytes(), meterRegistry);
+        this.spooled = new Pool("spooled", spooledMaxBytes.toBytes(), meterRegistry);
+    }
+
+    /** Giữ bytes trong ngân sách upload đang nhận tới khi Permit được close; không đủ thì UploadBudgetExceededException. */
+    public Permit acquire(long bytes) {
+        return receiving.acquire(bytes);
+    }
+
+    /** Giữ bytes trong ngân sách file tạm chờ xử lý tới khi Permit được close. */
+    public Permit acquireSpooled(long bytes) {
+        return spooled.acquire(bytes);
+    }
+
+    private static final class Pool {
+        private final long maxBytes;
+        private final AtomicLong used = new AtomicLong();
+        private final Counter rejected;
+
+        Pool(String name, long maxBytes, MeterRegistry meterRegistry) {
+            this.maxBytes = maxBytes;
+            Gauge.builder("upload.budget.used", used, AtomicLong::get)
+                    .description("Dung lượng upload đang giữ: receiving = đang nhận, spooled = file tạm chờ job")
+                    .baseUnit("bytes")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("upload.budget.rejected")
+                    .description("Upload bị từ chối (503) vì hết ngân sách dung lượng")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+        }
+
+        Permit acquire(long bytes) {
+            while (true) {
+                long current = used.get();
+                if (current + bytes > maxBytes) {
+                    rejected.increment();
+                    throw new UploadBudgetExceededException(bytes, current, maxBytes);
+                }
+                if (used.compareAndSet(current, current + bytes)) {
+                    return new Permit(used, bytes);
+                }
+            }
+        }
+    }
+
+    public static final class Permit implements AutoCloseable {
+        private final AtomicLong used;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AtomicLong used, long bytes) {
+            this.used = used;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) used.addAndGet(-bytes);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/** 503 + Retry-After: server đang xử lý quá nhiều upload, client thử lại sau. */
+public class UploadBudgetExceededException extends ResponseStatusException {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    public UploadBudgetExceededException(long requested, long inUse, long max) {
+        super(HttpStatus.SERVICE_UNAVAILABLE,
+                "Upload capacity exhausted (%d bytes requested, %d of %d in use), retry later".formatted(requested, inUse, max));
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return headers;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.vtm_apidocs_be.web;
+
+import com.example.vtm_apidocs_be.service.EndpointQueryService;
+import com.example.vtm_apidocs_be.service.EndpointQueryService.EndpointPage;
+import com.example.vtm_apidocs_be.service.EndpointQueryService.EndpointQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/endpoints")
+@RequiredArgsConstructor
+public class EndpointQueryController {
+
+    private final EndpointQueryService queryService;
+
+    /**
+     * Query có cấu trúc trên toàn bộ catalog (hoặc một document nếu có documentId), phân trang keyset theo id:
+     * gọi lại với afterId = nextAfterId của trang trước.
+     */
+    @GetMapping
+    public EndpointPage query(@RequestParam(required = false) Long documentId,
+                              @RequestParam(required = false) List<String> method,
+                              @RequestParam(required = false) String pathPrefix,
+                              @RequestParam(required = false) Boolean deprecated,
+                              @RequestParam(required = false) String status,
+                              @RequestParam(required = false) Long categoryId,
+                              @RequestParam(required = false) String tag,
+                              @RequestParam(required = false) String operationId,
+                              @RequestParam(required = false) String requestMediaType,
+                              @RequestParam(required = false) Long afterId,
+                              @RequestParam(required = false) Integer limit) {
+        return queryService.query(new EndpointQuery(documentId, method, pathPrefix, deprecated, status, categoryId,
+                tag, operationId, requestMediaType, afterId, limit));
+    }
+}
@@ -1,18 +1,41 @@
 package com.example.vtm_apidocs_be.web;
 
-import com.example.vtm_apidocs_be.entity.ApiDocument;
+import com.example.vtm_apidocs_be.dto.ImportJob;
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.dto.PdfGenerateOptions;
 import com.example.vtm_apidocs_be.entity.LlmProviderType;
 import com.example.vtm_apidocs_be.service.DocumentService;
+import com.example.vtm_apidocs_be.service.ImportJobService;
+import com.example.vtm_apidocs_be.utils.DocumentType;
+import com.example.vtm_apidocs_be.utils.ImportMetrics;
 import com.example.vtm_apidocs_be.utils.LlmClient;
+import com.example.vtm_apidocs_be.utils.LlmBudgetExceededException;
+import com.example.vtm_apidocs_be.utils.LlmRateLimitedException;
+import com.example.vtm_apidocs_be.utils.LlmTruncatedOutputException;
+import com.example.vtm_apidocs_be.utils.SpooledUpload;
+import com.example.vtm_apidocs_be.utils.UploadBudget;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequestMapping("/admin/docs")
@@ -20,34 +43,132 @@ import java.util.Map;
 public class ImportController {
 
     private final DocumentService documentService;
+    private final ImportJobService importJobService;
     private final LlmClient llmClient;
     private final ObjectMapper objectMapper;
+    private final ImportMetrics metrics;
+    private final UploadBudget uploadBudget;
 
     @PostMapping(value = "/import-pdf", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public Map<String, Object> importPdf(@RequestParam String name,
+    public ResponseEntity<Map<String, Object>> importPdf(@RequestParam String name,
                                          @RequestParam String slug,
                                          @RequestParam String version,
                                          @RequestParam(required = false) String description,
                                          @RequestParam Long categoryId,
                                          @RequestParam("file") MultipartFile file,
-                                         @RequestParam("provider") LlmProviderType provider) throws Exception {
+                                         @RequestParam("provider") LlmProviderType provider,
+                                         @RequestParam(defaultValue = "false") boolean bypassCache,
+                                         @RequestParam(defaultValue = "false") boolean chunked,
+                                         @RequestParam(defaultValue = "PDF") LlmGenerateRequest.InputMode mode,
+                                         @RequestParam(required = false) List<LlmProviderType> fallback) throws Exception {
         String filename = (file.getOriginalFilename() == null ? "" : file.getOriginalFilename()).toLowerCase();
         if (!filename.endsWith(".pdf")) throw new IllegalArgumentException("Only PDF is accepted in this route");
 
-        // dùng provider do FE gửi lên
-        ApiDocument doc = documentService.importPdf(
-                name, slug, version, description, categoryId, file.getBytes(), provider
-        );
-
-        var dto = documentService.getSpecForFrontend(doc.getId(), "1");
-        return Map.of(
-                "documentId", doc.getId(),
-                "status", "ok",
-                "specText", dto.raw(),
-                "categoryId", doc.getCategory() != null ? doc.getCategory().getId() : null
-        );
+        SpooledUpload pdf = require(spool(file, provider), DocumentType.PDF, "File content is not a PDF");
+        try {
+            // dùng provider do FE gửi lên; LLM chạy nền, FE poll statusUrl
+            ImportJob job = importJobService.submitPdfImport(
+                    name, slug, version, description, categoryId, pdf, provider,
+                    PdfGenerateOptions.builder()
+                            .bypassCache(bypassCache).chunked(chunked).inputMode(mode).fallbacks(fallback).build()
+            );
+            return accepted(job);
+        } catch (RuntimeException ex) {
+            pdf.close(); // job không được tạo (vd. 429) → tự dọn file tạm
+            throw ex;
+        }
+    }
+
+    /** Như /import-pdf cho file Word: job trích text dạng streaming từ file tạm rồi gửi LLM ở TEXT mode. */
+    @PostMapping(value = "/import-doc", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> importDoc(@RequestParam String name,
+                                                         @RequestParam String slug,
+                                                         @RequestParam String version,
+                                                         @RequestParam(required = false) String description,
+                                                         @RequestParam Long categoryId,
+                                                         @RequestParam("file") MultipartFile file,
+                                                         @RequestParam("provider") LlmProviderType provider,
+                                                         @RequestParam(defaultValue = "false") boolean bypassCache,
+                                                         @RequestParam(required = false) List<LlmProviderType> fallback) throws Exception {
+        String filename = (file.getOriginalFilename() == null ? "" : file.getOriginalFilename()).toLowerCase();
+        if (!filename.endsWith(".doc") && !filename.endsWith(".docx")) {
+            throw new IllegalArgumentException("Only DOC/DOCX is accepted in this route");
+        }
+
+        DocumentType expected = filename.endsWith(".docx") ? DocumentType.DOCX : DocumentType.DOC;
+        SpooledUpload document = require(spool(file, provider), expected, "File content does not match " + filename);
+        try {
+            ImportJob job = importJobService.submitDocImport(
+                    name, slug, version, description, categoryId, document, provider,
+                    PdfGenerateOptions.builder()
+                            .bypassCache(bypassCache).inputMode(LlmGenerateRequest.InputMode.TEXT).fallbacks(fallback).build()
+            );
+            return accepted(job);
+        } catch (RuntimeException ex) {
+            document.close();
+            throw ex;
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> accepted(ImportJob job) {
+        String statusUrl = "/admin/docs/import-jobs/" + job.getId();
+        return ResponseEntity.accepted()
+                .header("Location", statusUrl)
+                .body(Map.of(
+                        "jobId", job.getId(),
+                        "status", job.getStatus().name(),
+                        "statusUrl", statusUrl
+                ));
+    }
+
+    @GetMapping("/import-jobs/{jobId}")
+    public Map<String, Object> importJobStatus(@PathVariable String jobId) {
+        ImportJob job = findJob(jobId);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.getId());
+        body.put("status", job.getStatus().name());
+        body.put("stage", job.getStage());
+        body.put("provider", job.getProvider());
+        body.put("documentId", job.getDocumentId());
+        body.put("error", job.getError());
+        body.put("createdAt", job.getCreatedAt());
+        body.put("updatedAt", job.getUpdatedAt());
+        return body;
+    }
+
+    /** Kết quả giống response cũ của /import-pdf, chỉ có khi job SUCCEEDED. */
+    @GetMapping("/import-jobs/{jobId}/result")
+    public ResponseEntity<Map<String, Object>> importJobResult(@PathVariable String jobId) {
+        ImportJob job = findJob(jobId);
+        if (job.getStatus() == ImportJob.Status.FAILED) {
+            return ResponseEntity.unprocessableEntity().body(Map.of(
+                    "jobId", job.getId(),
+                    "status", job.getStatus().name(),
+                    "error", String.valueOf(job.getError())
+            ));
+        }
+        if (job.getStatus() != ImportJob.Status.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "jobId", job.getId(),
+                    "status", job.getStatus().name(),
+                    "stage", job.getStage()
+            ));
+        }
+
+        var dto = documentService.getSpecForFrontend(job.getDocumentId(), "1");
+        // categoryId có thể null → không dùng Map.of
+        Map<String, Object> body = new HashMap<>();
+        body.put("documentId", job.getDocumentId());
+        body.put("status", "ok");
+        body.put("specText", dto.raw());
+        body.put("categoryId", job.getCategoryId());
+        return ResponseEntity.ok(body);
     }
 
+    private ImportJob findJob(String jobId) {
+        return importJobService.find(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found: " + jobId));
+    }
 
 
 
@@ -55,31 +176,144 @@ public class ImportController {
             value = "/generate-openapi",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE
     )
-    public ResponseEntity<?> generateOpenApi(
+    public Mono<ResponseEntity<?>> generateOpenApi(
             @RequestPart("file") MultipartFile file,
             @RequestParam(defaultValue = "Untitled API") String title,
             @RequestParam(defaultValue = "1.0.0") String version,
             @RequestParam(required = false) String description
     ) throws Exception {
         if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Missing PDF file"));
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "Missing PDF file")));
         }
         String ct = file.getContentType();
         if (ct != null && !ct.toLowerCase().contains("pdf")) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File must be a PDF"));
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "File must be a PDF")));
+        }
+
+        // route này luôn gọi OpenRouter qua LlmClient
+        SpooledUpload pdf = spool(file, LlmProviderType.OPENROUTER);
+        if (pdf.type() != DocumentType.PDF) {
+            pdf.close();
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "File must be a PDF")));
         }
+        // Spring MVC xử lý Mono qua async dispatch, thread Tomcat được trả lại trong lúc chờ LLM
+        return Mono.defer(() -> llmClient.generateOpenApiFromPdf(pdf, title, version, description))
+                .map(json -> {
+                    Timer.Sample parse = metrics.start();
+                    try {
+                        Map<?, ?> parsed = objectMapper.readValue(json, Map.class);
+                        metrics.stop(parse, "parse", LlmProviderType.OPENROUTER, null, ImportMetrics.SUCCESS);
+                        return ResponseEntity.ok(parsed);
+                    } catch (JsonProcessingException ex) {
+                        metrics.stop(parse, "parse", LlmProviderType.OPENROUTER, null, ImportMetrics.ERROR);
+                        return ResponseEntity.ok()
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .body(json);
+                    }
+                })
+                .doFinally(s -> pdf.close());
+    }
+
+    /**
+     * SSE: event "token" cho từng đoạn text LLM sinh ra, "done" (data = số ký tự) khi JSON hoàn chỉnh,
+     * "error" khi provider lỗi hoặc JSON hỏng cấu trúc (request tới provider đã bị huỷ).
+     */
+    @PostMapping(
+            value = "/generate-openapi/stream",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public Flux<ServerSentEvent<String>> generateOpenApiStream(
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(defaultValue = "Untitled API") String title,
+            @RequestParam(defaultValue = "1.0.0") String version,
+            @RequestParam(required = false) String description,
+            @RequestParam("provider") LlmProviderType provider,
+            @RequestParam(defaultValue = "false") boolean bypassCache,
+            @RequestParam(defaultValue = "PDF") LlmGenerateRequest.InputMode mode,
+            @RequestParam(required = false) List<LlmProviderType> fallback
+    ) throws Exception {
+        if (file.isEmpty()) throw new IllegalArgumentException("Missing PDF file");
 
-        byte[] pdfBytes = file.getBytes();
-        String json = llmClient.generateOpenApiFromPdf(pdfBytes, title, version, description);
+        SpooledUpload pdf = require(spool(file, provider), DocumentType.PDF, "File content is not a PDF");
+        AtomicLong chars = new AtomicLong();
+        return Flux.defer(() -> documentService.streamDraftFromPdf(title, version, description, pdf, provider,
+                        PdfGenerateOptions.builder().bypassCache(bypassCache).inputMode(mode).fallbacks(fallback).build()))
+                .map(delta -> {
+                    chars.addAndGet(delta.length());
+                    return ServerSentEvent.builder(delta).event("token").build();
+                })
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.builder(String.valueOf(chars.get())).event("done").build()))
+                .onErrorResume(ex -> {
+                    var event = ServerSentEvent.builder(String.valueOf(ex.getMessage())).event("error");
+                    // provider quá tải: gợi ý client chờ Retry-After rồi mới thử lại
+                    if (ex instanceof LlmRateLimitedException rl) event.retry(Duration.ofSeconds(rl.retryAfterSeconds()));
+                    return Mono.just(event.build());
+                })
+                .doFinally(s -> pdf.close());
+    }
 
+    /**
+     * Spool upload ra file tạm riêng (ngân sách file tạm giữ tới khi close, hết ngân sách → 503),
+     * đo thời gian + kích thước theo provider sẽ gọi.
+     */
+    private SpooledUpload spool(MultipartFile file, LlmProviderType provider) throws IOException {
+        Timer.Sample read = metrics.start();
+        SpooledUpload upload;
         try {
-            Map<?, ?> parsed = objectMapper.readValue(json, Map.class);
-            return ResponseEntity.ok(parsed);
-        } catch (JsonProcessingException ex) {
-            return ResponseEntity.ok()
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(json);
+            upload = SpooledUpload.spool(file, uploadBudget);
+        } catch (IOException | RuntimeException ex) {
+            metrics.stop(read, "upload_read", provider, null, ImportMetrics.ERROR);
+            throw ex;
         }
+        metrics.stop(read, "upload_read", provider, null, ImportMetrics.SUCCESS);
+        metrics.bytes("upload", provider, null, upload.size());
+        return upload;
+    }
+
+    /** Loại file theo magic bytes (không tin đuôi file); sai loại thì dọn upload và báo lỗi. */
+    private static SpooledUpload require(SpooledUpload upload, DocumentType expected, String message) {
+        if (upload.type() != expected) {
+            upload.close();
+            throw new IllegalArgumentException(message);
+        }
+        return upload;
+    }
+
+    /** Tài liệu vượt context model (và không tự chuyển được sang chunked): 413 kèm ước lượng token. */
+    @ExceptionHandler(LlmBudgetExceededException.class)
+    public ResponseEntity<Map<String, Object>> budgetExceeded(LlmBudgetExceededException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of(
+                        "error", String.valueOf(ex.getMessage()),
+                        "provider", ex.getProvider(),
+                        "model", String.valueOf(ex.getModel()),
+                        "estimatedTokens", ex.getEstimatedTokens(),
+                        "limitTokens", ex.getLimitTokens(),
+                        "pages", ex.getPages()
+                ));
+    }
+
+    /** Mọi provider trong chain đều trả output bị cắt cụt: lỗi phía upstream, 502. */
+    @ExceptionHandler(LlmTruncatedOutputException.class)
+    public ResponseEntity<Map<String, Object>> truncated(LlmTruncatedOutputException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .body(Map.of(
+                        "error", String.valueOf(ex.getMessage()),
+                        "provider", ex.getProvider(),
+                        "model", String.valueOf(ex.getModel())
+                ));
     }
-}
 
+    /** Provider LLM hết quota / hàng chờ đầy: 429 nhanh kèm Retry-After thay vì giữ request. */
+    @ExceptionHandler(LlmRateLimitedException.class)
+    public ResponseEntity<Map<String, Object>> rateLimited(LlmRateLimitedException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.retryAfterSeconds()))
+                .body(Map.of(
+                        "error", String.valueOf(ex.getMessage()),
+                        "provider", ex.getProvider(),
+                        "retryAfterSeconds", ex.retryAfterSeconds()
+                ));
+    }
+}
@@ -1,10 +1,11 @@
 package com.example.vtm_apidocs_be.web;
 
+import com.example.vtm_apidocs_be.config.LlmWebClients;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -12,14 +13,13 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class LlmHealthController {
 
-    private final WebClient.Builder webClientBuilder;
+    private final LlmWebClients webClients;
 
     @Value("${llm.api.key}") private String apiKey;
 
     @GetMapping(value = "/openrouter/key", produces = MediaType.APPLICATION_JSON_VALUE)
     public Mono<String> keyInfo() {
-        WebClient client = webClientBuilder.build();
-        return client.get()
+        return webClients.get(LlmProviderType.OPENROUTER).get()
                 .uri("https://openrouter.ai/api/v1/key")
                 .header("Authorization", "Bearer " + apiKey)
                 .retrieve()
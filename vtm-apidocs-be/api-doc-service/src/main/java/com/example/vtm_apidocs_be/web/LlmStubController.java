@@ -0,0 +1,288 @@
+package com.example.vtm_apidocs_be.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Stub LLM chạy ngay trong app (profile llm-stub) để load-test pipeline import mà không tốn credit / quota:
+ * nói đúng wire format OpenAI / OpenRouter chat-completions (JSON + SSE), Gemini generateContent /
+ * streamGenerateContent và Files API (resumable upload, GET files/...).
+ * Latency theo phân phối log-normal (median, p99), tỉ lệ lỗi 500 / 429 cấu hình được;
+ * output là spec OpenAPI tổng hợp (llm.stub.paths endpoint) hoặc file llm.stub.spec-file.
+ */
+@RestController
+@RequestMapping("/llm-stub")
+@Profile("llm-stub")
+@RequiredArgsConstructor
+@Slf4j
+public class LlmStubController {
+
+    private static final double Z_99 = 2.326;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${llm.stub.latency.median:1500ms}") private Duration latencyMedian;
+    @Value("${llm.stub.latency.p99:8s}")        private Duration latencyP99;
+    @Value("${llm.stub.error-rate:0}")          private double errorRate;
+    @Value("${llm.stub.rate-limit-rate:0}")     private double rateLimitRate;
+    @Value("${llm.stub.retry-after:5s}")        private Duration retryAfter;
+    @Value("${llm.stub.stream.chunk-chars:200}") private int chunkChars;
+    @Value("${llm.stub.stream.chunk-delay:20ms}") private Duration chunkDelay;
+    @Value("${llm.stub.paths:40}")              private int pathCount;
+    @Value("${llm.stub.spec-file:}")            private String specFile;
+    @Value("${llm.stub.fence:false}")           private boolean fence;
+
+    private String spec;
+
+    @PostConstruct
+    void init() throws IOException {
+        spec = specFile.isBlank() ? syntheticSpec(pathCount) : Files.readString(Path.of(specFile));
+        if (fence) spec = "```json\n" + spec + "\n```";
+        log.warn("LLM stub enabled: median={}, p99={}, errorRate={}, rateLimitRate={}, output={} chars",
+                latencyMedian, latencyP99, errorRate, rateLimitRate, spec.length());
+    }
+
+    // ---------------- OpenAI / OpenRouter ----------------
+
+    @PostMapping({"/openai/v1/chat/completions", "/openrouter/api/v1/chat/completions"})
+    public ResponseEntity<ResponseBodyEmitter> chatCompletions(@RequestBody JsonNode body) {
+        ResponseEntity<ResponseBodyEmitter> failure = failure();
+        if (failure != null) return failure;
+
+        if (body.path("stream").asBoolean(false)) {
+            return sse(chunk -> Map.of("choices", List.of(Map.of("delta", Map.of("content", chunk)))), true);
+        }
+        return json(Map.of(
+                "id", "stub-" + UUID.randomUUID(),
+                "object", "chat.completion",
+                "model", body.path("model").asText("stub"),
+                "choices", List.of(Map.of(
+                        "index", 0,
+                        "message", Map.of("role", "assistant", "content", spec),
+                        "finish_reason", "stop"))
+        ));
+    }
+
+    // ---------------- Gemini ----------------
+
+    /** models/{model}:generateContent | models/{model}:streamGenerateContent */
+    @PostMapping("/gemini/v1beta/models/{modelAction}")
+    public ResponseEntity<ResponseBodyEmitter> geminiGenerate(@PathVariable String modelAction,
+                                                              @RequestBody JsonNode body) {
+        ResponseEntity<ResponseBodyEmitter> failure = failure();
+        if (failure != null) return failure;
+
+        if (modelAction.endsWith(":streamGenerateContent")) {
+            return sse(this::geminiResponse, false);
+        }
+        return json(geminiResponse(spec));
+    }
+
+    /** Files API bước 1: mở phiên resumable, trả X-Goog-Upload-URL. */
+    @PostMapping("/gemini/upload/v1beta/files")
+    public ResponseEntity<Void> geminiUploadStart(HttpServletRequest request) {
+        String uploadUrl = request.getRequestURL() + "/sessions/" + UUID.randomUUID();
+        return ResponseEntity.ok().header("X-Goog-Upload-URL", uploadUrl).build();
+    }
+
+    /** Files API bước 2: nhận bytes (đọc bỏ), trả metadata file. */
+    @PostMapping("/gemini/upload/v1beta/files/sessions/{sessionId}")
+    public Map<String, Object> geminiUpload(@PathVariable String sessionId, HttpServletRequest request) throws IOException {
+        long bytes = drain(request.getInputStream());
+        String name = "files/" + sessionId.substring(0, 12);
+        String base = request.getRequestURL().toString();
+        base = base.substring(0, base.indexOf("/upload/"));
+        return Map.of("file", Map.of(
+                "name", name,
+                "uri", base + "/v1beta/" + name,
+                "mimeType", String.valueOf(request.getContentType()),
+                "sizeBytes", String.valueOf(bytes),
+                "state", "ACTIVE",
+                "expirationTime", Instant.now().plus(Duration.ofHours(48)).toString()
+        ));
+    }
+
+    @GetMapping("/gemini/v1beta/files/{id}")
+    public Map<String, Object> geminiFile(@PathVariable String id) {
+        return Map.of("name", "files/" + id, "state", "ACTIVE");
+    }
+
+    // ---------------- helpers ----------------
+
+    private Map<String, Object> geminiResponse(String text) {
+        return Map.of("candidates", List.of(Map.of(
+                "content", Map.of("role", "model", "parts", List.of(Map.of("text", text))),
+                "finishReason", "STOP")));
+    }
+
+    /** Lỗi ngẫu nhiên theo error-rate / rate-limit-rate; 500 trả sau latency như provider thật, 429 trả ngay. */
+    private ResponseEntity<ResponseBodyEmitter> failure() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < rateLimitRate) {
+            return rateLimited();
+        }
+        if (roll < rateLimitRate + errorRate) {
+            return delayed(HttpStatus.INTERNAL_SERVER_ERROR, Map.of("error", Map.of("code", 500, "message", "stub failure")),
+                    sampleLatency()).build();
+        }
+        return null;
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> json(Object body) {
+        return delayed(HttpStatus.OK, body, sampleLatency()).build();
+    }
+
+    /** Chờ latency rồi stream spec theo từng đoạn chunk-chars, mỗi đoạn cách nhau chunk-delay. */
+    private ResponseEntity<ResponseBodyEmitter> sse(Function<String, Object> event, boolean doneMarker) {
+        SseEmitter emitter = new SseEmitter(0L);
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < spec.length(); i += chunkChars) {
+            chunks.add(spec.substring(i, Math.min(spec.length(), i + chunkChars)));
+        }
+        Flux.fromIterable(chunks)
+                .delaySubscription(sampleLatency())
+                .delayElements(chunkDelay)
+                .concatMap(chunk -> Mono.fromCallable(() -> {
+                    emitter.send(SseEmitter.event().data(objectMapper.writeValueAsString(event.apply(chunk))));
+                    return chunk;
+                }))
+                .then(Mono.fromCallable(() -> {
+                    if (doneMarker) emitter.send(SseEmitter.event().data("[DONE]"));
+                    return true;
+                }))
+                .subscribe(ok -> emitter.complete(), emitter::completeWithError);
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    private EmitterResponse delayed(HttpStatus status, Object body, Duration latency) {
+        return new EmitterResponse(status, body, latency);
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> rateLimited() {
+        return delayed(HttpStatus.TOO_MANY_REQUESTS, Map.of("error", Map.of("code", 429, "message", "stub rate limit")),
+                Duration.ofMillis(50))
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+                .build();
+    }
+
+    /** Response JSON gửi qua ResponseBodyEmitter sau một khoảng trễ, không giữ thread Tomcat. */
+    private final class EmitterResponse {
+        private final ResponseEntity.BodyBuilder builder;
+        private final Object body;
+        private final Duration latency;
+
+        EmitterResponse(HttpStatus status, Object body, Duration latency) {
+            this.builder = ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
+            this.body = body;
+            this.latency = latency;
+        }
+
+        EmitterResponse header(String name, String value) {
+            builder.header(name, value);
+            return this;
+        }
+
+        ResponseEntity<ResponseBodyEmitter> build() {
+            ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+            Mono.delay(latency)
+                    .subscribe(t -> {
+                        try {
+                            emitter.send(body, MediaType.APPLICATION_JSON);
+                            emitter.complete();
+                        } catch (IOException | RuntimeException ex) {
+                            emitter.completeWithError(ex);
+                        }
+                    });
+            return builder.body(emitter);
+        }
+    }
+
+    /** Log-normal: median = e^mu, p99 = e^(mu + 2.326 sigma). */
+    private Duration sampleLatency() {
+        double median = Math.max(1, latencyMedian.toMillis());
+        double p99 = Math.max(median, latencyP99.toMillis());
+        double sigma = Math.log(p99 / median) / Z_99;
+        double millis = median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofMillis((long) millis);
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        long total = 0;
+        for (int r; (r = in.read(buf)) != -1; ) total += r;
+        return total;
+    }
+
+    /** Spec OpenAPI 3.0.3 hợp lệ với n endpoint CRUD, đủ lớn để đo parse / persist / index. */
+    private String syntheticSpec(int n) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("openapi", "3.0.3");
+        root.putObject("info").put("title", "Stub API").put("version", "1.0.0").put("description", "Generated by LLM stub");
+        root.putArray("servers").addObject().put("url", "https://stub.example.com/api");
+        ArrayNode tags = root.putArray("tags");
+        ObjectNode paths = root.putObject("paths");
+        ObjectNode schemas = root.putObject("components").putObject("schemas");
+        for (int i = 0; i < n; i++) {
+            String resource = "resource" + i;
+            String schema = "Resource" + i;
+            tags.addObject().put("name", resource);
+            ObjectNode props = schemas.putObject(schema).put("type", "object").putObject("properties");
+            props.putObject("id").put("type", "string").put("format", "uuid");
+            props.putObject("name").put("type", "string");
+            props.putObject("createdAt").put("type", "string").put("format", "date-time");
+
+            ObjectNode list = paths.putObject("/" + resource);
+            ObjectNode get = list.putObject("get").put("operationId", "list" + schema).put("summary", "List " + resource);
+            get.putArray("tags").add(resource);
+            get.putObject("responses").putObject("200").put("description", "OK")
+                    .putObject("content").putObject("application/json").putObject("schema")
+                    .put("type", "array").putObject("items").put("$ref", "#/components/schemas/" + schema);
+            ObjectNode post = list.putObject("post").put("operationId", "create" + schema).put("summary", "Create " + resource);
+            post.putArray("tags").add(resource);
+            post.putObject("requestBody").put("required", true).putObject("content").putObject("application/json")
+                    .putObject("schema").put("$ref", "#/components/schemas/" + schema);
+            post.putObject("responses").putObject("201").put("description", "Created");
+
+            ObjectNode item = paths.putObject("/" + resource + "/{id}");
+            ObjectNode getOne = item.putObject("get").put("operationId", "get" + schema).put("summary", "Get " + resource);
+            getOne.putArray("tags").add(resource);
+            getOne.putArray("parameters").addObject().put("name", "id").put("in", "path").put("required", true)
+                    .putObject("schema").put("type", "string");
+            ObjectNode responses = getOne.putObject("responses");
+            responses.putObject("200").put("description", "OK").putObject("content").putObject("application/json")
+                    .putObject("schema").put("$ref", "#/components/schemas/" + schema);
+            responses.putObject("404").put("description", "Not found");
+        }
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.vtm_apidocs_be.web;
 
-import io.netty.resolver.DefaultAddressResolverGroup;
+import com.example.vtm_apidocs_be.config.LlmWebClients;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
@@ -9,9 +10,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
 
 import java.util.List;
 import java.util.Map;
@@ -21,7 +20,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class LlmTestController {
 
-    private final WebClient.Builder webClientBuilder;
+    private final LlmWebClients webClients;
 
     @Value("${llm.api.url}")  private String apiUrl;   // https://openrouter.ai/api/v1/chat/completions
     @Value("${llm.api.key}")  private String apiKey;   // Bearer ...
@@ -32,18 +31,8 @@ public class LlmTestController {
         if (apiKey == null || apiKey.isBlank()) {
             throw new IllegalStateException("OPENROUTER_API_KEY/llm.api.key is missing");
         }
-
-        // Ép Netty dùng JDK resolver (ổn định, tránh lỗi AAAA DNS)
-        HttpClient httpClient = HttpClient.create()
-                .resolver(DefaultAddressResolverGroup.INSTANCE);
-
-        return webClientBuilder
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader("HTTP-Referer", publicUrl)
-                .defaultHeader("X-Title", "VTM-APIDocs (Dev)")
-                .build();
+        // Dùng chung pool OpenRouter; header gắn theo request nên không ảnh hưởng client gốc
+        return webClients.get(LlmProviderType.OPENROUTER);
     }
 
     @GetMapping("/openrouter/echo")
@@ -60,6 +49,10 @@ public class LlmTestController {
 
         Map<String, Object> resp = orClient().post()
                 .uri(apiUrl)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .header("HTTP-Referer", publicUrl)
+                .header("X-Title", "VTM-APIDocs (Dev)")
+                .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(payload)
                 .retrieve()
                 .onStatus(
@@ -1,8 +1,11 @@
 package com.example.vtm_apidocs_be.web;
 
+import com.example.vtm_apidocs_be.dto.EndpointView;
 import com.example.vtm_apidocs_be.entity.ApiDocument;
-import com.example.vtm_apidocs_be.entity.ApiEndpointIndex;
 import com.example.vtm_apidocs_be.service.DocumentService;
+import com.example.vtm_apidocs_be.service.SpecSliceService;
+import com.example.vtm_apidocs_be.utils.SpooledUpload;
+import com.example.vtm_apidocs_be.utils.UploadBudget;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -12,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
@@ -26,11 +30,17 @@ import java.util.NoSuchElementException;
 public class SpecController {
 
     private final DocumentService documentService;
+    private final SpecSliceService specSliceService;
+    private final UploadBudget uploadBudget;
 
+    /** tags=a,b: chỉ trả các operation có tag tương ứng + components được tham chiếu (luôn là JSON). */
     @GetMapping("/{id}/spec")
     public ResponseEntity<String> getSpec(@PathVariable Long id,
-                                          @RequestParam(value = "frontend", required = false) String frontend) {
-        var dto = documentService.getSpecForFrontend(id, frontend);
+                                          @RequestParam(value = "frontend", required = false) String frontend,
+                                          @RequestParam(value = "tags", required = false) List<String> tags) {
+        var dto = (tags == null || tags.isEmpty())
+                ? documentService.getSpecForFrontend(id, frontend)
+                : specSliceService.sliceByTags(id, tags);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_TYPE, dto.contentType() + ";charset=" + StandardCharsets.UTF_8)
                 .body(dto.raw());
@@ -42,17 +52,20 @@ public class SpecController {
         return Map.of("documentId", id, "status", "ok", "updatedAt", Instant.now().toString());
     }
 
-    /** Upload file spec (.json/.yaml/.yml). */
+    /** Upload file spec (.json/.yaml/.yml); file được spool ra đĩa và tính vào ngân sách upload chung. */
     @PostMapping(value = "/{id}/upload", consumes = "multipart/form-data")
-    public Map<String, Object> uploadSpec(@PathVariable Long id, @RequestPart("file") MultipartFile file) {
-        documentService.uploadSpec(id, file);
+    public Map<String, Object> uploadSpec(@PathVariable Long id, @RequestPart("file") MultipartFile file) throws IOException {
+        try (SpooledUpload upload = SpooledUpload.spool(file, uploadBudget)) {
+            documentService.uploadSpec(id, upload);
+        }
         return Map.of("documentId", id, "filename", file.getOriginalFilename(), "status", "ok");
     }
 
-    /** Reindex thủ công. */
+    /** Reindex thủ công (validate=true: parse đầy đủ bằng swagger-parser trước khi index). */
     @PostMapping("/{id}/reindex")
-    public Map<String, Object> reindex(@PathVariable Long id) {
-        documentService.reindex(id);
+    public Map<String, Object> reindex(@PathVariable Long id,
+                                       @RequestParam(defaultValue = "false") boolean validate) {
+        documentService.reindex(id, validate);
         return Map.of("documentId", id, "status", "ok");
     }
 
@@ -73,7 +86,7 @@ public class SpecController {
 
     /** Danh sách endpoint index (phục vụ dashboard/search). */
     @GetMapping("/{id}/endpoints")
-    public List<ApiEndpointIndex> listEndpoints(@PathVariable Long id) {
+    public List<EndpointView> listEndpoints(@PathVariable Long id) {
         return documentService.listEndpoints(id);
     }
 
@@ -0,0 +1,264 @@
+package com.example.vtm_apidocs_be.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bắn N import đồng thời vào app đang chạy (thường với --spring.profiles.active=llm-stub) và đo cả pipeline
+ * controller → LlmService → persist → index: throughput, p50/p99 latency end-to-end, heap (qua actuator).
+ * Không phải test JUnit, chạy tay:
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) com.example.vtm_apidocs_be.loadtest.ImportLoadDriver \
+ *        --base=http://localhost:8081 --category=1 --imports=50 --concurrency=8 --provider=OPENROUTER
+ *
+ * Tuỳ chọn: --target=import|generate, --mode=PDF|TEXT, --chunked=true, --pdf=file.pdf (không có thì tự sinh --pages trang),
+ * --poll=500ms, --timeout=10m.
+ */
+public class ImportLoadDriver {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parse(args);
+        String base = opt.getOrDefault("base", "http://localhost:8081");
+        String target = opt.getOrDefault("target", "import");
+        int imports = Integer.parseInt(opt.getOrDefault("imports", "20"));
+        int concurrency = Integer.parseInt(opt.getOrDefault("concurrency", "4"));
+        Duration poll = Duration.ofMillis(Long.parseLong(opt.getOrDefault("poll", "500").replace("ms", "")));
+        Duration timeout = Duration.ofMinutes(Long.parseLong(opt.getOrDefault("timeout", "10").replace("m", "")));
+        byte[] pdf = opt.containsKey("pdf")
+                ? Files.readAllBytes(Path.of(opt.get("pdf")))
+                : samplePdf(Integer.parseInt(opt.getOrDefault("pages", "5")));
+
+        HttpClient http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Math.max(2, concurrency)))
+                .build();
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        System.out.printf("run=%s target=%s imports=%d concurrency=%d pdf=%d bytes%n", run, target, imports, concurrency, pdf.length);
+
+        // heap được lấy mẫu mỗi giây trong lúc chạy
+        AtomicLong heapMax = new AtomicLong();
+        long heapBefore = heapUsed(http, base);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> heapMax.accumulateAndGet(heapUsed(http, base), Math::max), 0, 1, TimeUnit.SECONDS);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Outcome>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < imports; i++) {
+            int n = i;
+            futures.add(workers.submit(() -> target.equals("generate")
+                    ? generate(http, base, pdf, opt)
+                    : importOnce(http, base, pdf, opt, "loadtest-" + run + "-" + n, poll, timeout)));
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        Map<String, Integer> failures = new HashMap<>();
+        for (Future<Outcome> f : futures) {
+            Outcome o = f.get();
+            if (o.ok()) latencies.add(o.nanos());
+            else failures.merge(o.error(), 1, Integer::sum);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        workers.shutdown();
+        sampler.shutdownNow();
+
+        Collections.sort(latencies);
+        System.out.printf("done in %.1fs: ok=%d failed=%d throughput=%.2f/s%n",
+                seconds, latencies.size(), imports - latencies.size(), latencies.size() / seconds);
+        if (!latencies.isEmpty()) {
+            System.out.printf("latency p50=%dms p90=%dms p99=%dms max=%dms%n",
+                    percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                    latencies.get(latencies.size() - 1) / 1_000_000);
+        }
+        System.out.printf("heap before=%dMB max=%dMB after=%dMB%n",
+                heapBefore >> 20, heapMax.get() >> 20, heapUsed(http, base) >> 20);
+        failures.forEach((error, count) -> System.out.printf("  %dx %s%n", count, error));
+        System.exit(0);
+    }
+
+    private record Outcome(boolean ok, long nanos, String error) {
+        static Outcome success(long nanos) {
+            return new Outcome(true, nanos, null);
+        }
+
+        static Outcome failure(String error) {
+            return new Outcome(false, 0, error.length() > 160 ? error.substring(0, 160) : error);
+        }
+    }
+
+    /** POST /import-pdf rồi poll job tới SUCCEEDED / FAILED; latency tính tới lúc document đã persist + index. */
+    private static Outcome importOnce(HttpClient http, String base, byte[] pdf, Map<String, String> opt,
+                                      String slug, Duration poll, Duration timeout) {
+        long start = System.nanoTime();
+        try {
+            Multipart form = new Multipart()
+                    .field("name", "Load test " + slug)
+                    .field("slug", slug)
+                    .field("version", "1.0.0")
+                    .field("categoryId", opt.getOrDefault("category", "1"))
+                    .field("provider", opt.getOrDefault("provider", "OPENROUTER"))
+                    .field("mode", opt.getOrDefault("mode", "PDF"))
+                    .field("chunked", opt.getOrDefault("chunked", "false"))
+                    .field("bypassCache", "true")
+                    .file("file", slug + ".pdf", pdf);
+            HttpResponse<String> submit = http.send(form.post(base + "/admin/docs/import-pdf"),
+                    HttpResponse.BodyHandlers.ofString());
+            if (submit.statusCode() != 202) {
+                return Outcome.failure("submit " + submit.statusCode() + " " + submit.body());
+            }
+            String statusUrl = base + MAPPER.readTree(submit.body()).path("statusUrl").asText();
+
+            long deadline = start + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(poll.toMillis());
+                JsonNode job = MAPPER.readTree(http.send(HttpRequest.newBuilder(URI.create(statusUrl)).GET().build(),
+                        HttpResponse.BodyHandlers.ofString()).body());
+                switch (job.path("status").asText()) {
+                    case "SUCCEEDED" -> {
+                        return Outcome.success(System.nanoTime() - start);
+                    }
+                    case "FAILED" -> {
+                        return Outcome.failure("job failed at " + job.path("stage").asText() + ": " + job.path("error").asText());
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return Outcome.failure("timeout after " + timeout);
+        } catch (IOException | InterruptedException ex) {
+            return Outcome.failure(ex.toString());
+        }
+    }
+
+    /** POST /generate-openapi (đồng bộ, không persist): đo riêng đường LLM. */
+    private static Outcome generate(HttpClient http, String base, byte[] pdf, Map<String, String> opt) {
+        long start = System.nanoTime();
+        try {
+            Multipart form = new Multipart()
+                    .field("title", "Load test")
+                    .field("version", "1.0.0")
+                    .file("file", "load.pdf", pdf);
+            HttpResponse<String> resp = http.send(form.post(base + "/admin/docs/generate-openapi"),
+                    HttpResponse.BodyHandlers.ofString());
+            return resp.statusCode() == 200
+                    ? Outcome.success(System.nanoTime() - start)
+                    : Outcome.failure("generate " + resp.statusCode() + " " + resp.body());
+        } catch (IOException | InterruptedException ex) {
+            return Outcome.failure(ex.toString());
+        }
+    }
+
+    private static long heapUsed(HttpClient http, String base) {
+        try {
+            HttpResponse<String> resp = http.send(HttpRequest.newBuilder(
+                            URI.create(base + "/actuator/metrics/jvm.memory.used?tag=area:heap")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return (long) MAPPER.readTree(resp.body()).path("measurements").path(0).path("value").asDouble();
+        } catch (Exception ex) {
+            return 0;
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1_000_000;
+    }
+
+    /** PDF mẫu vài trang mô tả endpoint, đủ để đi qua extract / split. */
+    private static byte[] samplePdf(int pages) throws IOException {
+        try (PDDocument doc = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 11);
+                    cs.newLineAtOffset(50, 740);
+                    cs.showText("Section " + p + ": Resource" + p + " API");
+                    for (String line : List.of("GET /resource" + p + " - list items", "POST /resource" + p + " - create item",
+                            "GET /resource" + p + "/{id} - get item", "Field id: string (uuid), name: string")) {
+                        cs.newLineAtOffset(0, -18);
+                        cs.showText(line);
+                    }
+                    cs.endText();
+                }
+            }
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opt = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) continue;
+            int eq = arg.indexOf('=');
+            opt.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return opt;
+    }
+
+    /** multipart/form-data tối giản cho java.net.http. */
+    private static final class Multipart {
+        private final String boundary = "----vtm" + UUID.randomUUID();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        Multipart field(String name, String value) {
+            write("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+            return this;
+        }
+
+        Multipart file(String name, String filename, byte[] data) {
+            write("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename
+                    + "\"\r\nContent-Type: application/pdf\r\n\r\n");
+            body.writeBytes(data);
+            write("\r\n");
+            return this;
+        }
+
+        HttpRequest post(String url) {
+            write("--" + boundary + "--\r\n");
+            return HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .timeout(Duration.ofMinutes(10))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                    .build();
+        }
+
+        private void write(String s) {
+            body.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
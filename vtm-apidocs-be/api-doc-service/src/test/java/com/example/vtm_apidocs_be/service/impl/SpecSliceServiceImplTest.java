@@ -0,0 +1,59 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.entity.ApiDocument;
+import com.example.vtm_apidocs_be.repo.DocumentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SpecSliceServiceImplTest {
+
+    private static final String SPEC = """
+            {"openapi": "3.1.0",
+             "paths": {
+               "/pets": {"$ref": "#/components/pathItems/Pets"},
+               "/pets-v2": {"$ref": "#/paths/~1pets", "summary": "v2",
+                            "parameters": [{"name": "v", "in": "query"}]},
+               "/loop": {"$ref": "#/paths/~1loop"},
+               "/owners": {"get": {"tags": ["owners"], "responses": {"200": {"description": "ok"}}}}
+             },
+             "components": {
+               "pathItems": {
+                 "Pets": {"parameters": [{"name": "v", "in": "query", "required": true}],
+                          "get": {"tags": ["pets"], "responses": {"200": {"content": {"application/json":
+                                  {"schema": {"$ref": "#/components/schemas/Pet"}}}}}}}
+               },
+               "schemas": {"Pet": {"type": "object"}, "Owner": {"type": "object"}}
+             }}""";
+
+    private final DocumentRepository repo = mock(DocumentRepository.class);
+    private final SpecSliceServiceImpl service = new SpecSliceServiceImpl(repo, 8);
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void pathItemRefsAreResolvedBeforeTagFiltering() throws Exception {
+        when(repo.findSpecHashById(1L)).thenReturn(Optional.empty());
+        when(repo.findById(1L)).thenReturn(Optional.of(ApiDocument.builder().id(1L).specJson(SPEC).build()));
+
+        JsonNode out = mapper.readTree(service.sliceByTags(1L, List.of("pets")).raw());
+
+        JsonNode paths = out.path("paths");
+        assertThat(paths.properties()).extracting(e -> e.getKey()).containsExactly("/pets", "/pets-v2");
+        assertThat(paths.path("/pets").has("$ref")).isFalse();
+        assertThat(paths.path("/pets").path("get").path("tags").get(0).asText()).isEqualTo("pets");
+        // field cạnh $ref thắng, parameter cùng (in, name) không bị nhân đôi
+        assertThat(paths.path("/pets-v2").path("summary").asText()).isEqualTo("v2");
+        assertThat(paths.path("/pets-v2").path("parameters")).hasSize(1);
+        assertThat(paths.path("/pets-v2").path("parameters").get(0).has("required")).isFalse();
+        // schema chỉ được tham chiếu qua path item vẫn được giữ
+        assertThat(out.path("components").path("schemas").has("Pet")).isTrue();
+        assertThat(out.path("components").path("schemas").has("Owner")).isFalse();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.vtm_apidocs_be.service.impl;
+
+import com.example.vtm_apidocs_be.dto.EndpointRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingEndpointExtractorTest {
+
+    private final StreamingEndpointExtractor extractor = new StreamingEndpointExtractor();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"openapi/refs.yaml", "openapi/refs.json"})
+    void resolvesComponentAndPathItemRefs(String fixture) throws IOException {
+        Map<String, EndpointRecord> byOp = new LinkedHashMap<>();
+        Map<String, Set<String>> graph = extractor.extract(read(fixture), r -> byOp.put(r.method() + " " + r.path(), r));
+
+        // /external trỏ ra file ngoài -> bị bỏ qua, các path còn lại đủ
+        assertThat(byOp.keySet()).containsExactlyInAnyOrder(
+                "GET /pets/{id}", "PUT /pets/{id}", "GET /owners", "GET /owners-v2", "DELETE /owners-v2");
+
+        EndpointRecord getPet = byOp.get("GET /pets/{id}");
+        assertThat(getPet.operationId()).isEqualTo("getPet");
+        assertThat(getPet.tags()).containsExactly("pets");
+        assertThat(getPet.parameters()).containsExactly(Map.of("name", "id", "in", "path", "required", true));
+        assertThat(getPet.responseCodes()).containsExactly("200", "404");
+        assertThat(getPet.responseMediaTypes()).containsExactly("application/json", "application/xml");
+
+        assertThat(byOp.get("PUT /pets/{id}").requestMediaTypes()).containsExactly("application/json");
+
+        EndpointRecord owners = byOp.get("GET /owners");
+        assertThat(owners.operationId()).isEqualTo("listOwners");
+        assertThat(owners.responseMediaTypes()).containsExactly("application/json");
+        assertThat(owners.parameters()).extracting(p -> p.get("name")).containsExactly("limit");
+
+        // "#/paths/~1owners" (RFC 6901) -> chuỗi ref 2 bước tới components.pathItems.Owners, cộng op khai báo cạnh $ref
+        assertThat(byOp.get("GET /owners-v2").operationId()).isEqualTo("listOwners");
+        assertThat(byOp.get("DELETE /owners-v2").operationId()).isEqualTo("purgeOwners");
+
+        assertThat(graph.get("pathItems/Owners")).containsExactly("schemas/Owner");
+        assertThat(graph.get("responses/Pet")).containsExactly("schemas/Pet");
+        assertThat(graph.get("schemas/Pet")).containsExactly("schemas/Owner");
+    }
+
+    @Test
+    void operationParameterOverridesPathLevelOne() {
+        String spec = """
+                {"paths": {"/a": {
+                  "parameters": [{"name": "q", "in": "query", "required": false}],
+                  "get": {"parameters": [{"name": "q", "in": "query", "required": true}], "responses": {}}
+                }}}""";
+        List<EndpointRecord> out = new ArrayList<>();
+        extractor.extract(spec, out::add);
+
+        assertThat(out).hasSize(1);
+        assertThat(out.get(0).parameters()).containsExactly(Map.of("name", "q", "in", "query", "required", true));
+    }
+
+    @Test
+    void cyclicPathItemRefsTerminate() {
+        String spec = """
+                {"paths": {
+                  "/a": {"$ref": "#/paths/~1b"},
+                  "/b": {"$ref": "#/paths/~1a", "get": {"operationId": "b", "responses": {}}}
+                }}""";
+        List<EndpointRecord> out = new ArrayList<>();
+        extractor.extract(spec, out::add);
+
+        assertThat(out).extracting(r -> r.method() + " " + r.path()).containsExactlyInAnyOrder("GET /a", "GET /b");
+    }
+
+    @Test
+    void rejectsNonObjectRoot() {
+        assertThatThrownBy(() -> extractor.extract("[1, 2]", r -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> extractor.extract("  ", r -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String read(String resource) throws IOException {
+        try (InputStream in = StreamingEndpointExtractorTest.class.getClassLoader().getResourceAsStream(resource)) {
+            return new String(Objects.requireNonNull(in, resource).readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
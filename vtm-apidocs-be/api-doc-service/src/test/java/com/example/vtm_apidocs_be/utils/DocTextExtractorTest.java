@@ -0,0 +1,81 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocTextExtractorTest {
+
+    private static final String TRANSITIONAL_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument";
+    private static final String TRANSITIONAL_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String STRICT_REL = "http://purl.oclc.org/ooxml/officeDocument/relationships/officeDocument";
+    private static final String STRICT_NS = "http://purl.oclc.org/ooxml/wordprocessingml/main";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTransitionalDocx() throws IOException {
+        String text = DocTextExtractor.extract(docx("t.docx", TRANSITIONAL_REL, TRANSITIONAL_NS), "t.docx");
+
+        assertThat(text).contains("GET /pets").contains("id\tinteger");
+    }
+
+    @Test
+    void readsStrictDocx() throws IOException {
+        String text = DocTextExtractor.extract(docx("s.docx", STRICT_REL, STRICT_NS), "s.docx");
+
+        assertThat(text).contains("GET /pets").contains("id\tinteger");
+    }
+
+    @Test
+    void rejectsUnsupportedType() {
+        assertThatThrownBy(() -> DocTextExtractor.extract(dir.resolve("x.txt"), "x.txt"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Path docx(String name, String relType, String ns) throws IOException {
+        Path file = dir.resolve(name);
+        try (OutputStream os = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(os)) {
+            put(zip, "[Content_Types].xml", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">
+                      <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>
+                      <Default Extension="xml" ContentType="application/xml"/>
+                      <Override PartName="/word/document.xml"
+                                ContentType="application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml"/>
+                    </Types>""");
+            put(zip, "_rels/.rels", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">
+                      <Relationship Id="rId1" Type="%s" Target="word/document.xml"/>
+                    </Relationships>""".formatted(relType));
+            put(zip, "word/document.xml", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <w:document xmlns:w="%s"><w:body>
+                      <w:p><w:r><w:t>GET /pets</w:t></w:r></w:p>
+                      <w:tbl><w:tr>
+                        <w:tc><w:p><w:r><w:t>id</w:t></w:r></w:p></w:tc>
+                        <w:tc><w:p><w:r><w:t>integer</w:t></w:r></w:p></w:tc>
+                      </w:tr></w:tbl>
+                    </w:body></w:document>""".formatted(ns));
+        }
+        return file;
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
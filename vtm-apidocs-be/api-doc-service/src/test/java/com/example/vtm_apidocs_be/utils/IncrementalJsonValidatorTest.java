@@ -0,0 +1,72 @@
+package com.example.vtm_apidocs_be.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IncrementalJsonValidatorTest {
+
+    @Test
+    void acceptsDocumentSplitAcrossChunks() {
+        var v = new IncrementalJsonValidator();
+        v.feed("```json\n{\"openapi\": \"3.0");
+        v.feed(".3\", \"paths\": {\"/a\": {\"get\": {\"deprecated\": fa");
+        assertThat(v.isComplete()).isFalse();
+        v.feed("lse, \"x-n\": -1.5e+3, \"y\": [null, true, 0]}}}}\n```");
+
+        assertThat(v.isComplete()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"tru", "nul", "fals", "truex", "1e", "1.", "01", "-", "1e+", "--1", ".5", "NaN"})
+    void rejectsInvalidScalars(String literal) {
+        var v = new IncrementalJsonValidator();
+
+        assertThatThrownBy(() -> v.feed("{\"a\": " + literal + "}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"true", "false", "null", "0", "-0", "12", "1.25", "1e5", "1E-5", "-3.0e+2"})
+    void acceptsValidScalars(String literal) {
+        var v = new IncrementalJsonValidator();
+        v.feed("{\"a\": [" + literal + "]}");
+
+        assertThat(v.isComplete()).isTrue();
+    }
+
+    @Test
+    void toleratesWhatJsonRepairFixes() {
+        var v = new IncrementalJsonValidator();
+        String raw = "{\"a\": [1, 2,], \"b\": {\"c\": \"x\ny\",},}";
+        v.feed(raw);
+
+        assertThat(v.isComplete()).isTrue();
+        assertThat(JsonRepair.repair(raw).json()).isEqualTo("{\"a\": [1, 2], \"b\": {\"c\": \"x\\ny\"}}");
+    }
+
+    @Test
+    void failsFastOnStructuralErrors() {
+        assertThatThrownBy(() -> new IncrementalJsonValidator().feed("{\"a\": 1 \"b\": 2}"))
+                .hasMessageContaining("char 8");
+        assertThatThrownBy(() -> new IncrementalJsonValidator().feed("{\"a\": [1}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new IncrementalJsonValidator().feed("{a: 1}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new IncrementalJsonValidator().feed("{\"a\": [,]}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new IncrementalJsonValidator().feed("{,}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void ignoresTextAfterRootCloses() {
+        var v = new IncrementalJsonValidator();
+        v.feed("{\"a\": 1}\nthat's all, ]]");
+
+        assertThat(v.isComplete()).isTrue();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonRepairTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void cleanJsonPassesThroughUnchanged() {
+        String json = "{\"openapi\": \"3.0.3\",\n  \"paths\": {}}";
+        JsonRepair.Result r = JsonRepair.repair(json);
+
+        assertThat(r.json()).isEqualTo(json);
+        assertThat(r.report().isClean()).isTrue();
+    }
+
+    @Test
+    void stripsCodeFence() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("```json\n{\"a\": 1}\n```");
+
+        assertThat(r.json()).isEqualTo("{\"a\": 1}");
+        assertThat(r.report().fenced()).isTrue();
+        assertThat(r.report().actions()).contains("code_fence");
+        assertValid(r);
+    }
+
+    @Test
+    void dropsSurroundingProse() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("Here you go:\n{\"a\": [1, 2]}\nHope this helps!");
+
+        assertThat(r.json()).isEqualTo("{\"a\": [1, 2]}");
+        assertThat(r.report().leadingChars()).isPositive();
+        assertThat(r.report().trailingChars()).isPositive();
+        assertThat(r.report().actions()).containsExactly("surrounding_text");
+        assertValid(r);
+    }
+
+    @Test
+    void removesTrailingCommas() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"a\": [1, 2,], \"b\": {\"c\": 1,},}");
+
+        assertThat(r.json()).isEqualTo("{\"a\": [1, 2], \"b\": {\"c\": 1}}");
+        assertThat(r.report().trailingCommas()).isEqualTo(3);
+        assertThat(r.report().truncated()).isFalse();
+        assertValid(r);
+    }
+
+    @Test
+    void escapesControlCharactersInsideStrings() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"a\": \"line1\nline2\ttab\"}");
+
+        assertThat(r.report().controlChars()).isEqualTo(2);
+        assertThat(mapper.readTree(r.json()).get("a").asText()).isEqualTo("line1\nline2\ttab");
+    }
+
+    @Test
+    void unescapesSlashes() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"url\": \"http:\\/\\/x\"}");
+
+        assertThat(r.json()).isEqualTo("{\"url\": \"http://x\"}");
+        assertThat(r.report().slashEscapes()).isEqualTo(2);
+    }
+
+    @Test
+    void fixesMismatchedCloser() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"a\": [1, 2}");
+
+        assertThat(r.report().mismatchedClosers()).isEqualTo(1);
+        assertThat(r.report().truncated()).isFalse();
+        assertThat(mapper.readTree(r.json()).get("a").size()).isEqualTo(2);
+    }
+
+    @Test
+    void closesTruncatedOutputAndReportsIt() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"a\": {\"b\": [1, 2");
+
+        assertThat(r.json()).isEqualTo("{\"a\": {\"b\": [1, 2]}}");
+        assertThat(r.report().truncated()).isTrue();
+        assertThat(r.report().closersAdded()).isEqualTo(3);
+        assertThat(r.report().actions()).contains("truncated");
+        assertValid(r);
+    }
+
+    @Test
+    void truncatedKeyIsDropped() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"a\": 1, \"b");
+
+        assertThat(r.json()).isEqualTo("{\"a\": 1}");
+        assertThat(r.report().truncated()).isTrue();
+        assertValid(r);
+    }
+
+    @Test
+    void truncatedLiteralIsDropped() throws Exception {
+        JsonRepair.Result r = JsonRepair.repair("{\"a\": tru");
+
+        assertThat(r.json()).isEqualTo("{}");
+        assertThat(r.report().truncated()).isTrue();
+        assertValid(r);
+    }
+
+    @Test
+    void noObjectMeansNotFound() {
+        assertThat(JsonRepair.repair("no json here").found()).isFalse();
+        assertThat(JsonRepair.repair(null).found()).isFalse();
+        assertThatThrownBy(() -> JsonRepair.repairOrThrow("no json here"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertValid(JsonRepair.Result r) throws Exception {
+        JsonNode node = mapper.readTree(r.json());
+        assertThat(node.isObject()).isTrue();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.config.LlmProviderSettings;
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+import static com.example.vtm_apidocs_be.entity.LlmProviderType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmRouterTest {
+
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(300);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<LlmProviderType, AtomicInteger> calls = new EnumMap<>(LlmProviderType.class);
+    private LlmRouter router;
+    private LlmGenerateRequest req;
+    private List<LlmProviderType> chain;
+
+    @BeforeEach
+    void setUp() {
+        LlmProviderSettings settings = new LlmProviderSettings() {
+            @Override
+            public LlmGenerateRequest forProvider(LlmGenerateRequest r, LlmProviderType provider) {
+                return r.toBuilder().provider(provider).build();
+            }
+        };
+        router = new LlmRouter(settings, registry, List.of(), 20, 5, 0.5, 0.8, Duration.ofSeconds(120),
+                Duration.ofSeconds(60), true, 1, HEDGE_DELAY);
+        req = LlmGenerateRequest.builder().provider(OPENROUTER).fallbacks(List.of(OPENAI, GEMINI)).build();
+        chain = router.chain(req, Set.of(OPENROUTER, OPENAI, GEMINI));
+        for (LlmProviderType t : LlmProviderType.values()) calls.put(t, new AtomicInteger());
+
+        // 1 mẫu latency nhanh cho provider chính -> hedge delay = min-delay
+        router.route(req, chain, (r, onAdmit) -> onAdmit.apply(Mono.just("warmup"))).block();
+    }
+
+    @Test
+    void earlyPrimaryErrorFailsOverWithoutWaitingForHedgeDelay() {
+        long start = System.nanoTime();
+        LlmRouter.Routed result = router.route(req, chain, call(Map.of(
+                OPENROUTER, Mono.delay(Duration.ofMillis(20)).then(Mono.error(new RuntimeException("boom"))),
+                OPENAI, Mono.just("openai")))).block();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(result.content()).isEqualTo("openai");
+        assertThat(result.request().getProvider()).isEqualTo(OPENAI);
+        assertThat(elapsedMs).isLessThan(HEDGE_DELAY.toMillis());
+        assertThat(calls.get(OPENAI)).hasValue(1);
+        assertThat(calls.get(GEMINI)).hasValue(0);
+    }
+
+    @Test
+    void whenHedgeRanAndBothFailNextProviderIsTheOneAfterTheHedge() {
+        String result = router.route(req, chain, call(Map.of(
+                OPENROUTER, Mono.delay(HEDGE_DELAY.multipliedBy(2)).then(Mono.error(new RuntimeException("slow boom"))),
+                OPENAI, Mono.error(new RuntimeException("hedge boom")),
+                GEMINI, Mono.just("gemini")))).block().content();
+
+        assertThat(result).isEqualTo("gemini");
+        assertThat(calls.get(OPENAI)).hasValue(1); // chỉ chạy với vai trò hedge, không bị gọi lại
+        assertThat(decisions(OPENAI, "hedge")).isEqualTo(1.0);
+    }
+
+    @Test
+    void slowPrimaryLosesToHedge() {
+        LlmRouter.Routed result = router.route(req, chain, call(Map.of(
+                OPENROUTER, Mono.delay(Duration.ofSeconds(5)).thenReturn("openrouter"),
+                OPENAI, Mono.just("openai")))).block(Duration.ofSeconds(2));
+
+        assertThat(result.content()).isEqualTo("openai");
+        assertThat(result.request().getProvider()).isEqualTo(OPENAI); // cache ghi theo provider thắng, không theo primary
+        assertThat(calls.get(GEMINI)).hasValue(0);
+    }
+
+    @Test
+    void hedgeTimerStartsOnlyAfterPrimaryIsAdmitted() {
+        // primary xếp hàng admission lâu hơn hedge delay rồi trả lời ngay: không được hedge
+        String result = router.route(req, chain, (r, onAdmit) -> {
+            calls.get(r.getProvider()).incrementAndGet();
+            return Mono.delay(HEDGE_DELAY.multipliedBy(2)).then(onAdmit.apply(Mono.just(r.getProvider().name())));
+        }).block().content();
+
+        assertThat(result).isEqualTo("OPENROUTER");
+        assertThat(calls.get(OPENAI)).hasValue(0);
+    }
+
+    private BiFunction<LlmGenerateRequest, UnaryOperator<Mono<String>>, Mono<String>> call(Map<LlmProviderType, Mono<String>> behaviour) {
+        return (r, onAdmit) -> {
+            calls.get(r.getProvider()).incrementAndGet();
+            return onAdmit.apply(behaviour.getOrDefault(r.getProvider(), Mono.error(new RuntimeException("unexpected " + r.getProvider()))));
+        };
+    }
+
+    private double decisions(LlmProviderType type, String decision) {
+        var counter = registry.find("llm.route.decisions")
+                .tag("provider", type.name().toLowerCase()).tag("decision", decision).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenApiRefsTest {
+
+    @Test
+    void componentKeyDecodesJsonPointerTokens() {
+        assertThat(OpenApiRefs.componentKey("#/components/schemas/Pet")).isEqualTo("schemas/Pet");
+        assertThat(OpenApiRefs.componentKey("#/components/schemas/a~1b")).isEqualTo("schemas/a/b");
+        assertThat(OpenApiRefs.componentKey("#/components/schemas/x~0y")).isEqualTo("schemas/x~y");
+        // "~01" là "~" + "1", không phải "/"
+        assertThat(OpenApiRefs.componentKey("#/components/schemas/~01")).isEqualTo("schemas/~1");
+    }
+
+    @Test
+    void componentKeyIgnoresExternalAndIncompleteRefs() {
+        assertThat(OpenApiRefs.componentKey("./pet.yaml#/Pet")).isNull();
+        assertThat(OpenApiRefs.componentKey("#/components/schemas")).isNull();
+        assertThat(OpenApiRefs.componentKey("#/components/schemas/")).isNull();
+        assertThat(OpenApiRefs.componentKey(null)).isNull();
+    }
+
+    @Test
+    void graphMatchesEscapedRefsToComponentNames() throws Exception {
+        var components = new ObjectMapper().readTree("""
+                {"schemas": {
+                  "a/b": {"properties": {"c": {"$ref": "#/components/schemas/c~0d"}}},
+                  "c~d": {"type": "string"}
+                }}""");
+
+        Map<String, Set<String>> graph = OpenApiRefs.graph(components);
+
+        assertThat(graph.get("schemas/a/b")).containsExactly("schemas/c~d");
+        assertThat(OpenApiRefs.closure(List.of("schemas/a/b"), graph))
+                .containsExactly("schemas/a/b", "schemas/c~d");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.vtm_apidocs_be.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpooledUploadTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UploadBudget budget = new UploadBudget(registry, DataSize.ofBytes(100), DataSize.ofBytes(250));
+
+    @Test
+    void receivingBudgetIsReleasedOnceSpooledAndSpooledBudgetOnClose() throws IOException {
+        SpooledUpload upload = SpooledUpload.spool(file(100), budget);
+        Path path = upload.path();
+
+        assertThat(used("receiving")).isZero();
+        assertThat(used("spooled")).isEqualTo(100);
+        assertThat(Files.size(path)).isEqualTo(100);
+
+        upload.close();
+        assertThat(used("spooled")).isZero();
+        assertThat(path).doesNotExist();
+    }
+
+    @Test
+    void queuedUploadsAreCappedSeparately() throws IOException {
+        // nhận lần lượt: mỗi upload vừa receiving (100) nhưng file tạm chờ job cộng dồn tới spooled-max-bytes (250)
+        try (SpooledUpload a = SpooledUpload.spool(file(100), budget);
+             SpooledUpload b = SpooledUpload.spool(file(100), budget)) {
+            assertThatThrownBy(() -> SpooledUpload.spool(file(100), budget))
+                    .isInstanceOf(UploadBudgetExceededException.class);
+            assertThat(registry.get("upload.budget.rejected").tag("pool", "spooled").counter().count()).isEqualTo(1.0);
+            assertThat(used("receiving")).isZero();
+        }
+        assertThat(used("spooled")).isZero();
+    }
+
+    private double used(String pool) {
+        return registry.get("upload.budget.used").tag("pool", pool).gauge().value();
+    }
+
+    private static MockMultipartFile file(int size) {
+        return new MockMultipartFile("file", "a.pdf", "application/pdf", new byte[size]);
+    }
+}
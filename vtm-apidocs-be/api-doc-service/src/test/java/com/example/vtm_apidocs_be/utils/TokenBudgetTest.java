@@ -0,0 +1,64 @@
+package com.example.vtm_apidocs_be.utils;
+
+import com.example.vtm_apidocs_be.dto.LlmGenerateRequest;
+import com.example.vtm_apidocs_be.entity.LlmProviderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBudgetTest {
+
+    private static final long PROMPT = 2500;
+    private static final long PAGE = 260;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TokenBudget budget = new TokenBudget(new HeuristicTokenCounter(), registry, true, 128_000,
+            List.of(), 16_000, PROMPT, PAGE);
+
+    @Test
+    void usesTextPassedByCaller() {
+        String text = "=== Page 1 ===\nhello\n\n=== Page 2 ===\nworld\n\n";
+        LlmGenerateRequest r = budget.estimate(request(DocumentSource.ofBytes(new byte[0])), text).block();
+
+        assertThat(r.getDocumentPages()).isEqualTo(2);
+        assertThat(r.getEstimatedPromptTokens()).isEqualTo(PROMPT + new HeuristicTokenCounter().count(text) + 2 * PAGE);
+        assertThat(registry.find("llm.preflight.fallback").counter()).isNull();
+    }
+
+    @Test
+    void withoutTextFallsBackToPageCount() throws IOException {
+        LlmGenerateRequest r = budget.estimate(request(DocumentSource.ofBytes(blankPdf(3))), null).block();
+
+        assertThat(r.getDocumentPages()).isEqualTo(3);
+        assertThat(r.getEstimatedPromptTokens()).isEqualTo(PROMPT + 3 * 700 + 3 * PAGE);
+        assertThat(registry.get("llm.preflight.fallback").tag("basis", "pages").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void unreadablePdfFallsBackToSize() {
+        LlmGenerateRequest r = budget.estimate(request(DocumentSource.ofBytes(new byte[8_000])), null).block();
+
+        assertThat(r.getDocumentPages()).isZero();
+        assertThat(r.getEstimatedPromptTokens()).isEqualTo(PROMPT + 1_000);
+        assertThat(registry.get("llm.preflight.fallback").tag("basis", "bytes").counter().count()).isEqualTo(1.0);
+    }
+
+    private static LlmGenerateRequest request(DocumentSource pdf) {
+        return LlmGenerateRequest.builder().provider(LlmProviderType.GEMINI).model("gemini-1.5-flash").pdf(pdf).build();
+    }
+
+    private static byte[] blankPdf(int pages) throws IOException {
+        try (PDDocument doc = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int i = 0; i < pages; i++) doc.addPage(new PDPage());
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -2,17 +2,28 @@ package com.example.user_service.controller;
 
 import com.example.user_service.entity.User;
 import com.example.user_service.repository.UserRepository;
+import com.example.user_service.security.AuthPrincipal;
 import com.example.user_service.security.JwtUtil;
+import com.example.user_service.security.LoginThrottle;
+import com.example.user_service.security.PasswordHasher;
+import com.example.user_service.security.PrincipalCache;
+import com.example.user_service.security.TokenDenyList;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -20,57 +31,96 @@ public class AuthController {
 
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PrincipalCache principalCache;
+    private final TokenDenyList denyList;
+    private final PasswordHasher passwordHasher;
+    private final LoginThrottle loginThrottle;
 
-    public AuthController(UserRepository userRepository, JwtUtil jwtUtil) {
+    public AuthController(UserRepository userRepository, JwtUtil jwtUtil, PrincipalCache principalCache, TokenDenyList denyList,
+                          PasswordHasher passwordHasher, LoginThrottle loginThrottle) {
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
+        this.principalCache = principalCache;
+        this.denyList = denyList;
+        this.passwordHasher = passwordHasher;
+        this.loginThrottle = loginThrottle;
     }
 
+    /** Hash trên pool BCrypt như login, request thread không bị giữ; thiếu email / mật khẩu → 400 trước khi hash. */
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody User user) {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody User user) {
+        if (!StringUtils.hasText(user.getEmail()) || !StringUtils.hasText(user.getPassword())) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("message", "Email and password are required")));
+        }
         if (userRepository.findByEmail(user.getEmail()).isPresent()) {
-            return ResponseEntity.status(HttpStatus.CONFLICT)
-                    .body(Map.of("message", "Email already registered"));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", "Email already registered")));
         }
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        userRepository.save(user);
-        return ResponseEntity.ok(Map.of("message", "User registered successfully"));
+        return passwordHasher.encode(user.getPassword()).thenApply(hash -> {
+            user.setPassword(hash);
+            userRepository.save(user);
+            principalCache.invalidate(user.getEmail()); // có thể đang cache "không tồn tại"
+            return ResponseEntity.ok(Map.of("message", "User registered successfully"));
+        });
     }
 
+    /**
+     * Throttle theo email / IP trước, rồi BCrypt trên pool riêng; request thread được trả lại trong lúc hash
+     * (Spring MVC xử lý CompletableFuture qua async dispatch).
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> body, HttpServletResponse response) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody Map<String, String> body, HttpServletRequest request) {
         String email = body.get("email");
         String password = body.get("password");
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user != null && passwordEncoder.matches(password, user.getPassword())) {
-            String token = jwtUtil.generateToken(email);
-
-            // Tạo cookie HTTP-only
-            Cookie cookie = new Cookie("accessToken", token);
-            cookie.setHttpOnly(true);         // JS không thể đọc
-            cookie.setSecure(false);           // chỉ HTTPS, nếu dev có thể tạm false
-            cookie.setPath("/");              // cookie hợp lệ với toàn bộ domain
-            cookie.setMaxAge(15 * 60);        // 15 phút
-            cookie.setSecure(true);     // bảo vệ CSRF cơ bản
-            response.addCookie(cookie);
-
-            // Trả thông tin user mà không gửi token
-            Map<String, Object> result = new HashMap<>();
-            result.put("user", Map.of(
-                    "id", user.getId(),
-                    "email", user.getEmail(),
-                    "name", user.getName(),
-                    "role", user.getRole()
-            ));
-
-            return ResponseEntity.ok(result);
+        if (!loginThrottle.tryAcquire(email, request.getRemoteAddr())) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(loginThrottle.retryAfterSeconds()))
+                    .body(Map.of("error", "Too many login attempts")));
         }
 
-        return ResponseEntity.status(401).body(Map.of("error", "Invalid credentials"));
+        User user = email == null ? null : userRepository.findByEmail(email).orElse(null);
+        if (user == null) {
+            return CompletableFuture.completedFuture(invalidCredentials());
+        }
+        return passwordHasher.matches(password, user.getPassword())
+                .thenApply(ok -> !ok ? invalidCredentials() : AuthPrincipal.of(user).active() ? loggedIn(user) : inactive());
+    }
+
+    /** Sau khi đã đúng mật khẩu mới báo, để không lộ trạng thái tài khoản cho người đoán mật khẩu. */
+    private static ResponseEntity<?> inactive() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Account is not active"));
     }
 
+    private ResponseEntity<?> loggedIn(User user) {
+        String token = jwtUtil.generateToken(user);
+
+        // Cookie HTTP-only; ghi qua header của ResponseEntity vì đang ở thread hash, không đụng HttpServletResponse
+        ResponseCookie cookie = ResponseCookie.from("accessToken", token)
+                .httpOnly(true)                   // JS không thể đọc
+                .secure(true)                     // chỉ HTTPS
+                .path("/")                        // cookie hợp lệ với toàn bộ domain
+                .maxAge(Duration.ofMinutes(15))   // 15 phút
+                .build();
+
+        // Trả thông tin user mà không gửi token
+        Map<String, Object> result = new HashMap<>();
+        result.put("user", Map.of(
+                "id", user.getId(),
+                "email", user.getEmail(),
+                "name", user.getName(),
+                "role", user.getRole()
+        ));
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, cookie.toString())
+                .body(result);
+    }
+
+    private static ResponseEntity<?> invalidCredentials() {
+        return ResponseEntity.status(401).body(Map.of("error", "Invalid credentials"));
+    }
 
     @GetMapping("/me")
     public ResponseEntity<?> me(HttpServletRequest request) {
@@ -78,12 +128,9 @@ public class AuthController {
         if (cookies != null) {
             for (Cookie cookie : cookies) {
                 if ("accessToken".equals(cookie.getName())) {
-                    String token = cookie.getValue();
-                    String email = jwtUtil.extractUsername(token);
-                    System.out.println(token);
-                    System.out.println(email);
-                    User user = userRepository.findByEmail(email).orElse(null);
-                    if (user != null) {
+                    Claims claims = jwtUtil.parseActive(cookie.getValue(), denyList);
+                    User user = claims == null ? null : principalCache.findByEmail(claims.getSubject()).orElse(null);
+                    if (user != null && AuthPrincipal.of(user).active()) {
                         return ResponseEntity.ok(user);
                     }
                 }
@@ -92,8 +139,17 @@ public class AuthController {
         return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
     }
 
+    /** Thu hồi token đang dùng (cookie và/hoặc Bearer) tới khi nó hết hạn, rồi xoá cookie. */
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(HttpServletResponse response) {
+    public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse response) {
+        if (request.getCookies() != null) {
+            for (Cookie c : request.getCookies()) {
+                if ("accessToken".equals(c.getName())) revoke(c.getValue());
+            }
+        }
+        String bearer = request.getHeader("Authorization");
+        if (bearer != null && bearer.startsWith("Bearer ")) revoke(bearer.substring(7));
+
         Cookie cookie = new Cookie("accessToken", null);
         cookie.setHttpOnly(true);
         cookie.setSecure(true);
@@ -103,5 +159,20 @@ public class AuthController {
 
         return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
     }
-}
 
+    /** Token không hợp lệ / đã hết hạn thì không cần thu hồi; token cũ không có jti thì chỉ chờ hết hạn. */
+    private void revoke(String token) {
+        Claims claims = jwtUtil.parse(token);
+        if (claims != null && claims.getExpiration() != null) {
+            denyList.revoke(claims.getId(), claims.getExpiration().toInstant());
+        }
+    }
+
+    /** Pool BCrypt đầy: 503 nhanh thay vì xếp hàng vô hạn. */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<?> hashingOverloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Server busy, retry later"));
+    }
+}
@@ -14,6 +14,8 @@ import java.time.LocalDateTime;
 @Builder
 public class User {
 
+    public static final int STATUS_ACTIVE = 1;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
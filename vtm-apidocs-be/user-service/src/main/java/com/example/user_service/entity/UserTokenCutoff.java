@@ -0,0 +1,32 @@
+package com.example.user_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Mọi token của user phát hành trước notBefore đều bị từ chối (đổi role / status / email, xoá user).
+ * Giữ tới expiresAt = notBefore + thời hạn token, sau đó token cũ đã tự hết hạn.
+ */
+@Entity
+@Table(name = "user_token_cutoffs", indexes = {
+        @Index(name = "idx_user_token_cutoffs_expires_at", columnList = "expiresAt"),
+        @Index(name = "idx_user_token_cutoffs_not_before", columnList = "notBefore")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserTokenCutoff {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private Instant notBefore;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
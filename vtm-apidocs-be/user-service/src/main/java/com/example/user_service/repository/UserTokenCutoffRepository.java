@@ -0,0 +1,22 @@
+package com.example.user_service.repository;
+
+import com.example.user_service.entity.UserTokenCutoff;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UserTokenCutoffRepository extends JpaRepository<UserTokenCutoff, Long> {
+    List<UserTokenCutoff> findByExpiresAtAfter(Instant now);
+
+    List<UserTokenCutoff> findByNotBeforeAfter(Instant since);
+
+    @Modifying
+    @Transactional
+    @Query("delete from UserTokenCutoff c where c.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
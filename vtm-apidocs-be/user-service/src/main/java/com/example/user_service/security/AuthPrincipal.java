@@ -0,0 +1,37 @@
+package com.example.user_service.security;
+
+import com.example.user_service.entity.User;
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+/** Principal dựng từ claims của token (uid/role/status), đủ cho phân quyền mà không cần đọc DB. */
+public record AuthPrincipal(Long id, String email, User.Role role, Integer status) {
+
+    /** Token cũ (trước khi có claim uid/role) → null, caller tra user để dựng principal. */
+    public static AuthPrincipal fromClaims(Claims claims) {
+        Number id = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+        String role = claims.get(JwtUtil.CLAIM_ROLE, String.class);
+        if (id == null || role == null) return null;
+        Number status = claims.get(JwtUtil.CLAIM_STATUS, Number.class);
+        return new AuthPrincipal(id.longValue(), claims.getSubject(), User.Role.valueOf(role),
+                status == null ? null : status.intValue());
+    }
+
+    public static AuthPrincipal of(User user) {
+        return new AuthPrincipal(user.getId(), user.getEmail(), user.getRole(), user.getStatus());
+    }
+
+    /** status null (token / dòng cũ chưa có status) coi như active. */
+    public boolean active() {
+        return status == null || status == User.STATUS_ACTIVE;
+    }
+
+    /** ROLE_ADMIN / ROLE_DEV / ROLE_MERCHANT cho hasRole(...). */
+    public Collection<? extends GrantedAuthority> authorities() {
+        return role == null ? List.of() : List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+}
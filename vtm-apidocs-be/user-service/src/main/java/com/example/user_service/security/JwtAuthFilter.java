@@ -1,9 +1,9 @@
 package com.example.user_service.security;
 
-import com.example.user_service.entity.User;
-import com.example.user_service.repository.UserRepository;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -14,17 +14,18 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final TokenDenyList denyList;
 
-    public JwtAuthFilter(JwtUtil jwtUtil, UserRepository userRepository) {
+    public JwtAuthFilter(JwtUtil jwtUtil, PrincipalCache principalCache, TokenDenyList denyList) {
         this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.denyList = denyList;
     }
 
     @Override
@@ -32,26 +33,37 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String token = getTokenFromRequest(request);
-        if (token != null && jwtUtil.validateToken(token)) {
-            String email = jwtUtil.extractEmail(token);
-            User user = userRepository.findByEmail(email).orElse(null);
-            if (user != null) {
+        // verify một lần; principal lấy từ claims, chỉ token cũ thiếu uid/role mới phải tra user
+        Claims claims = token == null ? null : jwtUtil.parseActive(token, denyList);
+        if (claims != null) {
+            AuthPrincipal principal = AuthPrincipal.fromClaims(claims);
+            if (principal == null) {
+                principal = principalCache.findByEmail(claims.getSubject()).map(AuthPrincipal::of).orElse(null);
+            }
+            // user bị khoá / chưa kích hoạt: không xác thực (đổi status cũng thu hồi token cũ qua TokenDenyList)
+            if (principal != null && principal.active()) {
                 UsernamePasswordAuthenticationToken auth =
-                        new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList());
+                        new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
                 auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(auth);
-                request.setAttribute("user", user);
+                request.setAttribute("user", principal);
             }
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /** Bearer header, không có thì cookie accessToken (FE gửi cookie HTTP-only, withCredentials). */
     private String getTokenFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
             return bearerToken.substring(7);
         }
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if ("accessToken".equals(cookie.getName()) && StringUtils.hasText(cookie.getValue())) return cookie.getValue();
+            }
+        }
         return null;
     }
 }
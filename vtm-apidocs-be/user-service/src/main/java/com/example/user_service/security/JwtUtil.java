@@ -1,68 +1,69 @@
 package com.example.user_service.security;
 
+import com.example.user_service.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_STATUS = "status";
+
+    /** Thời hạn token; TokenDenyList giữ mốc thu hồi theo user đúng bằng khoảng này. */
+    public static final Duration TOKEN_TTL = Duration.ofHours(24);
+
     private final String SECRET_KEY = "hellotatcamoinguoiminhlabanthotivinho16112004@";
-    private final long EXPIRATION_TIME = 86400000;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
-    }
+    // key và parser bất biến, thread-safe → dựng một lần thay vì mỗi lần verify
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
 
-    public String generateToken(String email) {
+    /** Nhúng uid/role/status để filter dựng principal từ token, không cần query users; jti để logout thu hồi được. */
+    public String generateToken(User user) {
         return Jwts.builder()
-                .setSubject(email)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getEmail())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLE, user.getRole() == null ? null : user.getRole().name())
+                .claim(CLAIM_STATUS, user.getStatus())
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setExpiration(new Date(System.currentTimeMillis() + TOKEN_TTL.toMillis()))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String extractEmail(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
-    }
-
-    public boolean validateToken(String token) {
+    /** Verify chữ ký + hạn đúng một lần và trả claims; token sai / hết hạn → null. */
+    public Claims parse(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
+            return parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
         }
     }
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
-
-    public <T> T extractClaim(String token, java.util.function.Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Như parse nhưng token đã logout (jti trong deny-list) hoặc phát hành trước mốc thu hồi của user
+     * (đổi role / status, xoá user) cũng coi là không hợp lệ.
+     */
+    public Claims parseActive(String token, TokenDenyList denyList) {
+        Claims claims = parse(token);
+        if (claims == null) return null;
+        if (claims.getExpiration() != null && denyList.isRevoked(claims.getId(), claims.getExpiration().toInstant())) {
+            return null;
+        }
+        Number uid = claims.get(CLAIM_USER_ID, Number.class);
+        if (uid != null && claims.getIssuedAt() != null
+                && denyList.isRevokedForUser(uid.longValue(), claims.getIssuedAt().toInstant())) {
+            return null;
+        }
+        return claims;
     }
-
 }
-
@@ -0,0 +1,121 @@
+package com.example.user_service.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Giới hạn số lần login theo email và theo IP client, kiểm tra trước khi hash mật khẩu.
+ * Mỗi chiều là một mảng stripe cố định (key hash vào stripe, không giữ map theo key → bộ nhớ không tăng theo số email / IP).
+ * Mỗi stripe là sliding window xấp xỉ bằng 2 cửa sổ cố định (trước + hiện tại), gói trong một long và cập nhật bằng CAS.
+ * Key khác nhau trùng stripe thì dùng chung bộ đếm (chặn sớm hơn một chút), tăng stripes nếu cần.
+ * IP client là request.getRemoteAddr(): sau reverse proxy cần server.forward-headers-strategy (xem application.properties),
+ * nếu không mọi request có chung IP của proxy.
+ * Metric: auth.login.throttled{by=email|ip}.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final long COUNT_MASK = 0xFFFF;
+    private static final long EPOCH_MASK = 0xFFFF_FFFFL;
+    private static final Duration MIN_WINDOW = Duration.ofSeconds(1);
+
+    private final Window byEmail;
+    private final Window byIp;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${auth.login.window:60s}") Duration window,
+                         @Value("${auth.login.max-per-email:10}") int maxPerEmail,
+                         @Value("${auth.login.max-per-ip:50}") int maxPerIp,
+                         @Value("${auth.login.stripes:4096}") int stripes) {
+        if (window.compareTo(MIN_WINDOW) < 0) {
+            throw new IllegalArgumentException("auth.login.window must be at least " + MIN_WINDOW + ": " + window);
+        }
+        this.byEmail = new Window(window.toMillis(), maxPerEmail, stripes, counter(meterRegistry, "email"));
+        this.byIp = new Window(window.toMillis(), maxPerIp, stripes, counter(meterRegistry, "ip"));
+    }
+
+    /** false nếu email hoặc IP đã vượt giới hạn trong cửa sổ; lần bị chặn không được tính thêm. */
+    public boolean tryAcquire(String email, String clientIp) {
+        return tryAcquire(email, clientIp, System.currentTimeMillis());
+    }
+
+    boolean tryAcquire(String email, String clientIp, long now) {
+        if (clientIp != null && !byIp.tryAcquire(clientIp, now)) return false;
+        return email == null || byEmail.tryAcquire(email.trim().toLowerCase(Locale.ROOT), now);
+    }
+
+    /** Giây tới khi cửa sổ hiện tại qua, cho Retry-After. */
+    public long retryAfterSeconds() {
+        long windowMillis = byEmail.windowMillis;
+        return Math.max(1, (windowMillis - byEmail.sinceOrigin(System.currentTimeMillis()) % windowMillis + 999) / 1000);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String by) {
+        return Counter.builder("auth.login.throttled")
+                .description("Lần login bị chặn trước khi hash mật khẩu")
+                .tag("by", by)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stripe = [epoch cửa sổ: 32 bit][số lần cửa sổ trước: 16 bit][số lần cửa sổ hiện tại: 16 bit].
+     * Epoch tính từ lúc khởi tạo (không phải 1970) và so sánh theo 32 bit: cửa sổ >= 1s thì 136 năm mới quay vòng.
+     */
+    private static final class Window {
+        private final long origin = System.currentTimeMillis();
+        private final long windowMillis;
+        private final int limit;
+        private final int mask;
+        private final AtomicLongArray stripes;
+        private final Counter throttled;
+
+        Window(long windowMillis, int limit, int stripes, Counter throttled) {
+            this.windowMillis = Math.max(1, windowMillis);
+            this.limit = (int) Math.min(Math.max(1, limit), COUNT_MASK);
+            int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1; // luỹ thừa của 2 → index bằng mask
+            this.mask = size - 1;
+            this.stripes = new AtomicLongArray(size);
+            this.throttled = throttled;
+        }
+
+        boolean tryAcquire(String key, long now) {
+            int i = spread(key.hashCode()) & mask;
+            long sinceOrigin = sinceOrigin(now);
+            long epoch = (sinceOrigin / windowMillis) & EPOCH_MASK;
+            double elapsed = (sinceOrigin % windowMillis) / (double) windowMillis;
+            while (true) {
+                long packed = stripes.get(i);
+                long stripeEpoch = packed >>> 32;
+                long prev = (packed >>> 16) & COUNT_MASK;
+                long curr = packed & COUNT_MASK;
+                if (stripeEpoch != epoch) {
+                    // sang cửa sổ mới: cửa sổ hiện tại thành "trước" nếu liền kề, cũ hơn thì bỏ
+                    prev = stripeEpoch == ((epoch - 1) & EPOCH_MASK) ? curr : 0;
+                    curr = 0;
+                }
+                // phần cửa sổ trước còn nằm trong khoảng [now - window, now] được tính theo tỉ lệ
+                if (prev * (1 - elapsed) + curr + 1 > limit) {
+                    throttled.increment();
+                    return false;
+                }
+                long next = (epoch << 32) | (prev << 16) | (curr + 1);
+                if (stripes.compareAndSet(i, packed, next)) return true;
+            }
+        }
+
+        /** Đồng hồ lùi (chỉnh NTP) trước origin thì coi như đang ở cửa sổ đầu tiên. */
+        long sinceOrigin(long now) {
+            return Math.max(0, now - origin);
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.user_service.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BCrypt (~100ms CPU mỗi lần) chạy trên pool riêng, số thread + hàng chờ có giới hạn:
+ * burst login không chiếm hết core của request thread, hàng chờ đầy → RejectedExecutionException (caller trả 503).
+ * Metric: auth.password.hash{op} (thời gian hash, không tính lúc chờ), auth.password.queue, auth.password.rejected.
+ */
+@Component
+public class PasswordHasher implements DisposableBean {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer matchesTimer;
+    private final Timer encodeTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${auth.password.threads:0}") int threads,
+                          @Value("${auth.password.queue:64}") int queue) {
+        this.passwordEncoder = passwordEncoder;
+        // mặc định nửa số core: phần còn lại cho request bình thường
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.matchesTimer = timer(meterRegistry, "matches");
+        this.encodeTimer = timer(meterRegistry, "encode");
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Hash bị từ chối vì hàng chờ đầy")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.queue", executor, e -> e.getQueue().size())
+                .description("Số lần hash đang chờ thread")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Boolean> matches(String raw, String encoded) {
+        if (raw == null || encoded == null) return CompletableFuture.completedFuture(false);
+        return submit(matchesTimer, () -> passwordEncoder.matches(raw, encoded));
+    }
+
+    public CompletableFuture<String> encode(String raw) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(raw));
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> hash) {
+        try {
+            return CompletableFuture.supplyAsync(() -> timer.record(hash), executor);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String op) {
+        return Timer.builder("auth.password.hash")
+                .description("Thời gian BCrypt")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.user_service.security;
+
+import com.example.user_service.entity.User;
+import com.example.user_service.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache user theo email cho mỗi request có token, thay vì query users mỗi lần (dashboard poll liên tục).
+ * Email không tồn tại cũng được cache (negative-ttl) để token của user đã xoá không query lại mỗi request.
+ * UserServiceImpl / register xoá entry khi user đổi; các instance khác thấy thay đổi chậm nhất sau ttl.
+ * Metric: auth.principal_cache{result=hit|negative_hit|miss}, auth.principal_cache.size.
+ */
+@Component
+public class PrincipalCache {
+
+    /** user null = email không tồn tại. */
+    private record Entry(User user, Instant expiresAt) {}
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter misses;
+
+    public PrincipalCache(UserRepository userRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${auth.principal-cache.ttl:60s}") Duration ttl,
+                          @Value("${auth.principal-cache.negative-ttl:15s}") Duration negativeTtl,
+                          @Value("${auth.principal-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.hits = counter(meterRegistry, "hit");
+        this.negativeHits = counter(meterRegistry, "negative_hit");
+        this.misses = counter(meterRegistry, "miss");
+        Gauge.builder("auth.principal_cache.size", entries, Map::size)
+                .description("Số email đang được cache")
+                .register(meterRegistry);
+    }
+
+    public Optional<User> findByEmail(String email) {
+        if (email == null) return Optional.empty();
+        Instant now = Instant.now();
+        Entry entry = entries.get(email);
+        if (entry != null && entry.expiresAt().isAfter(now)) {
+            (entry.user() == null ? negativeHits : hits).increment();
+            return Optional.ofNullable(entry.user());
+        }
+        misses.increment();
+        User user = userRepository.findByEmail(email).orElse(null);
+        put(email, new Entry(user, now.plus(user == null ? negativeTtl : ttl)), now);
+        return Optional.ofNullable(user);
+    }
+
+    public void invalidate(String email) {
+        if (email != null) entries.remove(email);
+    }
+
+    /** Khi chỉ biết id (đổi email, xoá user): bỏ mọi entry của user đó. */
+    public void invalidateUser(Long id) {
+        entries.values().removeIf(e -> e.user() != null && Objects.equals(e.user().getId(), id));
+    }
+
+    private void put(String email, Entry entry, Instant now) {
+        if (entries.size() >= maxEntries && !entries.containsKey(email)) {
+            entries.values().removeIf(e -> !e.expiresAt().isAfter(now));
+            // vẫn đầy: bỏ entry sắp hết hạn nhất
+            while (entries.size() >= maxEntries) {
+                entries.entrySet().stream()
+                        .min(Comparator.comparing(e -> e.getValue().expiresAt()))
+                        .ifPresent(e -> entries.remove(e.getKey(), e.getValue()));
+            }
+        }
+        entries.put(email, entry);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("auth.principal_cache")
+                .description("Tra cứu user theo token")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
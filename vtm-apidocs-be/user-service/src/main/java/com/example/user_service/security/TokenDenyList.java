@@ -0,0 +1,166 @@
+package com.example.user_service.security;
+
+import com.example.user_service.entity.RevokedToken;
+import com.example.user_service.entity.UserTokenCutoff;
+import com.example.user_service.repository.RevokedTokenRepository;
+import com.example.user_service.repository.UserTokenCutoffRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * jti của token đã logout, trong bộ nhớ, chia bucket theo thời điểm hết hạn của token:
+ * - check mỗi request: tính bucket từ exp của token rồi tra set → O(1), không đụng DB
+ * - bucket đã qua hạn bị bỏ nguyên cụm (token trong đó đã hết hạn, không cần deny nữa)
+ * - ghi thêm vào bảng revoked_tokens để restart không mất; dòng hết hạn trong bảng bị xoá theo lịch (mỗi bucket),
+ *   không phải mỗi lần logout
+ * Bộ nhớ là của từng instance: nạp đủ lúc khởi động, sau đó poll bảng mỗi auth.deny-list.refresh để lấy các lần
+ * logout / thu hồi ở instance khác → instance khác từ chối token đó chậm nhất sau khoảng này.
+ * Ngoài jti còn mốc "token phát hành trước thời điểm này bị từ chối" theo user (đổi role / status / email, xoá user),
+ * vì role/status nằm sẵn trong token; lưu ở bảng user_token_cutoffs, hết tác dụng sau một thời hạn token.
+ * Metric: auth.revoked_tokens (gauge), auth.revoked_tokens.rejected, auth.user_token_cutoffs (gauge).
+ * Cấu hình: auth.deny-list.bucket, auth.deny-list.refresh.
+ */
+@Component
+@Slf4j
+public class TokenDenyList {
+
+    private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+    private final Map<Long, Instant> cutoffs = new ConcurrentHashMap<>(); // userId → notBefore
+    private final RevokedTokenRepository repository;
+    private final UserTokenCutoffRepository cutoffRepository;
+    private final long bucketMillis;
+    private final Counter rejected;
+    private volatile long nextPruneAt;      // bỏ bucket hết hạn trong bộ nhớ
+    private volatile long nextDbPruneAt;    // xoá dòng hết hạn trong bảng
+    private volatile Instant lastRefresh;
+
+    /** Poll lùi lại một đoạn: bù lệch đồng hồ giữa các instance và transaction commit trễ; nạp trùng không sao. */
+    private static final Duration REFRESH_OVERLAP = Duration.ofSeconds(30);
+
+    public TokenDenyList(RevokedTokenRepository repository,
+                         UserTokenCutoffRepository cutoffRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${auth.deny-list.bucket:1h}") Duration bucket) {
+        this.repository = repository;
+        this.cutoffRepository = cutoffRepository;
+        this.bucketMillis = Math.max(1, bucket.toMillis());
+        this.rejected = Counter.builder("auth.revoked_tokens.rejected")
+                .description("Request mang token đã logout")
+                .register(meterRegistry);
+        Gauge.builder("auth.revoked_tokens", this, TokenDenyList::size)
+                .description("Số token đã logout còn hạn")
+                .register(meterRegistry);
+        Gauge.builder("auth.user_token_cutoffs", cutoffs, Map::size)
+                .description("Số user có token bị thu hồi theo mốc phát hành")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() {
+        Instant now = Instant.now();
+        repository.deleteExpired(now);
+        repository.findByExpiresAtAfter(now).forEach(t -> add(t.getJti(), t.getExpiresAt().toEpochMilli()));
+        cutoffRepository.deleteExpired(now);
+        cutoffRepository.findByExpiresAtAfter(now).forEach(c -> addCutoff(c.getUserId(), c.getNotBefore()));
+        nextPruneAt = now.toEpochMilli() + bucketMillis;
+        nextDbPruneAt = nextPruneAt;
+        lastRefresh = now;
+        log.info("Loaded {} revoked tokens, {} user token cutoffs", size(), cutoffs.size());
+    }
+
+    public boolean isRevoked(String jti, Instant expiresAt) {
+        if (jti == null || expiresAt == null) return false;
+        long now = System.currentTimeMillis();
+        if (now >= nextPruneAt) pruneMemory(now);
+        Set<String> bucket = buckets.get(bucketOf(expiresAt.toEpochMilli()));
+        if (bucket == null || !bucket.contains(jti)) return false;
+        rejected.increment();
+        return true;
+    }
+
+    /** Nạp các lần logout / thu hồi mới (kể cả của instance khác) từ bảng; xoá dòng hết hạn khi tới lịch. */
+    @Scheduled(fixedDelayString = "${auth.deny-list.refresh:15s}", initialDelayString = "${auth.deny-list.refresh:15s}")
+    public void refresh() {
+        Instant now = Instant.now();
+        Instant since = lastRefresh.minus(REFRESH_OVERLAP);
+        repository.findByRevokedAtAfter(since).forEach(t -> {
+            if (t.getExpiresAt().isAfter(now)) add(t.getJti(), t.getExpiresAt().toEpochMilli());
+        });
+        cutoffRepository.findByNotBeforeAfter(since).forEach(c -> addCutoff(c.getUserId(), c.getNotBefore()));
+        lastRefresh = now;
+        if (now.toEpochMilli() >= nextDbPruneAt) {
+            nextDbPruneAt = now.toEpochMilli() + bucketMillis;
+            repository.deleteExpired(now);
+            cutoffRepository.deleteExpired(now);
+        }
+    }
+
+    /** Token của user phát hành trước mốc thu hồi gần nhất (iat của JWT tính theo giây). */
+    public boolean isRevokedForUser(Long userId, Instant issuedAt) {
+        if (userId == null || issuedAt == null) return false;
+        Instant notBefore = cutoffs.get(userId);
+        if (notBefore == null || !issuedAt.isBefore(notBefore)) return false;
+        rejected.increment();
+        return true;
+    }
+
+    /**
+     * Thu hồi mọi token hiện có của user. iat của JWT chỉ có giây nên mốc làm tròn lên giây kế tiếp:
+     * token phát hành cùng giây với lúc thu hồi cũng bị từ chối (login lại sau đó là được).
+     */
+    public void revokeUser(Long userId) {
+        if (userId == null) return;
+        Instant now = Instant.now();
+        Instant notBefore = now.getNano() == 0 ? now : Instant.ofEpochSecond(now.getEpochSecond() + 1);
+        cutoffRepository.save(UserTokenCutoff.builder()
+                .userId(userId)
+                .notBefore(notBefore)
+                .expiresAt(notBefore.plus(JwtUtil.TOKEN_TTL))
+                .build());
+        addCutoff(userId, notBefore);
+    }
+
+    /** Logout: token đã hết hạn thì bỏ qua; ghi DB trước rồi mới thêm vào bộ nhớ. */
+    public void revoke(String jti, Instant expiresAt) {
+        if (jti == null || expiresAt == null || !expiresAt.isAfter(Instant.now())) return;
+        repository.save(RevokedToken.builder().jti(jti).expiresAt(expiresAt).revokedAt(Instant.now()).build());
+        add(jti, expiresAt.toEpochMilli());
+    }
+
+    private void add(String jti, long expiresAtMillis) {
+        buckets.computeIfAbsent(bucketOf(expiresAtMillis), b -> ConcurrentHashMap.newKeySet()).add(jti);
+    }
+
+    /** Giữ mốc muộn nhất: dòng poll về có thể cũ hơn mốc vừa ghi ở instance này. */
+    private void addCutoff(Long userId, Instant notBefore) {
+        cutoffs.merge(userId, notBefore, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    private void pruneMemory(long now) {
+        nextPruneAt = now + bucketMillis;
+        // bucket b chứa token hết hạn trong [b*size, (b+1)*size) → qua (b+1)*size thì cả bucket vô dụng
+        buckets.keySet().removeIf(b -> (b + 1) * bucketMillis <= now);
+        Instant oldestLive = Instant.ofEpochMilli(now).minus(JwtUtil.TOKEN_TTL);
+        cutoffs.values().removeIf(notBefore -> !notBefore.isAfter(oldestLive));
+    }
+
+    private long bucketOf(long expiresAtMillis) {
+        return expiresAtMillis / bucketMillis;
+    }
+
+    private int size() {
+        return buckets.values().stream().mapToInt(Set::size).sum();
+    }
+}
@@ -3,12 +3,15 @@ package com.example.user_service.service.impl;
 import com.example.user_service.dto.UserDTO;
 import com.example.user_service.entity.User;
 import com.example.user_service.repository.UserRepository;
+import com.example.user_service.security.PrincipalCache;
+import com.example.user_service.security.TokenDenyList;
 import com.example.user_service.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -16,6 +19,8 @@ import java.util.stream.Collectors;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final TokenDenyList denyList;
 
     @Override
     public List<UserDTO> getAllUsers() {
@@ -36,19 +41,34 @@ public class UserServiceImpl implements UserService {
     public UserDTO createUser(UserDTO userDTO) {
         User user = new User();
         BeanUtils.copyProperties(userDTO, user);
-        return toDTO(userRepository.save(user));
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getEmail());
+        return toDTO(saved);
     }
 
     @Override
     public UserDTO updateUser(Long id, UserDTO userDTO) {
         User user = userRepository.findById(id).orElseThrow(() -> new RuntimeException("User not found"));
+        User.Role oldRole = user.getRole();
+        Integer oldStatus = user.getStatus();
+        String oldEmail = user.getEmail();
         BeanUtils.copyProperties(userDTO, user, "id");
-        return toDTO(userRepository.save(user));
+        User saved = userRepository.save(user);
+        // role/status/email nằm sẵn trong token đã phát: thu hồi để không dùng quyền cũ tới khi token hết hạn
+        if (oldRole != saved.getRole() || !Objects.equals(oldStatus, saved.getStatus()) || !Objects.equals(oldEmail, saved.getEmail())) {
+            denyList.revokeUser(id);
+        }
+        // role/status/email có thể đã đổi: bỏ entry cũ (theo id, kể cả email cũ) và entry của email mới
+        principalCache.invalidateUser(id);
+        principalCache.invalidate(saved.getEmail());
+        return toDTO(saved);
     }
 
     @Override
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        denyList.revokeUser(id);
+        principalCache.invalidateUser(id);
     }
 
     private UserDTO toDTO(User user) {
@@ -0,0 +1,88 @@
+package com.example.user_service.bench;
+
+import com.example.user_service.entity.User;
+import com.example.user_service.security.AuthPrincipal;
+import com.example.user_service.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+import java.security.Key;
+
+/**
+ * So sánh throughput verify token mỗi request: cách cũ (dựng lại key + parser, parse 2 lần: validateToken rồi extractEmail)
+ * với JwtUtil hiện tại (key/parser dựng sẵn, parse 1 lần, principal lấy từ claims).
+ * Không phải test JUnit, chạy tay (JMH chưa có trong build, nên warmup / đo theo vòng lặp thường):
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) com.example.user_service.bench.JwtVerifyBenchmark --seconds=5 --threads=4
+ */
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET_KEY = "hellotatcamoinguoiminhlabanthotivinho16112004@";
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = 5;
+        int threads = 1;
+        for (String arg : args) {
+            if (arg.startsWith("--seconds=")) seconds = Integer.parseInt(arg.substring(10));
+            if (arg.startsWith("--threads=")) threads = Integer.parseInt(arg.substring(10));
+        }
+
+        JwtUtil jwtUtil = new JwtUtil();
+        User user = User.builder().id(42L).email("bench@example.com").role(User.Role.DEV).status(1).build();
+        String token = jwtUtil.generateToken(user);
+
+        Runnable legacy = () -> {
+            // như JwtUtil trước đây: mỗi lần gọi hmacShaKeyFor + parserBuilder().build(), verify 2 lần
+            if (legacyParse(token) != null) sink = legacyParse(token).getSubject();
+        };
+        Runnable current = () -> {
+            Claims claims = jwtUtil.parse(token);
+            if (claims != null) sink = AuthPrincipal.fromClaims(claims);
+        };
+
+        System.out.printf("threads=%d seconds=%d token=%d chars%n", threads, seconds, token.length());
+        for (int round = 0; round < 2; round++) { // vòng đầu là warmup
+            boolean warmup = round == 0;
+            report(warmup ? "warmup legacy " : "legacy        ", run(legacy, threads, warmup ? 2 : seconds), warmup);
+            report(warmup ? "warmup current" : "current       ", run(current, threads, warmup ? 2 : seconds), warmup);
+        }
+    }
+
+    private static Claims legacyParse(String token) {
+        Key key = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+
+    /** Số lần gọi / giây, tổng trên mọi thread. */
+    private static double run(Runnable op, int threads, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int slot = t;
+            workers[t] = new Thread(() -> {
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 100; i++) op.run();
+                    n += 100;
+                }
+                counts[slot] = n;
+            });
+            workers[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += counts[t];
+        }
+        return total / (double) seconds;
+    }
+
+    private static void report(String name, double opsPerSecond, boolean warmup) {
+        if (!warmup) System.out.printf("%s %,12.0f verify/s  %8.2f us/op%n", name, opsPerSecond, 1e6 / opsPerSecond);
+    }
+}
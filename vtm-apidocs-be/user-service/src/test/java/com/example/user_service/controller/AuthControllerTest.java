@@ -0,0 +1,121 @@
+package com.example.user_service.controller;
+
+import com.example.user_service.entity.User;
+import com.example.user_service.repository.UserRepository;
+import com.example.user_service.security.JwtUtil;
+import com.example.user_service.security.LoginThrottle;
+import com.example.user_service.security.PasswordHasher;
+import com.example.user_service.security.PrincipalCache;
+import com.example.user_service.security.TokenDenyList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+class AuthControllerTest {
+
+    private static final String LOGIN = "{\"email\": \"dev@example.com\", \"password\": \"secret\"}";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PasswordHasher passwordHasher = mock(PasswordHasher.class);
+    private final User user = User.builder().id(1L).email("dev@example.com").name("Dev").password("$2a$hash")
+            .role(User.Role.DEV).status(User.STATUS_ACTIVE).build();
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry(), Duration.ofSeconds(60), 2, 100, 64);
+        AuthController controller = new AuthController(userRepository, new JwtUtil(), mock(PrincipalCache.class),
+                mock(TokenDenyList.class), passwordHasher, throttle);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+        when(userRepository.findByEmail("dev@example.com")).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void loginOverThrottleLimitIs429BeforeHashing() throws Exception {
+        when(passwordHasher.matches(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(false));
+        for (int i = 0; i < 2; i++) {
+            assertThat(call(login()).getStatus()).isEqualTo(401);
+        }
+
+        MockHttpServletResponse throttled = call(login());
+        assertThat(throttled.getStatus()).isEqualTo(429);
+        assertThat(throttled.getHeader("Retry-After")).isNotNull();
+        verify(passwordHasher, times(2)).matches(anyString(), anyString());
+    }
+
+    @Test
+    void loginWhenHashPoolIsFullIs503() throws Exception {
+        when(passwordHasher.matches(anyString(), anyString())).thenThrow(new RejectedExecutionException("full"));
+
+        MockHttpServletResponse response = call(login());
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+    }
+
+    @Test
+    void loginOfInactiveAccountIs403() throws Exception {
+        user.setStatus(0);
+        when(passwordHasher.matches(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+
+        assertThat(call(login()).getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void registerHashesOffTheRequestThread() throws Exception {
+        when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.empty());
+        when(passwordHasher.encode("pw")).thenReturn(CompletableFuture.completedFuture("$2a$new"));
+
+        assertThat(call(register("{\"email\": \"new@example.com\", \"password\": \"pw\", \"role\": \"DEV\"}")).getStatus())
+                .isEqualTo(200);
+        verify(userRepository).save(argThat(u -> "$2a$new".equals(u.getPassword())));
+    }
+
+    @Test
+    void registerWhenHashPoolIsFullIs503() throws Exception {
+        when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.empty());
+        when(passwordHasher.encode(anyString())).thenThrow(new RejectedExecutionException("full"));
+
+        assertThat(call(register("{\"email\": \"new@example.com\", \"password\": \"pw\"}")).getStatus()).isEqualTo(503);
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void registerWithoutPasswordIs400() throws Exception {
+        assertThat(call(register("{\"email\": \"new@example.com\"}")).getStatus()).isEqualTo(400);
+        verifyNoInteractions(passwordHasher);
+    }
+
+    private static MockHttpServletRequestBuilder login() {
+        return post("/api/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN);
+    }
+
+    private static MockHttpServletRequestBuilder register(String body) {
+        return post("/api/auth/register").contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+
+    /** Endpoint trả CompletableFuture (kể cả đã xong sẵn) đi qua async dispatch; lỗi đồng bộ thì không. */
+    private MockHttpServletResponse call(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        return result.getRequest().isAsyncStarted()
+                ? mvc.perform(asyncDispatch(result)).andReturn().getResponse()
+                : result.getResponse();
+    }
+}
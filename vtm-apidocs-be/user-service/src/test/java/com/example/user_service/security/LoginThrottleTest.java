@@ -0,0 +1,94 @@
+package com.example.user_service.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginThrottleTest {
+
+    private static final long WINDOW = 60_000;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private LoginThrottle throttle(int perEmail, int perIp) {
+        return new LoginThrottle(registry, Duration.ofMillis(WINDOW), perEmail, perIp, 4096);
+    }
+
+    @Test
+    void blocksEmailOverLimitWithinWindow() {
+        LoginThrottle throttle = throttle(3, 100);
+        long t = System.currentTimeMillis();
+
+        for (int i = 0; i < 3; i++) assertThat(throttle.tryAcquire("A@x.com ", "1.1.1.1", t)).isTrue();
+        // email chuẩn hoá (trim + lowercase) nên vẫn cùng bộ đếm
+        assertThat(throttle.tryAcquire("a@x.com", "1.1.1.1", t)).isFalse();
+        assertThat(throttle.tryAcquire("b@x.com", "1.1.1.1", t)).isTrue();
+        assertThat(registry.get("auth.login.throttled").tag("by", "email").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void previousWindowCountsProportionallyThenExpires() {
+        LoginThrottle throttle = throttle(4, 100);
+        long t = System.currentTimeMillis(); // ~ origin của throttle, lệch vài ms so với WINDOW không đáng kể
+        for (int i = 0; i < 4; i++) assertThat(throttle.tryAcquire("a@x.com", null, t)).isTrue();
+
+        // 10% vào cửa sổ kế tiếp: 4 lần cũ còn trọng số 0.9 → 3.6 + 1 > 4, chặn
+        assertThat(throttle.tryAcquire("a@x.com", null, t + WINDOW + WINDOW / 10)).isFalse();
+
+        // 80% vào cửa sổ kế tiếp: còn 0.8 → cho thêm 3 lần (0.8 + 3 <= 4), lần thứ 4 bị chặn
+        long late = t + WINDOW + WINDOW * 8 / 10;
+        for (int i = 0; i < 3; i++) assertThat(throttle.tryAcquire("a@x.com", null, late)).isTrue();
+        assertThat(throttle.tryAcquire("a@x.com", null, late)).isFalse();
+
+        // cửa sổ sau không liền kề → bộ đếm về 0
+        assertThat(throttle.tryAcquire("a@x.com", null, t + 3 * WINDOW + 1)).isTrue();
+    }
+
+    @Test
+    void blocksIpIndependentlyOfEmail() {
+        LoginThrottle throttle = throttle(100, 2);
+        long t = System.currentTimeMillis();
+
+        assertThat(throttle.tryAcquire("a@x.com", "9.9.9.9", t)).isTrue();
+        assertThat(throttle.tryAcquire("b@x.com", "9.9.9.9", t)).isTrue();
+        assertThat(throttle.tryAcquire("c@x.com", "9.9.9.9", t)).isFalse();
+        assertThat(throttle.tryAcquire("c@x.com", "8.8.8.8", t)).isTrue();
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedLimit() throws InterruptedException {
+        int limit = 50;
+        LoginThrottle throttle = throttle(limit, 10_000);
+        long t = System.currentTimeMillis();
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < 400; i++) {
+            pool.submit(() -> {
+                start.await();
+                if (throttle.tryAcquire("race@x.com", null, t)) accepted.incrementAndGet();
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(accepted).hasValue(limit);
+    }
+
+    @Test
+    void rejectsSubSecondWindow() {
+        assertThatThrownBy(() -> new LoginThrottle(registry, Duration.ofMillis(500), 10, 10, 16))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
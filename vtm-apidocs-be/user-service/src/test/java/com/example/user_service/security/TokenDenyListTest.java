@@ -0,0 +1,97 @@
+package com.example.user_service.security;
+
+import com.example.user_service.entity.RevokedToken;
+import com.example.user_service.entity.User;
+import com.example.user_service.entity.UserTokenCutoff;
+import com.example.user_service.repository.RevokedTokenRepository;
+import com.example.user_service.repository.UserTokenCutoffRepository;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenDenyListTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private final User user = User.builder().id(7L).email("dev@example.com").role(User.Role.DEV).status(User.STATUS_ACTIVE).build();
+    private final RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+    private final UserTokenCutoffRepository cutoffRepository = mock(UserTokenCutoffRepository.class);
+    private TokenDenyList denyList;
+
+    @BeforeEach
+    void setUp() {
+        denyList = new TokenDenyList(repository, cutoffRepository, new SimpleMeterRegistry(), Duration.ofHours(1));
+        denyList.load();
+    }
+
+    @Test
+    void logoutRevokesOnlyThatToken() {
+        String a = jwtUtil.generateToken(user);
+        String b = jwtUtil.generateToken(user);
+        Claims claims = jwtUtil.parse(a);
+
+        denyList.revoke(claims.getId(), claims.getExpiration().toInstant());
+
+        assertThat(jwtUtil.parseActive(a, denyList)).isNull();
+        assertThat(jwtUtil.parseActive(b, denyList)).isNotNull();
+        // xoá dòng hết hạn chỉ theo lịch, không phải mỗi lần logout (1 lần là của load)
+        verify(repository, times(1)).deleteExpired(any());
+    }
+
+    @Test
+    void refreshPicksUpRevocationsFromOtherInstances() {
+        String token = jwtUtil.generateToken(user);
+        Claims claims = jwtUtil.parse(token);
+        String other = jwtUtil.generateToken(User.builder().id(8L).email("x@example.com").role(User.Role.DEV).build());
+        when(repository.findByRevokedAtAfter(any())).thenReturn(List.of(RevokedToken.builder()
+                .jti(claims.getId()).expiresAt(claims.getExpiration().toInstant()).revokedAt(Instant.now()).build()));
+        when(cutoffRepository.findByNotBeforeAfter(any())).thenReturn(List.of(UserTokenCutoff.builder()
+                .userId(8L).notBefore(Instant.now().plusSeconds(1)).expiresAt(Instant.now().plus(JwtUtil.TOKEN_TTL)).build()));
+        assertThat(jwtUtil.parseActive(token, denyList)).isNotNull();
+
+        denyList.refresh();
+
+        assertThat(jwtUtil.parseActive(token, denyList)).isNull();
+        assertThat(jwtUtil.parseActive(other, denyList)).isNull();
+        verify(repository, times(1)).deleteExpired(any()); // chưa tới lịch prune
+    }
+
+    @Test
+    void revokeUserRejectsTokensIssuedBeforeTheCutoff() {
+        String token = jwtUtil.generateToken(user);
+        assertThat(jwtUtil.parseActive(token, denyList)).isNotNull();
+
+        denyList.revokeUser(user.getId());
+
+        assertThat(jwtUtil.parseActive(token, denyList)).isNull();
+        // user khác không bị ảnh hưởng
+        User other = User.builder().id(8L).email("x@example.com").role(User.Role.DEV).build();
+        assertThat(jwtUtil.parseActive(jwtUtil.generateToken(other), denyList)).isNotNull();
+    }
+
+    @Test
+    void cutoffIsRoundedUpToTheNextSecond() {
+        denyList.revokeUser(user.getId());
+        Instant now = Instant.now();
+
+        assertThat(denyList.isRevokedForUser(user.getId(), now.minusSeconds(1))).isTrue();
+        assertThat(denyList.isRevokedForUser(user.getId(), now.plusSeconds(2))).isFalse();
+    }
+
+    @Test
+    void inactivePrincipalIsNotActive() {
+        AuthPrincipal principal = AuthPrincipal.fromClaims(jwtUtil.parse(jwtUtil.generateToken(
+                User.builder().id(9L).email("s@example.com").role(User.Role.MERCHANT).status(0).build())));
+
+        assertThat(principal.active()).isFalse();
+        assertThat(AuthPrincipal.of(user).active()).isTrue();
+    }
+}
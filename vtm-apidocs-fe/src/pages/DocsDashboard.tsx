@@ -218,6 +218,7 @@ export default function DocsDashboard() {
     provider: "OPENROUTER",
   });
   const [importing, setImporting] = useState(false);
+  const [importStage, setImportStage] = useState<string | null>(null);
 
   const empty = !loadingList && docs.length === 0;
 
@@ -619,6 +620,37 @@ export default function DocsDashboard() {
     }
   };
 
+  // Import PDF chạy nền: server trả 202 + statusUrl, poll tới khi job SUCCEEDED / FAILED
+  const waitForImportJob = async (statusUrl: string, signal: AbortSignal) => {
+    while (true) {
+      await new Promise<void>((resolve, reject) => {
+        const onAbort = () => {
+          clearTimeout(t);
+          reject(new DOMException("Aborted", "AbortError"));
+        };
+        const t = setTimeout(() => {
+          signal.removeEventListener("abort", onAbort);
+          resolve();
+        }, 2_000);
+        signal.addEventListener("abort", onAbort, { once: true });
+      });
+
+      const res = await fetch(statusUrl, { signal });
+      const raw = await res.text();
+      if (!res.ok) {
+        throw new Error(
+          `Import job status failed: ${res.status} ${res.statusText} — ${raw.slice(0, 500)}`
+        );
+      }
+      const job = JSON.parse(raw);
+      if (job.status === "SUCCEEDED") return job;
+      if (job.status === "FAILED") {
+        throw new Error(`Import PDF thất bại: ${job.error || "unknown error"}`);
+      }
+      setImportStage(job.stage || job.status);
+    }
+  };
+
   const doImport = async () => {
     if (importing) return;
 
@@ -670,6 +702,21 @@ export default function DocsDashboard() {
           );
         }
 
+        // 202: upload xong, generate/parse/index chạy nền → timeout riêng cho phần chờ job
+        clearTimeout(timeoutId);
+        const accepted = JSON.parse(raw);
+        setImportStage(accepted.status || "queued");
+        const pollController = new AbortController();
+        const pollTimeoutId = setTimeout(() => pollController.abort(), 15 * 60_000);
+        try {
+          await waitForImportJob(
+            accepted.statusUrl || `/admin/docs/import-jobs/${accepted.jobId}`,
+            pollController.signal
+          );
+        } finally {
+          clearTimeout(pollTimeoutId);
+        }
+
         setImportOpen(false);
         setImportForm({
           name: "",
@@ -730,6 +777,7 @@ export default function DocsDashboard() {
     } finally {
       clearTimeout(timeoutId);
       setImporting(false);
+      setImportStage(null);
     }
   };
 
@@ -1396,6 +1444,11 @@ export default function DocsDashboard() {
             }
             disabled={!!importForm.file}
           />
+          {importing && importStage && (
+            <Typography variant="body2" sx={{ opacity: 0.8 }}>
+              Đang xử lý: {importStage}
+            </Typography>
+          )}
         </DialogContent>
         <DialogActions>
           <Button onClick={() => setImportOpen(false)} disabled={importing}>